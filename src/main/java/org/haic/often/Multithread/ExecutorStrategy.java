@@ -0,0 +1,95 @@
+package org.haic.often.Multithread;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 线程池创建策略,工具类按策略获取线程池<br/>
+ * fixed - 固定大小线程池<br/>
+ * cached - 按需创建的线程池<br/>
+ * virtual - 每个任务一个虚拟线程,JDK 21 以下使用平台线程<br/>
+ * supplied - 使用外部线程池,使用后不关闭
+ *
+ * @author haicdust
+ * @version 1.0
+ * @since 2022/3/16 19:52
+ */
+public interface ExecutorStrategy {
+
+	/**
+	 * 创建线程池
+	 *
+	 * @param threads 线程数,部分策略仅作参考
+	 * @return 线程池
+	 */
+	ExecutorService create(final int threads);
+
+	/**
+	 * 线程池是否为外部共享,共享线程池使用后不关闭
+	 *
+	 * @return 是否共享
+	 */
+	default boolean shared() {
+		return false;
+	}
+
+	/**
+	 * 固定大小线程池
+	 *
+	 * @return 线程池创建策略
+	 */
+	@Contract(pure = true) static ExecutorStrategy fixed() {
+		return Executors::newFixedThreadPool;
+	}
+
+	/**
+	 * 固定大小线程池,使用指定线程工厂
+	 *
+	 * @param threadFactory 线程工厂
+	 * @return 线程池创建策略
+	 */
+	@Contract(pure = true) static ExecutorStrategy fixed(@NotNull ThreadFactory threadFactory) {
+		return threads -> Executors.newFixedThreadPool(threads, threadFactory);
+	}
+
+	/**
+	 * 按需创建线程的线程池,忽略线程数
+	 *
+	 * @return 线程池创建策略
+	 */
+	@Contract(pure = true) static ExecutorStrategy cached() {
+		return threads -> Executors.newCachedThreadPool();
+	}
+
+	/**
+	 * 每个任务一个虚拟线程,忽略线程数,并发数由调用方控制,JDK 21 以下使用平台线程
+	 *
+	 * @return 线程池创建策略
+	 */
+	@Contract(pure = true) static ExecutorStrategy virtual() {
+		return threads -> MultiThreadUtils.virtualThreadPerTaskExecutor();
+	}
+
+	/**
+	 * 使用外部线程池,忽略线程数,使用后不关闭
+	 *
+	 * @param executorService 线程池
+	 * @return 线程池创建策略
+	 */
+	@Contract(pure = true) static ExecutorStrategy supplied(@NotNull ExecutorService executorService) {
+		return new ExecutorStrategy() {
+			@Override public ExecutorService create(final int threads) {
+				return executorService;
+			}
+
+			@Override public boolean shared() {
+				return true;
+			}
+		};
+	}
+
+}
@@ -4,7 +4,9 @@ import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -60,6 +62,43 @@ public class MultiThreadUtils {
 		return result;
 	}
 
+	/**
+	 * 获取虚拟线程工厂,JDK 21+ 使用虚拟线程,低版本或不可用时返回默认平台线程工厂
+	 *
+	 * @return 线程工厂
+	 */
+	@Contract(pure = true) public static ThreadFactory virtualThreadFactory() {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return Executors.defaultThreadFactory();
+		}
+	}
+
+	/**
+	 * 获取每个任务一个虚拟线程的线程池,JDK 21+ 使用 Executors.newVirtualThreadPerTaskExecutor,低版本或不可用时返回按需创建平台线程的线程池
+	 *
+	 * @return 线程池
+	 */
+	@Contract(pure = true) public static ExecutorService virtualThreadPerTaskExecutor() {
+		return virtualThreadPerTaskExecutor(Executors.defaultThreadFactory());
+	}
+
+	/**
+	 * 获取每个任务一个虚拟线程的线程池,JDK 21+ 使用 Executors.newVirtualThreadPerTaskExecutor,低版本或不可用时返回由指定线程工厂按需创建平台线程的线程池
+	 *
+	 * @param fallback 低版本时创建平台线程的线程工厂
+	 * @return 线程池
+	 */
+	@Contract(pure = true) public static ExecutorService virtualThreadPerTaskExecutor(@NotNull ThreadFactory fallback) {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return Executors.newCachedThreadPool(fallback);
+		}
+	}
+
 	/**
 	 * 输出程序运行时间，请在程序开始处加入函数
 	 */
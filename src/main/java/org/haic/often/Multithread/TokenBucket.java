@@ -0,0 +1,194 @@
+package org.haic.often.Multithread;
+
+import org.jetbrains.annotations.Contract;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 令牌桶 限流工具类,速率和容量可在运行时修改<br/>
+ * 获取令牌时先预支,超出部分按速率计算等待时间,等待在锁外进行,按请求顺序公平分配
+ *
+ * @author haicdust
+ * @version 1.0
+ * @since 2022/3/12 10:18
+ */
+public class TokenBucket {
+
+	protected final ReentrantLock lock = new ReentrantLock(true); // 公平锁
+	protected volatile double rate; // 每秒生成令牌数,不大于0时不限制
+	protected volatile double burst; // 桶容量
+	protected double tokens; // 当前令牌数,预支时为负数
+	protected long lastTime = System.nanoTime(); // 上次补充令牌时间
+
+	protected TokenBucket(final double rate, final double burst) {
+		this.rate = rate;
+		this.burst = Math.max(burst, 1);
+		this.tokens = this.burst;
+	}
+
+	/**
+	 * 创建 令牌桶
+	 *
+	 * @param rate  每秒生成令牌数,不大于0时不限制
+	 * @param burst 桶容量,允许的突发数量
+	 * @return new TokenBucket
+	 */
+	@Contract(pure = true) public static TokenBucket create(final double rate, final double burst) {
+		return new TokenBucket(rate, burst);
+	}
+
+	/**
+	 * 创建 不限制速率的令牌桶
+	 *
+	 * @return new TokenBucket
+	 */
+	@Contract(pure = true) public static TokenBucket unlimited() {
+		return new TokenBucket(0, 1);
+	}
+
+	/**
+	 * 设置 每秒生成令牌数,不大于0时不限制
+	 *
+	 * @param rate 每秒生成令牌数
+	 * @return this
+	 */
+	@Contract(pure = true) public TokenBucket rate(final double rate) {
+		lock.lock();
+		try {
+			refill();
+			this.rate = rate;
+		} finally {
+			lock.unlock();
+		}
+		return this;
+	}
+
+	/**
+	 * 设置 桶容量
+	 *
+	 * @param burst 桶容量
+	 * @return this
+	 */
+	@Contract(pure = true) public TokenBucket burst(final double burst) {
+		lock.lock();
+		try {
+			refill();
+			this.burst = Math.max(burst, 1);
+			tokens = Math.min(tokens, this.burst);
+		} finally {
+			lock.unlock();
+		}
+		return this;
+	}
+
+	/**
+	 * 获取 每秒生成令牌数
+	 *
+	 * @return 每秒生成令牌数
+	 */
+	@Contract(pure = true) public double rate() {
+		return rate;
+	}
+
+	/**
+	 * 获取 桶容量
+	 *
+	 * @return 桶容量
+	 */
+	@Contract(pure = true) public double burst() {
+		return burst;
+	}
+
+	/**
+	 * 获取一个令牌,令牌不足时等待
+	 */
+	@Contract(pure = true) public void acquire() {
+		acquire(1);
+	}
+
+	/**
+	 * 获取指定数量令牌,令牌不足时等待
+	 *
+	 * @param permits 令牌数量
+	 */
+	@Contract(pure = true) public void acquire(final double permits) {
+		long waitNanos = reserve(permits);
+		if (waitNanos > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(waitNanos);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * 异步获取指定数量令牌,令牌不足时由定时器在令牌可用后完成,不占用线程
+	 *
+	 * @param permits 令牌数量
+	 * @return 获取令牌后完成的 CompletableFuture
+	 */
+	@Contract(pure = true) public CompletableFuture<Void> acquireAsync(final double permits) {
+		long waitNanos = reserve(permits);
+		return waitNanos > 0 ?
+				CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS)) :
+				CompletableFuture.completedFuture(null);
+	}
+
+	/**
+	 * 尝试获取指定数量令牌,不等待
+	 *
+	 * @param permits 令牌数量
+	 * @return 是否获取成功
+	 */
+	@Contract(pure = true) public boolean tryAcquire(final double permits) {
+		if (rate <= 0) {
+			return true;
+		}
+		lock.lock();
+		try {
+			refill();
+			if (tokens < permits) {
+				return false;
+			}
+			tokens -= permits;
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 预支令牌
+	 *
+	 * @param permits 令牌数量
+	 * @return 需要等待的时间(纳秒)
+	 */
+	@Contract(pure = true) protected long reserve(final double permits) {
+		if (rate <= 0) {
+			return 0;
+		}
+		lock.lock();
+		try {
+			refill();
+			tokens -= permits;
+			return tokens >= 0 ? 0 : (long) (-tokens / rate * TimeUnit.SECONDS.toNanos(1));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 按经过时间补充令牌
+	 */
+	@Contract(pure = true) protected void refill() {
+		long now = System.nanoTime();
+		if (rate > 0) {
+			tokens = Math.min(burst, tokens + (now - lastTime) * rate / TimeUnit.SECONDS.toNanos(1));
+		}
+		lastTime = now;
+	}
+
+}
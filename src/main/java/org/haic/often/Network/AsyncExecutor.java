@@ -0,0 +1,60 @@
+package org.haic.often.Network;
+
+import org.haic.often.Multithread.MultiThreadUtils;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * 异步请求执行器,JsoupUtils、HttpsUtils、HtmlUnitUtils、NetworkFileUtils 的异步方法共用<br/>
+ * 阻塞的请求在工作线程池中执行(JDK 21 及以上为虚拟线程),连接池请求由 HttpClient 异步发送不占用线程<br/>
+ * 重试等待由 {@link RetryPolicy#executeAsync} 通过定时器调度,等待期间不占用线程
+ *
+ * @author haicdust
+ * @version 1.0
+ * @since 2022/3/21 19:40
+ */
+public class AsyncExecutor {
+
+	protected static final ExecutorService workers = MultiThreadUtils.virtualThreadPerTaskExecutor(runnable -> {
+		Thread thread = new Thread(runnable);
+		thread.setDaemon(true);
+		return thread;
+	}); // 阻塞请求工作线程池,低版本为守护平台线程
+
+	protected AsyncExecutor() {
+	}
+
+	/**
+	 * 获取 工作线程池
+	 *
+	 * @return 线程池
+	 */
+	@Contract(pure = true) public static ExecutorService workers() {
+		return workers;
+	}
+
+	/**
+	 * 在工作线程池中执行阻塞任务
+	 *
+	 * @param supplier 任务
+	 * @param <T>      返回类型
+	 * @return CompletableFuture
+	 */
+	@Contract(pure = true) public static <T> CompletableFuture<T> supply(@NotNull Supplier<T> supplier) {
+		return CompletableFuture.supplyAsync(supplier, workers);
+	}
+
+	/**
+	 * 获取 延迟执行器,到期后在工作线程池中执行
+	 *
+	 * @param millis 延迟(毫秒)
+	 * @return 执行器
+	 */
+	@Contract(pure = true) public static Executor delayed(final long millis) {
+		return CompletableFuture.delayedExecutor(Math.max(millis, 0), TimeUnit.MILLISECONDS, workers);
+	}
+
+}
@@ -0,0 +1,106 @@
+package org.haic.often.Network;
+
+import org.haic.often.Multithread.TokenBucket;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 带宽限制,令牌为字节数<br/>
+ * 全局令牌桶由同一JVM内所有下载和上传共享,每个下载另有独立令牌桶,两者同时生效,速率可在运行时修改<br/>
+ * 令牌桶按请求顺序公平分配,各连接按读取顺序轮流获得带宽
+ *
+ * @author haicdust
+ * @version 1.0
+ * @since 2022/3/18 21:14
+ */
+public class Bandwidth {
+
+	protected static final long MIN_BURST = 65536; // 最小突发字节数
+	protected static final TokenBucket global = TokenBucket.unlimited(); // 全局令牌桶
+
+	protected Bandwidth() {
+	}
+
+	/**
+	 * 获取 全局令牌桶
+	 *
+	 * @return 全局令牌桶
+	 */
+	@Contract(pure = true) public static TokenBucket global() {
+		return global;
+	}
+
+	/**
+	 * 设置 全局带宽,运行中的下载立即生效
+	 *
+	 * @param bytesPerSecond 每秒字节数,不大于0时不限制
+	 * @return 全局令牌桶
+	 */
+	@Contract(pure = true) public static TokenBucket global(final long bytesPerSecond) {
+		return limit(global, bytesPerSecond);
+	}
+
+	/**
+	 * 创建 带宽令牌桶
+	 *
+	 * @param bytesPerSecond 每秒字节数,不大于0时不限制
+	 * @return new TokenBucket
+	 */
+	@Contract(pure = true) public static TokenBucket create(final long bytesPerSecond) {
+		return limit(TokenBucket.unlimited(), bytesPerSecond);
+	}
+
+	/**
+	 * 设置 令牌桶带宽,突发字节数为四分之一秒的流量
+	 *
+	 * @param bucket         令牌桶
+	 * @param bytesPerSecond 每秒字节数,不大于0时不限制
+	 * @return 令牌桶
+	 */
+	@Contract(pure = true) public static TokenBucket limit(@NotNull TokenBucket bucket, final long bytesPerSecond) {
+		return bucket.rate(bytesPerSecond).burst(Math.max(bytesPerSecond / 4, MIN_BURST));
+	}
+
+	/**
+	 * 获取字节令牌,依次经过全局令牌桶和指定令牌桶
+	 *
+	 * @param bucket 令牌桶
+	 * @param bytes  字节数
+	 */
+	@Contract(pure = true) public static void acquire(@NotNull TokenBucket bucket, final long bytes) {
+		global.acquire(bytes);
+		bucket.acquire(bytes);
+	}
+
+	/**
+	 * 包装输入流,读取时获取字节令牌
+	 *
+	 * @param inputStream 输入流
+	 * @param bucket      令牌桶
+	 * @return 限速输入流
+	 */
+	@Contract(pure = true) public static InputStream stream(@NotNull InputStream inputStream, @NotNull TokenBucket bucket) {
+		return new FilterInputStream(inputStream) {
+			@Override public int read() throws IOException {
+				int b = super.read();
+				if (b >= 0) {
+					acquire(bucket, 1);
+				}
+				return b;
+			}
+
+			@Override public int read(byte[] b, int off, int len) throws IOException {
+				int length = super.read(b, off, len);
+				if (length > 0) {
+					acquire(bucket, length);
+				}
+				return length;
+			}
+		};
+	}
+
+}
@@ -0,0 +1,286 @@
+package org.haic.often.Network;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按host(非默认端口时含端口)共享的熔断器,同一JVM内 JsoupUtils、HttpsUtils、HtmlUnitUtils、NetworkFileUtils 连接前检查<br/>
+ * 关闭: 正常连接,记录最近请求结果,失败率达到阈值时打开<br/>
+ * 打开: 拒绝连接,不占用套接字,探测间隔后转为半开<br/>
+ * 半开: 仅允许少量探测请求,探测成功关闭,失败重新打开<br/>
+ * 连接失败(408)及服务器错误(5xx)计为失败,其它状态码计为成功
+ *
+ * @author haicdust
+ * @version 1.0
+ * @since 2022/3/23 21:10
+ */
+public class CircuitBreaker {
+
+	/**
+	 * 默认失败率阈值
+	 */
+	public static final double DEFAULT_FAILURE_RATE = 0.5;
+	/**
+	 * 默认计算失败率的最少请求数
+	 */
+	public static final int DEFAULT_MINIMUM_CALLS = 10;
+	/**
+	 * 默认统计窗口(最近请求数)
+	 */
+	public static final int DEFAULT_WINDOW = 20;
+	/**
+	 * 默认探测间隔(毫秒)
+	 */
+	public static final long DEFAULT_PROBE_INTERVAL = 10000;
+	/**
+	 * 默认半开状态同时探测请求数
+	 */
+	public static final int DEFAULT_PROBES = 1;
+
+	protected static final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>(); // host -> 熔断器
+
+	protected double failureRate = DEFAULT_FAILURE_RATE; // 失败率阈值
+	protected int minimumCalls = DEFAULT_MINIMUM_CALLS; // 计算失败率的最少请求数
+	protected long probeInterval = DEFAULT_PROBE_INTERVAL; // 探测间隔(毫秒)
+	protected int probes = DEFAULT_PROBES; // 半开状态同时探测请求数
+
+	protected State state = State.CLOSED; // 当前状态
+	protected boolean[] window = new boolean[DEFAULT_WINDOW]; // 最近请求结果,true为失败
+	protected int calls; // 窗口内请求数
+	protected int failures; // 窗口内失败数
+	protected int next; // 下一个写入位置
+	protected long openUntil; // 打开状态结束时间(纳秒)
+	protected int probing; // 正在探测的请求数
+	protected long probeStart; // 最近一次探测请求开始时间(纳秒)
+
+	protected CircuitBreaker() {
+	}
+
+	/**
+	 * 获取 host对应的熔断器,不存在时按默认参数创建
+	 *
+	 * @param host 主机名,非默认端口时为 host:port
+	 * @return 熔断器
+	 */
+	@Contract(pure = true) public static CircuitBreaker host(@NotNull String host) {
+		return breakers.computeIfAbsent(host, key -> new CircuitBreaker());
+	}
+
+	/**
+	 * 获取 链接所属host对应的熔断器,链接指定端口时按 host:port 区分
+	 *
+	 * @param url 链接
+	 * @return 熔断器
+	 */
+	@Contract(pure = true) public static CircuitBreaker url(@NotNull String url) {
+		try {
+			URL address = new URL(url);
+			return host(address.getPort() < 0 ? address.getHost() : address.getHost() + ":" + address.getPort());
+		} catch (MalformedURLException e) {
+			return host("");
+		}
+	}
+
+	/**
+	 * 判断状态码是否计为失败
+	 *
+	 * @param statusCode 状态码
+	 * @return 是否失败
+	 */
+	@Contract(pure = true) public static boolean isFailure(final int statusCode) {
+		return statusCode == HttpStatus.SC_REQUEST_TIMEOUT || statusCode >= HttpStatus.SC_INTERNAL_SERVER_ERROR;
+	}
+
+	/**
+	 * 设置 失败率阈值,窗口内失败率达到阈值时打开
+	 *
+	 * @param failureRate 失败率(0-1)
+	 * @return this
+	 */
+	@Contract(pure = true) public synchronized CircuitBreaker failureRate(final double failureRate) {
+		this.failureRate = failureRate;
+		return this;
+	}
+
+	/**
+	 * 设置 计算失败率的最少请求数,窗口内请求数不足时不打开
+	 *
+	 * @param minimumCalls 最少请求数
+	 * @return this
+	 */
+	@Contract(pure = true) public synchronized CircuitBreaker minimumCalls(final int minimumCalls) {
+		this.minimumCalls = Math.max(minimumCalls, 1);
+		return this;
+	}
+
+	/**
+	 * 设置 统计窗口,按最近请求数计算失败率,设置后清空统计
+	 *
+	 * @param window 最近请求数
+	 * @return this
+	 */
+	@Contract(pure = true) public synchronized CircuitBreaker window(final int window) {
+		this.window = new boolean[Math.max(window, 1)];
+		clear();
+		return this;
+	}
+
+	/**
+	 * 设置 探测间隔,打开状态持续时间
+	 *
+	 * @param probeInterval 探测间隔(毫秒)
+	 * @return this
+	 */
+	@Contract(pure = true) public synchronized CircuitBreaker probeInterval(final long probeInterval) {
+		this.probeInterval = probeInterval;
+		return this;
+	}
+
+	/**
+	 * 设置 半开状态同时探测请求数
+	 *
+	 * @param probes 探测请求数
+	 * @return this
+	 */
+	@Contract(pure = true) public synchronized CircuitBreaker probes(final int probes) {
+		this.probes = Math.max(probes, 1);
+		return this;
+	}
+
+	/**
+	 * 连接前检查是否允许请求,打开状态到达探测间隔后转为半开并允许探测请求<br/>
+	 * 允许的请求必须调用 {@link #record(int)} 记录结果,探测请求超过探测间隔仍未记录结果时重新打开
+	 *
+	 * @return 是否允许请求
+	 */
+	@Contract(pure = true) public synchronized boolean allow() {
+		if (state == State.OPEN && System.nanoTime() - openUntil >= 0) {
+			state = State.HALF_OPEN;
+			probing = 0;
+		}
+		switch (state) {
+			case CLOSED:
+				return true;
+			case HALF_OPEN:
+				if (probing < probes) {
+					probing++;
+					probeStart = System.nanoTime();
+					return true;
+				} else if (System.nanoTime() - probeStart >= probeInterval * 1000000) { // 探测请求超过探测间隔未记录结果,按失败重新打开
+					open();
+				}
+				return false;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * 记录请求结果
+	 *
+	 * @param statusCode 状态码
+	 */
+	@Contract(pure = true) public synchronized void record(final int statusCode) {
+		boolean failure = isFailure(statusCode);
+		switch (state) {
+			case HALF_OPEN:
+				probing = Math.max(probing - 1, 0);
+				if (failure) {
+					open();
+				} else {
+					state = State.CLOSED;
+					clear();
+				}
+				break;
+			case CLOSED:
+				if (calls == window.length && window[next]) {
+					failures--;
+				}
+				window[next] = failure;
+				next = (next + 1) % window.length;
+				calls = Math.min(calls + 1, window.length);
+				failures += failure ? 1 : 0;
+				if (calls >= minimumCalls && failures >= failureRate * calls) {
+					open();
+				}
+				break;
+			default: // 打开前已发出的请求
+				break;
+		}
+	}
+
+	/**
+	 * 判断当前是否拒绝请求,不改变状态
+	 *
+	 * @return 打开状态且未到探测时间
+	 */
+	@Contract(pure = true) public synchronized boolean isOpen() {
+		return state == State.OPEN && System.nanoTime() - openUntil < 0;
+	}
+
+	/**
+	 * 获取 距离下次探测的时间
+	 *
+	 * @return 等待时间(毫秒),未打开时为0
+	 */
+	@Contract(pure = true) public synchronized long remaining() {
+		return state == State.OPEN ? Math.max((openUntil - System.nanoTime()) / 1000000, 0) : 0;
+	}
+
+	/**
+	 * 获取 当前状态
+	 *
+	 * @return 状态
+	 */
+	@Contract(pure = true) public synchronized State state() {
+		return state;
+	}
+
+	/**
+	 * 重置为关闭状态并清空统计
+	 */
+	@Contract(pure = true) public synchronized void reset() {
+		state = State.CLOSED;
+		clear();
+	}
+
+	/**
+	 * 打开熔断器
+	 */
+	@Contract(pure = true) protected void open() {
+		state = State.OPEN;
+		openUntil = System.nanoTime() + probeInterval * 1000000;
+		probing = 0;
+	}
+
+	/**
+	 * 清空统计窗口
+	 */
+	@Contract(pure = true) protected void clear() {
+		calls = failures = next = 0;
+	}
+
+	/**
+	 * 熔断器状态
+	 */
+	public enum State {
+		/**
+		 * 关闭,正常连接
+		 */
+		CLOSED,
+		/**
+		 * 打开,拒绝连接
+		 */
+		OPEN,
+		/**
+		 * 半开,允许探测请求
+		 */
+		HALF_OPEN
+	}
+
+}
@@ -0,0 +1,364 @@
+package org.haic.often.Network;
+
+import org.apache.commons.compress.compressors.brotli.BrotliCompressorInputStream;
+import org.apache.commons.compress.compressors.brotli.BrotliUtils;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdUtils;
+import org.haic.often.Judge;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * 响应正文解码,按 content-encoding 流式解压 gzip、deflate、br(brotli)、zstd,HttpsUtils 及连接池响应共用<br/>
+ * 解码在第一次读取时开始,不阻塞获取响应流,正文为空(如HEAD、304响应)时返回空流<br/>
+ * gzip 及 deflate 使用池化的 Inflater,关闭流后归还;zstd 需要 zstd-jni,运行时检测,不存在时不声明支持<br/>
+ * 分块下载的 range 请求应使用 identity 编码,不经过解码
+ *
+ * @author haicdust
+ * @version 1.0
+ * @since 2022/3/26 19:50
+ */
+public class ContentDecoder {
+
+	protected static final int POOL_SIZE = 32; // 每种 Inflater 缓存数量
+	protected static final int BUFFER_SIZE = 8192; // 解压读取缓冲区大小
+	protected static final BlockingQueue<Inflater> zlibInflaters = new ArrayBlockingQueue<>(POOL_SIZE); // zlib格式 Inflater 池
+	protected static final BlockingQueue<Inflater> rawInflaters = new ArrayBlockingQueue<>(POOL_SIZE); // 无头格式 Inflater 池(gzip 及无头 deflate)
+	protected static final boolean brotli = BrotliUtils.isBrotliCompressionAvailable(); // 是否支持 brotli
+	protected static final boolean zstd = ZstdUtils.isZstdCompressionAvailable(); // 是否支持 zstd
+
+	protected ContentDecoder() {
+	}
+
+	/**
+	 * 获取 支持的 accept-encoding 请求头的值
+	 *
+	 * @return accept-encoding
+	 */
+	@Contract(pure = true) public static String acceptEncoding() {
+		return "gzip, deflate" + (brotli ? ", br" : "") + (zstd ? ", zstd" : "");
+	}
+
+	/**
+	 * 判断是否支持解码
+	 *
+	 * @param encoding 编码名称
+	 * @return 是否支持
+	 */
+	@Contract(pure = true) public static boolean supports(@NotNull String encoding) {
+		return switch (encoding.trim().toLowerCase()) {
+			case "", "identity", "gzip", "x-gzip", "deflate" -> true;
+			case "br" -> brotli;
+			case "zstd" -> zstd;
+			default -> false;
+		};
+	}
+
+	/**
+	 * 按 content-encoding 解码响应流,多重编码按逆序解码,包含不支持的编码时返回原始流
+	 *
+	 * @param inputStream     原始响应流
+	 * @param contentEncoding content-encoding 响应头,可为null
+	 * @return 解码后的响应流
+	 */
+	@Contract(pure = true) public static InputStream decode(@NotNull InputStream inputStream, String contentEncoding) {
+		if (Judge.isEmpty(contentEncoding)) {
+			return inputStream;
+		}
+		List<String> encodings = new ArrayList<>();
+		for (String encoding : contentEncoding.split(",")) {
+			encoding = encoding.trim().toLowerCase();
+			if (!supports(encoding)) {
+				return inputStream;
+			} else if (!encoding.isEmpty() && !encoding.equals("identity")) {
+				encodings.add(encoding);
+			}
+		}
+		return encodings.isEmpty() ? inputStream : new DecodingInputStream(inputStream, encodings);
+	}
+
+	/**
+	 * 创建 单一编码的解码流
+	 *
+	 * @param inputStream 输入流
+	 * @param encoding    编码名称
+	 * @return 解码流
+	 * @throws IOException 数据格式错误
+	 */
+	@Contract(pure = true) protected static InputStream decoder(@NotNull InputStream inputStream, @NotNull String encoding) throws IOException {
+		switch (encoding) {
+			case "gzip", "x-gzip" -> {
+				return new GzipInputStream(inputStream);
+			}
+			case "deflate" -> { // 规范为zlib格式,部分服务器发送无头格式
+				PushbackInputStream pushback = new PushbackInputStream(inputStream, 2);
+				int first = pushback.read();
+				int second = first == -1 ? -1 : pushback.read();
+				if (second != -1) {
+					pushback.unread(second);
+				}
+				if (first != -1) {
+					pushback.unread(first);
+				}
+				boolean zlib = second != -1 && (first & 0x0f) == 8 && ((first << 8) | second) % 31 == 0;
+				return new PooledInflaterInputStream(pushback, !zlib);
+			}
+			case "br" -> {
+				return new BrotliCompressorInputStream(inputStream);
+			}
+			case "zstd" -> {
+				return new ZstdCompressorInputStream(inputStream);
+			}
+			default -> throw new IOException("Unsupported content-encoding: " + encoding);
+		}
+	}
+
+	/**
+	 * 获取 池化的 Inflater
+	 *
+	 * @param nowrap 是否为无头格式
+	 * @return Inflater
+	 */
+	@Contract(pure = true) protected static Inflater inflater(final boolean nowrap) {
+		Inflater inflater = (nowrap ? rawInflaters : zlibInflaters).poll();
+		return Judge.isNull(inflater) ? new Inflater(nowrap) : inflater;
+	}
+
+	/**
+	 * 归还 Inflater,池已满时释放
+	 *
+	 * @param inflater Inflater
+	 * @param nowrap   是否为无头格式
+	 */
+	@Contract(pure = true) protected static void release(@NotNull Inflater inflater, final boolean nowrap) {
+		inflater.reset();
+		if (!(nowrap ? rawInflaters : zlibInflaters).offer(inflater)) {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * 延迟解码流,第一次读取时检查正文是否为空并创建解码流<br/>
+	 * 解码结束后读取原始流至结尾,连接池在响应流读取完毕后才能复用连接
+	 */
+	protected static class DecodingInputStream extends FilterInputStream {
+
+		protected static final int DRAIN_SIZE = 65536; // 解码结束后最多丢弃的原始流字节数
+
+		protected final List<String> encodings; // 编码,按应用顺序
+		protected InputStream source; // 原始响应流
+		protected boolean opened; // 是否已创建解码流
+
+		protected DecodingInputStream(@NotNull InputStream inputStream, @NotNull List<String> encodings) {
+			super(inputStream);
+			this.encodings = encodings;
+		}
+
+		/**
+		 * 创建解码流,正文为空时保持原始流
+		 *
+		 * @throws IOException 数据格式错误
+		 */
+		protected void open() throws IOException {
+			if (opened) {
+				return;
+			}
+			opened = true;
+			PushbackInputStream pushback = new PushbackInputStream(in, 1);
+			int first = pushback.read();
+			if (first == -1) { // 正文为空
+				in = pushback;
+				return;
+			}
+			pushback.unread(first);
+			source = pushback;
+			InputStream inputStream = pushback;
+			for (int i = encodings.size() - 1; i >= 0; i--) {
+				inputStream = decoder(inputStream, encodings.get(i));
+			}
+			in = inputStream;
+		}
+
+		/**
+		 * 解码结束后丢弃原始流的剩余字节,超过限制时不再读取
+		 *
+		 * @throws IOException 读取失败
+		 */
+		protected void drain() throws IOException {
+			if (Judge.isNull(source)) {
+				return;
+			}
+			byte[] buffer = new byte[BUFFER_SIZE];
+			for (int length, total = 0; total < DRAIN_SIZE && !Judge.isMinusOne(length = source.read(buffer)); total += length) {
+			}
+			source = null;
+		}
+
+		@Override public int read() throws IOException {
+			open();
+			int b = in.read();
+			if (b == -1) {
+				drain();
+			}
+			return b;
+		}
+
+		@Override public int read(byte[] b, int off, int len) throws IOException {
+			open();
+			int length = in.read(b, off, len);
+			if (length == -1) {
+				drain();
+			}
+			return length;
+		}
+
+		@Override public long skip(long n) throws IOException {
+			open();
+			return in.skip(n);
+		}
+
+		@Override public int available() throws IOException {
+			return opened ? in.available() : 0;
+		}
+
+		@Override public boolean markSupported() {
+			return false;
+		}
+
+	}
+
+	/**
+	 * 使用池化 Inflater 的解压流,关闭时归还 Inflater
+	 */
+	protected static class PooledInflaterInputStream extends InflaterInputStream {
+
+		protected final boolean nowrap; // 是否为无头格式
+		protected boolean released; // 是否已归还 Inflater
+
+		protected PooledInflaterInputStream(@NotNull InputStream inputStream, final boolean nowrap) {
+			super(inputStream, inflater(nowrap), BUFFER_SIZE);
+			this.nowrap = nowrap;
+		}
+
+		@Override public void close() throws IOException {
+			try {
+				super.close(); // 非默认 Inflater,不会被释放
+			} finally {
+				if (!released) {
+					released = true;
+					release(inf, nowrap);
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * gzip 解压流,解析文件头后使用池化的无头 Inflater,结束时校验CRC32及长度
+	 */
+	protected static class GzipInputStream extends PooledInflaterInputStream {
+
+		protected final CRC32 crc = new CRC32(); // 解压数据校验值
+		protected boolean header; // 是否已读取文件头
+		protected boolean eof; // 是否已读取到结尾
+
+		protected GzipInputStream(@NotNull InputStream inputStream) {
+			super(inputStream, true);
+		}
+
+		@Override public int read(byte[] b, int off, int len) throws IOException {
+			if (eof) {
+				return -1;
+			}
+			if (!header) {
+				header = true;
+				readHeader();
+			}
+			int length = super.read(b, off, len);
+			if (length == -1) {
+				eof = true;
+				readTrailer();
+			} else {
+				crc.update(b, off, length);
+			}
+			return length;
+		}
+
+		@Override public int available() throws IOException {
+			return eof ? 0 : super.available();
+		}
+
+		/**
+		 * 读取并跳过 gzip 文件头
+		 *
+		 * @throws IOException 格式错误
+		 */
+		protected void readHeader() throws IOException {
+			if (readUShort(in) != 0x8b1f) {
+				throw new ZipException("Not in GZIP format");
+			}
+			if (readUByte(in) != 8) {
+				throw new ZipException("Unsupported compression method");
+			}
+			int flags = readUByte(in);
+			for (int i = 0; i < 6; i++) { // 修改时间,额外标志,操作系统
+				readUByte(in);
+			}
+			if ((flags & 4) != 0) { // FEXTRA
+				for (int i = readUShort(in); i > 0; i--) {
+					readUByte(in);
+				}
+			}
+			if ((flags & 8) != 0) { // FNAME
+				while (readUByte(in) != 0) {
+				}
+			}
+			if ((flags & 16) != 0) { // FCOMMENT
+				while (readUByte(in) != 0) {
+				}
+			}
+			if ((flags & 2) != 0) { // FHCRC
+				readUShort(in);
+			}
+		}
+
+		/**
+		 * 读取并校验 gzip 文件尾,Inflater 未使用的输入在缓冲区末尾
+		 *
+		 * @throws IOException 校验失败
+		 */
+		protected void readTrailer() throws IOException {
+			int remaining = inf.getRemaining();
+			InputStream trailer = remaining > 0 ? new SequenceInputStream(new ByteArrayInputStream(buf, len - remaining, remaining), in) : in;
+			long checksum = readUShort(trailer) | (long) readUShort(trailer) << 16;
+			long size = readUShort(trailer) | (long) readUShort(trailer) << 16;
+			if (checksum != crc.getValue() || size != (inf.getBytesWritten() & 0xffffffffL)) {
+				throw new ZipException("Corrupt GZIP trailer");
+			}
+		}
+
+		protected static int readUShort(@NotNull InputStream inputStream) throws IOException {
+			return readUByte(inputStream) | readUByte(inputStream) << 8;
+		}
+
+		protected static int readUByte(@NotNull InputStream inputStream) throws IOException {
+			int b = inputStream.read();
+			if (b == -1) {
+				throw new EOFException("Unexpected end of GZIP stream");
+			}
+			return b;
+		}
+
+	}
+
+}
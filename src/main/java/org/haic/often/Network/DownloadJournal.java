@@ -0,0 +1,542 @@
+package org.haic.often.Network;
+
+import com.alibaba.fastjson.JSONObject;
+import org.haic.often.Judge;
+import org.haic.often.ReadWriteUtils;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32C;
+
+/**
+ * 下载断点续传日志,替代按行追加的 .haic 文本配置文件<br/>
+ * 文件结构: 固定头(魔数,版本,文件大小,块大小,块数量,信息长度) + 下载信息(JSON) + 完成位图 + 块下载源(每块一字节,下载源序号+1,0为未知)
+ * + 校验值位图 + 块校验值(每块四字节CRC32C)<br/>
+ * 区块完成时原地更新位图、下载源及校验值对应字节并强制刷盘,查询为O(1)<br/>
+ * 块校验值由写入文件前的数据按顺序计算,不读取文件;块内数据未按顺序写入时(如区间拆分)完成后读取该块计算,文件hash不匹配时按校验值找出损坏的块重新下载
+ *
+ * @author haicdust
+ * @version 1.0
+ * @since 2022/3/13 15:20
+ */
+public class DownloadJournal implements Closeable {
+
+	protected static final int MAGIC = 0x48414943; // "HAIC"
+	protected static final int VERSION = 3; // 日志版本
+	protected static final int MAX_SOURCES = 255; // 可记录的下载源数量
+	protected static final int HEADER_SIZE = 32; // 固定头大小
+
+	protected File source; // 日志文件
+	protected FileChannel channel; // 日志文件通道
+	protected String info; // 下载信息(JSON)
+	protected long fileSize; // 文件大小
+	protected long blockSize; // 块大小
+	protected int blockCount; // 块数量
+	protected long bitmapOffset; // 位图起始位置
+	protected byte[] bitmap; // 完成位图
+	protected byte[] sources; // 块下载源
+	protected byte[] checked; // 已记录校验值的块位图
+	protected int[] checksums; // 块校验值(CRC32C)
+	protected File storage; // 下载文件,块内数据未按顺序写入时读取
+	protected Map<Integer, Long> partial = new HashMap<>(); // 本次运行中部分完成的块 -> 已完成字节数
+	protected Map<Integer, BlockChecksum> running = new ConcurrentHashMap<>(); // 正在写入的块的校验值
+
+	protected DownloadJournal(@NotNull File source) {
+		this.source = source;
+	}
+
+	/**
+	 * 创建新的日志文件,已存在时覆盖
+	 *
+	 * @param source    日志文件
+	 * @param info      下载信息(JSON)
+	 * @param fileSize  文件大小
+	 * @param blockSize 块大小
+	 * @return new DownloadJournal
+	 * @throws IOException 写入失败
+	 */
+	@Contract(pure = true) public static DownloadJournal create(@NotNull File source, @NotNull String info, final long fileSize, final long blockSize)
+			throws IOException {
+		DownloadJournal journal = new DownloadJournal(source);
+		journal.info = info;
+		journal.fileSize = fileSize;
+		journal.blockSize = Math.max(blockSize, 1);
+		journal.blockCount = Math.toIntExact((fileSize + journal.blockSize - 1) / journal.blockSize);
+		journal.bitmap = new byte[(journal.blockCount + 7) / 8];
+		journal.sources = new byte[journal.blockCount];
+		journal.checked = new byte[journal.bitmap.length];
+		journal.checksums = new int[journal.blockCount];
+		journal.write();
+		return journal;
+	}
+
+	/**
+	 * 打开已存在的日志文件,兼容旧版文本格式(首行JSON信息,其余行为已完成的 start-end 区间)、没有块下载源的版本1格式及没有块校验值的版本2格式,旧版文件将转换为新格式
+	 *
+	 * @param source    日志文件
+	 * @param blockSize 旧版文件转换时使用的块大小
+	 * @return DownloadJournal
+	 * @throws IOException 读取失败或格式错误
+	 */
+	@Contract(pure = true) public static DownloadJournal open(@NotNull File source, final long blockSize) throws IOException {
+		DownloadJournal journal = new DownloadJournal(source);
+		journal.channel = FileChannel.open(source.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		journal.channel.read(header, 0);
+		header.flip();
+		if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+			journal.channel.close();
+			return legacy(source, blockSize);
+		}
+		int version = header.getInt();
+		if (version < 1 || version > VERSION) {
+			journal.channel.close();
+			throw new IOException("Unsupported journal version " + source);
+		}
+		journal.fileSize = header.getLong();
+		journal.blockSize = header.getLong();
+		journal.blockCount = header.getInt();
+		ByteBuffer info = ByteBuffer.allocate(header.getInt());
+		journal.channel.read(info, HEADER_SIZE);
+		journal.info = new String(info.array(), StandardCharsets.UTF_8);
+		journal.bitmapOffset = HEADER_SIZE + info.capacity();
+		ByteBuffer bitmap = ByteBuffer.allocate((journal.blockCount + 7) / 8);
+		journal.channel.read(bitmap, journal.bitmapOffset);
+		journal.bitmap = bitmap.array();
+		ByteBuffer sources = ByteBuffer.allocate(journal.blockCount);
+		if (version >= 2) {
+			journal.channel.read(sources, journal.bitmapOffset + bitmap.capacity());
+		}
+		journal.sources = sources.array();
+		ByteBuffer checked = ByteBuffer.allocate(bitmap.capacity());
+		ByteBuffer checksums = ByteBuffer.allocate(journal.blockCount * 4);
+		if (version >= 3) {
+			journal.channel.read(checked, journal.bitmapOffset + bitmap.capacity() + sources.capacity());
+			journal.channel.read(checksums, journal.bitmapOffset + bitmap.capacity() * 2L + sources.capacity());
+		}
+		journal.checked = checked.array();
+		journal.checksums = new int[journal.blockCount];
+		checksums.clear().asIntBuffer().get(journal.checksums);
+		if (version != VERSION) { // 转换为新格式
+			journal.write();
+		}
+		return journal;
+	}
+
+	/**
+	 * 转换旧版文本格式日志
+	 *
+	 * @param source    日志文件
+	 * @param blockSize 块大小
+	 * @return DownloadJournal
+	 * @throws IOException 读取失败或格式错误
+	 */
+	@Contract(pure = true) protected static DownloadJournal legacy(@NotNull File source, final long blockSize) throws IOException {
+		List<String> lines = ReadWriteUtils.orgin(source).list();
+		if (Judge.isNull(lines) || lines.isEmpty()) {
+			throw new IOException("Info is error -> " + source);
+		}
+		String info = lines.remove(0);
+		long fileSize = JSONObject.parseObject(info).getLongValue("content-length");
+		DownloadJournal journal = create(source, info, fileSize, blockSize);
+		for (String line : lines) {
+			String[] range = line.split("-");
+			journal.finish(Long.parseLong(range[0]), Long.parseLong(range[1]));
+		}
+		return journal;
+	}
+
+	/**
+	 * 写入完整日志文件,先写入同目录的临时文件并强制刷盘,再原子替换日志文件,写入中断时保留原日志文件
+	 *
+	 * @throws IOException 写入失败
+	 */
+	@Contract(pure = true) protected void write() throws IOException {
+		byte[] info = this.info.getBytes(StandardCharsets.UTF_8);
+		bitmapOffset = HEADER_SIZE + info.length;
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + info.length + bitmap.length * 2 + sources.length + checksums.length * 4);
+		buffer.putInt(MAGIC).putInt(VERSION).putLong(fileSize).putLong(blockSize).putInt(blockCount).putInt(info.length).put(info).put(bitmap).put(sources).put(checked);
+		buffer.asIntBuffer().put(checksums);
+		buffer.position(buffer.limit()).flip();
+		Path file = source.toPath();
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel output = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				output.write(buffer, buffer.position());
+			}
+			output.force(true);
+		} catch (IOException e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+		if (!Judge.isNull(channel)) { // 替换前关闭,部分系统不能替换已打开的文件
+			channel.close();
+		}
+		try {
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+			channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		}
+	}
+
+	/**
+	 * 获取 下载信息(JSON)
+	 *
+	 * @return 下载信息
+	 */
+	@Contract(pure = true) public String info() {
+		return info;
+	}
+
+	/**
+	 * 获取 文件大小
+	 *
+	 * @return 文件大小
+	 */
+	@Contract(pure = true) public long fileSize() {
+		return fileSize;
+	}
+
+	/**
+	 * 获取 块大小
+	 *
+	 * @return 块大小
+	 */
+	@Contract(pure = true) public long blockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * 设置 下载文件,块内数据未按顺序写入时完成后读取该块计算校验值,未设置时该块不记录校验值
+	 *
+	 * @param storage 下载文件
+	 * @return this
+	 */
+	@Contract(pure = true) public DownloadJournal storage(@NotNull File storage) {
+		this.storage = storage;
+		return this;
+	}
+
+	/**
+	 * 登记即将写入文件的数据,按顺序计算所在块的校验值,从块起始位置写入时重新计算
+	 *
+	 * @param position 文件位置
+	 * @param buffer   数据,读取后位置不变
+	 */
+	@Contract(pure = true) public void update(long position, @NotNull ByteBuffer buffer) {
+		ByteBuffer data = buffer.duplicate();
+		int limit = data.limit();
+		while (data.hasRemaining()) {
+			int index = (int) (position / blockSize);
+			long blockStart = index * blockSize;
+			int length = (int) Math.min(data.remaining(), Math.min(blockStart + blockSize, fileSize) - position);
+			data.limit(data.position() + length);
+			BlockChecksum checksum = running.computeIfAbsent(index, key -> new BlockChecksum(blockStart));
+			synchronized (checksum) {
+				if (position == blockStart) { // 重新下载该块
+					checksum.crc.reset();
+					checksum.position = blockStart;
+					checksum.ordered = true;
+				}
+				if (checksum.ordered && position == checksum.position) {
+					checksum.crc.update(data);
+					checksum.position += length;
+				} else {
+					checksum.ordered = false;
+				}
+			}
+			data.position(data.limit()).limit(limit);
+			position += length;
+		}
+	}
+
+	/**
+	 * 判断区间是否已完成
+	 *
+	 * @param start 起始位
+	 * @param end   结束位
+	 * @return 区间覆盖的所有块是否已完成
+	 */
+	@Contract(pure = true) public synchronized boolean isFinished(final long start, final long end) {
+		for (int i = (int) (start / blockSize), last = (int) (end / blockSize); i <= last; i++) {
+			if (!isFinished(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 判断块是否已完成
+	 *
+	 * @param index 块索引
+	 * @return 是否已完成
+	 */
+	@Contract(pure = true) protected boolean isFinished(final int index) {
+		return (bitmap[index >>> 3] & (1 << (index & 7))) != 0;
+	}
+
+	/**
+	 * 获取 块的下载源
+	 *
+	 * @param position 块内任意位置
+	 * @return 下载源序号,未完成或未知时为-1
+	 */
+	@Contract(pure = true) public synchronized int source(final long position) {
+		int index = (int) (position / blockSize);
+		return isFinished(index) ? (sources[index] & 0xFF) - 1 : -1;
+	}
+
+	/**
+	 * 记录区间已完成,下载源未知
+	 *
+	 * @param start 起始位
+	 * @param end   结束位
+	 */
+	@Contract(pure = true) public void finish(final long start, final long end) {
+		finish(start, end, -1);
+	}
+
+	/**
+	 * 记录区间已完成,区间内完整的块立即标记,区间边缘的块在累计完成后标记,更新的位图及下载源字节写入后强制刷盘<br/>
+	 * 由多个区间完成的块记录最后完成区间的下载源,块校验值在锁外计算,读取文件时不阻塞其它线程记录
+	 *
+	 * @param start  起始位
+	 * @param end    结束位
+	 * @param source 下载源序号,未知时为-1
+	 */
+	@Contract(pure = true) public void finish(final long start, final long end, final int source) {
+		List<Integer> completed = new ArrayList<>();
+		synchronized (this) {
+			for (int i = (int) (start / blockSize), limit = (int) (end / blockSize); i <= limit; i++) {
+				long blockStart = i * blockSize;
+				long blockEnd = Math.min(blockStart + blockSize, fileSize) - 1;
+				long covered = Math.min(end, blockEnd) - Math.max(start, blockStart) + 1;
+				if (covered < blockEnd - blockStart + 1) {
+					covered += partial.getOrDefault(i, 0L);
+					if (covered < blockEnd - blockStart + 1) {
+						partial.put(i, covered);
+						continue;
+					}
+					partial.remove(i);
+				}
+				completed.add(i);
+			}
+		}
+		if (completed.isEmpty()) {
+			return;
+		}
+		Integer[] values = new Integer[completed.size()];
+		for (int j = 0; j < values.length; j++) {
+			long blockStart = completed.get(j) * blockSize;
+			values[j] = checksum(completed.get(j), blockStart, Math.min(blockStart + blockSize, fileSize) - 1);
+		}
+		synchronized (this) {
+			for (int j = 0; j < values.length; j++) {
+				int i = completed.get(j);
+				bitmap[i >>> 3] |= 1 << (i & 7);
+				sources[i] = (byte) (source >= 0 && source < MAX_SOURCES ? source + 1 : 0);
+				if (Judge.isNull(values[j])) {
+					checked[i >>> 3] &= ~(1 << (i & 7));
+				} else {
+					checked[i >>> 3] |= 1 << (i & 7);
+					checksums[i] = values[j];
+				}
+			}
+			try {
+				writeBlocks(completed.get(0), completed.get(completed.size() - 1));
+				channel.force(false);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * 获取 已完成块的校验值,块内数据按顺序写入时使用写入时计算的值,否则读取文件计算
+	 *
+	 * @param index      块索引
+	 * @param blockStart 块起始位
+	 * @param blockEnd   块结束位
+	 * @return 校验值,无法计算时为null
+	 */
+	@Contract(pure = true) protected Integer checksum(final int index, final long blockStart, final long blockEnd) {
+		BlockChecksum checksum = running.remove(index);
+		if (!Judge.isNull(checksum)) {
+			synchronized (checksum) {
+				if (checksum.ordered && checksum.position == blockEnd + 1) {
+					return (int) checksum.crc.getValue();
+				}
+			}
+		}
+		try {
+			return Judge.isNull(storage) ? null : read(blockStart, blockEnd);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * 读取文件计算区间的校验值
+	 *
+	 * @param start 起始位
+	 * @param end   结束位
+	 * @return 校验值
+	 * @throws IOException 读取失败
+	 */
+	@Contract(pure = true) protected int read(final long start, final long end) throws IOException {
+		CRC32C crc = new CRC32C();
+		try (FileChannel input = FileChannel.open(storage.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(65536);
+			for (long position = start; position <= end; ) {
+				buffer.clear().limit((int) Math.min(buffer.capacity(), end - position + 1));
+				int length = input.read(buffer, position);
+				if (Judge.isMinusOne(length)) {
+					throw new IOException("Unexpected end of file " + storage);
+				}
+				crc.update(buffer.flip());
+				position += length;
+			}
+		}
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * 写入块范围内的位图、下载源及校验值
+	 *
+	 * @param first 起始块索引
+	 * @param last  结束块索引
+	 * @throws IOException 写入失败
+	 */
+	@Contract(pure = true) protected void writeBlocks(final int first, final int last) throws IOException {
+		long offset = bitmapOffset;
+		ByteBuffer buffer = ByteBuffer.wrap(bitmap, first >>> 3, (last >>> 3) - (first >>> 3) + 1);
+		while (buffer.hasRemaining()) {
+			channel.write(buffer, offset + buffer.position());
+		}
+		offset += bitmap.length;
+		buffer = ByteBuffer.wrap(sources, first, last - first + 1);
+		while (buffer.hasRemaining()) {
+			channel.write(buffer, offset + buffer.position());
+		}
+		offset += sources.length;
+		buffer = ByteBuffer.wrap(checked, first >>> 3, (last >>> 3) - (first >>> 3) + 1);
+		while (buffer.hasRemaining()) {
+			channel.write(buffer, offset + buffer.position());
+		}
+		offset += checked.length;
+		buffer = ByteBuffer.allocate((last - first + 1) * 4);
+		buffer.asIntBuffer().put(checksums, first, last - first + 1);
+		while (buffer.hasRemaining()) {
+			channel.write(buffer, offset + first * 4L + buffer.position());
+		}
+	}
+
+	/**
+	 * 读取文件检查已完成块的校验值,不匹配的块标记为未完成,没有校验值的块不检查
+	 *
+	 * @return 损坏的块数量
+	 * @throws IOException 读取或写入失败
+	 */
+	@Contract(pure = true) public synchronized int verify() throws IOException {
+		if (Judge.isNull(storage)) {
+			return 0;
+		}
+		int damaged = 0;
+		for (int i = 0; i < blockCount; i++) {
+			if (!isFinished(i) || (checked[i >>> 3] & (1 << (i & 7))) == 0) {
+				continue;
+			}
+			long blockStart = i * blockSize;
+			if (read(blockStart, Math.min(blockStart + blockSize, fileSize) - 1) != checksums[i]) {
+				bitmap[i >>> 3] &= ~(1 << (i & 7));
+				checked[i >>> 3] &= ~(1 << (i & 7));
+				damaged++;
+			}
+		}
+		if (damaged > 0) {
+			write();
+		}
+		return damaged;
+	}
+
+	/**
+	 * 获取未完成的区间,相邻的未完成块合并
+	 *
+	 * @return 未完成区间列表,元素为 {起始位, 结束位}
+	 */
+	@Contract(pure = true) public synchronized List<long[]> gaps() {
+		List<long[]> gaps = new ArrayList<>();
+		for (int i = 0; i < blockCount; i++) {
+			if (isFinished(i)) {
+				continue;
+			}
+			int j = i;
+			while (j + 1 < blockCount && !isFinished(j + 1)) {
+				j++;
+			}
+			gaps.add(new long[] { i * blockSize, Math.min((j + 1) * blockSize, fileSize) - 1 });
+			i = j;
+		}
+		return gaps;
+	}
+
+	/**
+	 * 清除所有完成记录
+	 *
+	 * @throws IOException 写入失败
+	 */
+	@Contract(pure = true) public synchronized void reset() throws IOException {
+		bitmap = new byte[bitmap.length];
+		sources = new byte[sources.length];
+		checked = new byte[checked.length];
+		checksums = new int[checksums.length];
+		partial.clear();
+		running.clear();
+		write();
+	}
+
+	/**
+	 * 关闭日志文件
+	 *
+	 * @throws IOException 关闭失败
+	 */
+	@Override public synchronized void close() throws IOException {
+		if (!Judge.isNull(channel)) {
+			channel.close();
+			channel = null;
+		}
+	}
+
+	/**
+	 * 正在写入的块的校验值
+	 */
+	protected static class BlockChecksum {
+
+		protected final CRC32C crc = new CRC32C(); // 校验值
+		protected long position; // 下一个按顺序写入的位置
+		protected boolean ordered = true; // 是否按顺序写入
+
+		protected BlockChecksum(final long position) {
+			this.position = position;
+		}
+
+	}
+
+}
@@ -0,0 +1,509 @@
+package org.haic.often.Network;
+
+import com.alibaba.fastjson.JSONObject;
+import org.haic.often.Judge;
+import org.haic.often.Multithread.ExecutorStrategy;
+import org.haic.often.Multithread.MultiThreadUtils;
+import org.haic.often.URIUtils;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 批量下载管理器,按优先级排队下载多个文件<br/>
+ * 限制同时下载文件数及同一host同时下载文件数,所有文件的下载线程共用一个线程池,总连接数不超过线程池大小<br/>
+ * JDK 21+ 默认使用虚拟线程
+ *
+ * @author haicdust
+ * @version 1.0
+ * @since 2022/3/15 21:37
+ */
+public class DownloadManager implements Closeable {
+
+	protected int maxDownloads = 8; // 同时下载文件数
+	protected int hostDownloads = 4; // 同一host同时下载文件数
+	protected int connections = 64; // 全局连接数
+	protected int active; // 正在下载文件数
+	protected long sequence; // 提交序号,相同优先级按提交顺序下载
+	protected ExecutorStrategy executorStrategy = ExecutorStrategy.fixed(MultiThreadUtils.virtualThreadFactory()); // 共享下载线程池创建策略
+
+	protected ExecutorService workers; // 共享下载线程池
+	protected ExecutorService coordinators; // 文件调度线程池
+	protected final Map<String, PriorityQueue<Task>> queues = new HashMap<>(); // host -> 等待队列
+	protected final Map<String, Integer> running = new HashMap<>(); // host -> 正在下载文件数
+	protected final List<Task> tasks = new CopyOnWriteArrayList<>(); // 所有任务
+
+	protected DownloadManager() {
+	}
+
+	/**
+	 * 创建下载管理器
+	 *
+	 * @return new DownloadManager
+	 */
+	@Contract(pure = true) public static DownloadManager config() {
+		return new DownloadManager();
+	}
+
+	/**
+	 * 设置 同时下载文件数
+	 *
+	 * @param maxDownloads 同时下载文件数
+	 * @return this
+	 */
+	@Contract(pure = true) public DownloadManager maxDownloads(final int maxDownloads) {
+		this.maxDownloads = maxDownloads;
+		return this;
+	}
+
+	/**
+	 * 设置 同一host同时下载文件数
+	 *
+	 * @param hostDownloads 同一host同时下载文件数
+	 * @return this
+	 */
+	@Contract(pure = true) public DownloadManager hostDownloads(final int hostDownloads) {
+		this.hostDownloads = hostDownloads;
+		return this;
+	}
+
+	/**
+	 * 设置 全局连接数,即共享下载线程池大小,首个任务开始下载后设置无效
+	 *
+	 * @param connections 全局连接数
+	 * @return this
+	 */
+	@Contract(pure = true) public DownloadManager connections(final int connections) {
+		this.connections = connections;
+		return this;
+	}
+
+	/**
+	 * 设置 共享下载线程池创建策略,默认为全局连接数大小的固定线程池,JDK 21+ 使用虚拟线程,首个任务开始下载后设置无效
+	 *
+	 * @param executorStrategy 线程池创建策略
+	 * @return this
+	 */
+	@Contract(pure = true) public DownloadManager executor(@NotNull ExecutorStrategy executorStrategy) {
+		this.executorStrategy = executorStrategy;
+		return this;
+	}
+
+	/**
+	 * 提交下载任务
+	 *
+	 * @param download   下载配置
+	 * @param folderPath 文件存放目录
+	 * @return 下载任务
+	 */
+	@Contract(pure = true) public Task submit(@NotNull NetworkFileUtils download, @NotNull String folderPath) {
+		return submit(download, new File(folderPath), 0);
+	}
+
+	/**
+	 * 提交下载任务
+	 *
+	 * @param download 下载配置
+	 * @param folder   文件存放目录
+	 * @return 下载任务
+	 */
+	@Contract(pure = true) public Task submit(@NotNull NetworkFileUtils download, @NotNull File folder) {
+		return submit(download, folder, 0);
+	}
+
+	/**
+	 * 提交下载任务
+	 *
+	 * @param download 下载配置
+	 * @param folder   文件存放目录
+	 * @param priority 优先级,数值越大越先下载
+	 * @return 下载任务
+	 */
+	@Contract(pure = true) public Task submit(@NotNull NetworkFileUtils download, @NotNull File folder, final int priority) {
+		Task task;
+		synchronized (this) {
+			task = new Task(download, folder, priority, sequence++);
+			queues.computeIfAbsent(task.host, key -> new PriorityQueue<>()).add(task);
+			tasks.add(task);
+		}
+		dispatch();
+		return task;
+	}
+
+	/**
+	 * 调度等待中的任务,每次选择未达到host上限的队列中优先级最高的任务
+	 */
+	@Contract(pure = true) protected synchronized void dispatch() {
+		while (active < maxDownloads) {
+			Task next = null;
+			for (Map.Entry<String, PriorityQueue<Task>> entry : queues.entrySet()) {
+				if (running.getOrDefault(entry.getKey(), 0) >= hostDownloads) {
+					continue;
+				}
+				Task head = entry.getValue().peek();
+				if (!Judge.isNull(head) && (Judge.isNull(next) || head.compareTo(next) < 0)) {
+					next = head;
+				}
+			}
+			if (Judge.isNull(next)) {
+				return;
+			}
+			PriorityQueue<Task> queue = queues.get(next.host);
+			queue.poll();
+			if (queue.isEmpty()) {
+				queues.remove(next.host);
+			}
+			active++;
+			running.merge(next.host, 1, Integer::sum);
+			next.state = State.RUNNING;
+			final Task task = next;
+			coordinators().execute(() -> run(task));
+		}
+	}
+
+	/**
+	 * 执行下载任务,结束后调度下一个任务<br/>
+	 * 抛出 Error 时任务结果以该异常完成,计数照常释放
+	 *
+	 * @param task 下载任务
+	 */
+	@Contract(pure = true) protected void run(@NotNull Task task) {
+		int statusCode = HttpStatus.SC_REQUEST_TIMEOUT;
+		Error error = null;
+		try {
+			statusCode = task.download.executor(workers()).download(task.folder);
+		} catch (RuntimeException e) {
+			task.exception = e;
+		} catch (Error e) {
+			error = e;
+			throw e;
+		} finally {
+			synchronized (this) {
+				active--;
+				running.merge(task.host, -1, Integer::sum);
+			}
+			task.state = URIUtils.statusIsOK(statusCode) ? State.SUCCEEDED : State.FAILED;
+			if (Judge.isNull(error)) {
+				task.future.complete(statusCode);
+			} else {
+				task.future.completeExceptionally(error);
+			}
+			dispatch();
+		}
+	}
+
+	/**
+	 * 获取 共享下载线程池
+	 *
+	 * @return 线程池
+	 */
+	@Contract(pure = true) protected synchronized ExecutorService workers() {
+		if (Judge.isNull(workers)) {
+			workers = executorStrategy.create(connections);
+		}
+		return workers;
+	}
+
+	/**
+	 * 获取 文件调度线程池,线程数受同时下载文件数限制
+	 *
+	 * @return 线程池
+	 */
+	@Contract(pure = true) protected synchronized ExecutorService coordinators() {
+		if (Judge.isNull(coordinators)) {
+			coordinators = ExecutorStrategy.virtual().create(maxDownloads);
+		}
+		return coordinators;
+	}
+
+	/**
+	 * 获取 所有下载任务
+	 *
+	 * @return 下载任务列表,按提交顺序
+	 */
+	@Contract(pure = true) public List<Task> tasks() {
+		return new ArrayList<>(tasks);
+	}
+
+	/**
+	 * 获取 总体下载进度
+	 *
+	 * @return 进度快照
+	 */
+	@Contract(pure = true) public Progress progress() {
+		Progress progress = new Progress();
+		for (Task task : tasks) {
+			progress.total++;
+			switch (task.state) {
+			case QUEUED -> progress.queued++;
+			case RUNNING -> {
+				progress.running++;
+				progress.bytes += task.download.metrics.completed();
+				progress.received += task.download.metrics.received();
+			}
+			case SUCCEEDED -> {
+				progress.succeeded++;
+				progress.bytes += task.download.fileSize;
+				progress.received += task.download.metrics.received();
+			}
+			case FAILED -> {
+				progress.failed++;
+				progress.received += task.download.metrics.received();
+			}
+			}
+		}
+		return progress;
+	}
+
+	/**
+	 * 等待已提交的任务全部结束
+	 *
+	 * @return 下载任务列表,按提交顺序,通过 {@link Task#statusCode()} 获取各文件状态码,异常结束的任务不抛出异常
+	 */
+	@Contract(pure = true) public List<Task> await() {
+		List<Task> tasks = tasks();
+		tasks.forEach(task -> task.future.handle((statusCode, e) -> statusCode).join());
+		return tasks;
+	}
+
+	/**
+	 * 等待已提交的任务全部结束并关闭线程池
+	 */
+	@Override public void close() {
+		await();
+		synchronized (this) {
+			if (!Judge.isNull(coordinators)) {
+				MultiThreadUtils.WaitForEnd(coordinators);
+			}
+			if (!Judge.isNull(workers) && !executorStrategy.shared()) {
+				MultiThreadUtils.WaitForEnd(workers);
+			}
+		}
+	}
+
+	/**
+	 * 下载任务状态<br/>
+	 * QUEUED - 等待中<br/>
+	 * RUNNING - 下载中<br/>
+	 * SUCCEEDED - 下载成功<br/>
+	 * FAILED - 下载失败
+	 */
+	public enum State {
+		QUEUED, RUNNING, SUCCEEDED, FAILED
+	}
+
+	/**
+	 * 下载任务
+	 */
+	public static class Task implements Comparable<Task> {
+
+		protected final NetworkFileUtils download; // 下载配置
+		protected final File folder; // 文件存放目录
+		protected final String url; // 下载链接,续传任务为信息文件中的链接
+		protected final String host; // 主机名
+		protected final int priority; // 优先级
+		protected final long sequence; // 提交序号
+		protected final CompletableFuture<Integer> future = new CompletableFuture<>(); // 下载结果
+		protected volatile State state = State.QUEUED; // 任务状态
+		protected volatile RuntimeException exception; // 下载异常
+
+		protected Task(@NotNull NetworkFileUtils download, @NotNull File folder, final int priority, final long sequence) {
+			this.download = download;
+			this.folder = folder;
+			this.url = Judge.isEmpty(download.url) ? journalUrl(download) : download.url;
+			this.host = Judge.isEmpty(url) ? "" : URIUtils.getHost(url);
+			this.priority = priority;
+			this.sequence = sequence;
+		}
+
+		/**
+		 * 获取 续传任务信息文件中的下载链接
+		 *
+		 * @param download 下载配置
+		 * @return 链接,读取失败时返回null
+		 */
+		@Contract(pure = true) protected static String journalUrl(@NotNull NetworkFileUtils download) {
+			if (Judge.isNull(download.conf) || !download.conf.isFile()) {
+				return null;
+			}
+			try (DownloadJournal journal = DownloadJournal.open(download.conf, download.PIECE_MAX_SIZE)) {
+				return JSONObject.parseObject(journal.info()).getString("URL");
+			} catch (IOException | RuntimeException e) {
+				return null;
+			}
+		}
+
+		/**
+		 * 获取 下载链接
+		 *
+		 * @return 链接
+		 */
+		@Contract(pure = true) public String url() {
+			return Judge.isEmpty(download.url) ? url : download.url;
+		}
+
+		/**
+		 * 获取 优先级
+		 *
+		 * @return 优先级
+		 */
+		@Contract(pure = true) public int priority() {
+			return priority;
+		}
+
+		/**
+		 * 获取 任务状态
+		 *
+		 * @return 任务状态
+		 */
+		@Contract(pure = true) public State state() {
+			return state;
+		}
+
+		/**
+		 * 获取 下载状态码,任务未结束时返回0
+		 *
+		 * @return 状态码
+		 */
+		@Contract(pure = true) public int statusCode() {
+			return future.getNow(0);
+		}
+
+		/**
+		 * 获取 下载异常,开启错误退出时下载失败抛出的异常
+		 *
+		 * @return 异常,没有异常时返回null
+		 */
+		@Contract(pure = true) public RuntimeException exception() {
+			return exception;
+		}
+
+		/**
+		 * 获取 本地存储文件,开始下载前返回null
+		 *
+		 * @return 文件
+		 */
+		@Contract(pure = true) public File storage() {
+			return download.storage;
+		}
+
+		/**
+		 * 等待任务结束
+		 *
+		 * @return 状态码
+		 * @throws java.util.concurrent.CompletionException 下载抛出 Error 时
+		 */
+		@Contract(pure = true) public int get() {
+			return future.join();
+		}
+
+		/**
+		 * 获取 下载结果
+		 *
+		 * @return CompletableFuture
+		 */
+		@Contract(pure = true) public CompletableFuture<Integer> future() {
+			return future;
+		}
+
+		@Override public int compareTo(@NotNull Task task) {
+			return priority == task.priority ? Long.compare(sequence, task.sequence) : Integer.compare(task.priority, priority);
+		}
+
+	}
+
+	/**
+	 * 总体下载进度快照
+	 */
+	public static class Progress {
+
+		protected int total; // 任务总数
+		protected int queued; // 等待中
+		protected int running; // 下载中
+		protected int succeeded; // 下载成功
+		protected int failed; // 下载失败
+		protected long bytes; // 已完成的字节数
+		protected long received; // 接收的字节数
+
+		/**
+		 * 获取 任务总数
+		 *
+		 * @return 任务总数
+		 */
+		@Contract(pure = true) public int total() {
+			return total;
+		}
+
+		/**
+		 * 获取 等待中的任务数
+		 *
+		 * @return 任务数
+		 */
+		@Contract(pure = true) public int queued() {
+			return queued;
+		}
+
+		/**
+		 * 获取 下载中的任务数
+		 *
+		 * @return 任务数
+		 */
+		@Contract(pure = true) public int running() {
+			return running;
+		}
+
+		/**
+		 * 获取 下载成功的任务数
+		 *
+		 * @return 任务数
+		 */
+		@Contract(pure = true) public int succeeded() {
+			return succeeded;
+		}
+
+		/**
+		 * 获取 下载失败的任务数
+		 *
+		 * @return 任务数
+		 */
+		@Contract(pure = true) public int failed() {
+			return failed;
+		}
+
+		/**
+		 * 获取 已完成的字节数,包含下载中文件已完成的部分
+		 *
+		 * @return 字节数
+		 */
+		@Contract(pure = true) public long bytes() {
+			return bytes;
+		}
+
+		/**
+		 * 获取 接收的字节数,包含失败后重新下载的部分
+		 *
+		 * @return 字节数
+		 */
+		@Contract(pure = true) public long received() {
+			return received;
+		}
+
+		/**
+		 * 获取 已结束任务占比
+		 *
+		 * @return 0.0 - 1.0
+		 */
+		@Contract(pure = true) public double ratio() {
+			return total == 0 ? 1 : (double) (succeeded + failed) / total;
+		}
+
+	}
+
+}
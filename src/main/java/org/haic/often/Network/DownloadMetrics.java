@@ -0,0 +1,458 @@
+package org.haic.often.Network;
+
+import org.haic.often.Judge;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 下载进度及速率统计,写入循环中只累加分段计数器(LongAdder),速率及停滞时间等数据在获取快照时计算<br/>
+ * 可主动获取快照,或设置监听器按固定间隔接收快照,当前速率按各自的速率窗口计算,主动获取与监听器互不影响
+ *
+ * @author haicdust
+ * @version 1.0
+ * @since 2022/3/17 20:05
+ */
+public class DownloadMetrics {
+
+	protected static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "download-metrics");
+		thread.setDaemon(true);
+		return thread;
+	}); // 监听器定时线程
+
+	protected final LongAdder received = new LongAdder(); // 本次运行接收的字节数
+	protected final LongAdder completed = new LongAdder(); // 已完成区块的字节数
+	protected final LongAdder retries = new LongAdder(); // 重试次数
+	protected final AtomicInteger connections = new AtomicInteger(); // 活动连接数
+	protected final Map<Integer, LongAdder> statusRetries = new ConcurrentHashMap<>(); // 状态码 -> 重试次数
+	protected final Map<Long, Piece> pieces = new ConcurrentSkipListMap<>(); // 起始位 -> 进行中的区块
+
+	protected volatile long fileSize; // 文件大小
+	protected volatile long startTime = System.nanoTime(); // 开始时间
+	protected long lastChangeTime = System.nanoTime(); // 快照时发现接收字节数变化的时间
+	protected long lastChangeBytes; // 上次快照时的接收字节数
+	protected Window window = new Window(); // 主动获取快照的速率窗口
+	protected Window listening; // 监听器的速率窗口
+	protected ScheduledFuture<?> schedule; // 监听器定时任务
+
+	/**
+	 * 开始统计
+	 *
+	 * @param fileSize  文件大小
+	 * @param completed 续传时已完成的字节数
+	 */
+	@Contract(pure = true) protected synchronized void start(final long fileSize, final long completed) {
+		this.fileSize = fileSize;
+		this.completed.reset();
+		this.completed.add(completed);
+		received.reset();
+		startTime = lastChangeTime = System.nanoTime();
+		lastChangeBytes = 0;
+		window = new Window();
+	}
+
+	/**
+	 * 记录接收数据
+	 *
+	 * @param length 字节数
+	 */
+	@Contract(pure = true) protected void receive(final long length) {
+		received.add(length);
+	}
+
+	/**
+	 * 记录区间已完成
+	 *
+	 * @param start 起始位
+	 * @param end   结束位
+	 */
+	@Contract(pure = true) protected void complete(final long start, final long end) {
+		completed.add(end - start + 1);
+	}
+
+	/**
+	 * 记录重试
+	 *
+	 * @param statusCode 重试前的状态码
+	 */
+	@Contract(pure = true) protected void retry(final int statusCode) {
+		retries.increment();
+		statusRetries.computeIfAbsent(statusCode, key -> new LongAdder()).increment();
+	}
+
+	/**
+	 * 记录连接打开
+	 */
+	@Contract(pure = true) protected void connect() {
+		connections.incrementAndGet();
+	}
+
+	/**
+	 * 记录连接关闭
+	 */
+	@Contract(pure = true) protected void disconnect() {
+		connections.decrementAndGet();
+	}
+
+	/**
+	 * 登记进行中的区块
+	 *
+	 * @param start 起始位
+	 * @param end   结束位
+	 * @return 区块
+	 */
+	@Contract(pure = true) protected Piece piece(final long start, final long end) {
+		Piece piece = new Piece(start, end);
+		pieces.put(start, piece);
+		return piece;
+	}
+
+	/**
+	 * 移除结束的区块
+	 *
+	 * @param piece 区块
+	 */
+	@Contract(pure = true) protected void remove(@NotNull Piece piece) {
+		pieces.remove(piece.start, piece);
+	}
+
+	/**
+	 * 获取 已完成的字节数,不计算快照
+	 *
+	 * @return 字节数
+	 */
+	@Contract(pure = true) public long completed() {
+		return completed.sum();
+	}
+
+	/**
+	 * 获取 本次运行接收的字节数,不计算快照
+	 *
+	 * @return 字节数
+	 */
+	@Contract(pure = true) public long received() {
+		return received.sum();
+	}
+
+	/**
+	 * 获取 当前快照,速率为距上次主动获取快照的平均速率,不影响监听器的速率
+	 *
+	 * @return 快照
+	 */
+	@Contract(pure = true) public synchronized Snapshot snapshot() {
+		return snapshot(window);
+	}
+
+	/**
+	 * 获取 当前快照,速率为该窗口距上次快照的平均速率,多个调用方分别获取时各自使用新的窗口
+	 *
+	 * @param window 速率窗口,通过 {@link #window()} 创建
+	 * @return 快照
+	 */
+	@Contract(pure = true) public synchronized Snapshot snapshot(@NotNull Window window) {
+		long now = System.nanoTime();
+		long bytes = received.sum();
+		if (bytes != lastChangeBytes) { // 停滞时间按快照间隔判断,接收数据时不记录时间
+			lastChangeBytes = bytes;
+			lastChangeTime = now;
+		}
+		if (window.time < startTime) { // 开始统计前创建的窗口
+			window.time = startTime;
+			window.bytes = 0;
+		}
+		Snapshot snapshot = new Snapshot();
+		snapshot.fileSize = fileSize;
+		snapshot.received = bytes;
+		snapshot.completed = Math.min(completed.sum(), fileSize > 0 ? fileSize : Long.MAX_VALUE);
+		snapshot.connections = connections.get();
+		snapshot.retries = retries.sum();
+		statusRetries.forEach((statusCode, count) -> snapshot.statusRetries.put(statusCode, count.sum()));
+		pieces.values().forEach(piece -> snapshot.pieces.add(new Piece(piece)));
+		snapshot.elapsed = TimeUnit.NANOSECONDS.toMillis(now - startTime);
+		snapshot.idle = TimeUnit.NANOSECONDS.toMillis(now - lastChangeTime);
+		snapshot.rate = now > window.time ? (bytes - window.bytes) * 1e9 / (now - window.time) : 0;
+		snapshot.averageRate = now > startTime ? bytes * 1e9 / (now - startTime) : 0;
+		window.time = now;
+		window.bytes = bytes;
+		return snapshot;
+	}
+
+	/**
+	 * 创建速率窗口,用于多个调用方分别获取快照
+	 *
+	 * @return new Window
+	 */
+	@Contract(pure = true) public Window window() {
+		return new Window();
+	}
+
+	/**
+	 * 设置 监听器,按固定间隔接收快照
+	 *
+	 * @param listener 监听器
+	 * @param interval 间隔(毫秒)
+	 */
+	@Contract(pure = true) protected synchronized void listen(@NotNull Listener listener, final long interval) {
+		unlisten();
+		Window window = listening = new Window();
+		schedule = timer.scheduleAtFixedRate(() -> listener.progress(snapshot(window)), interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 停止监听器
+	 */
+	@Contract(pure = true) protected synchronized void unlisten() {
+		if (!Judge.isNull(schedule)) {
+			schedule.cancel(false);
+			schedule = null;
+		}
+	}
+
+	/**
+	 * 速率窗口,记录上次快照的时间及接收字节数
+	 */
+	public static class Window {
+
+		protected long time = System.nanoTime(); // 上次快照时间
+		protected long bytes; // 上次快照接收字节数
+
+		protected Window() {
+		}
+
+	}
+
+	/**
+	 * 下载进度监听器
+	 */
+	public interface Listener {
+		/**
+		 * 接收快照
+		 *
+		 * @param snapshot 快照
+		 */
+		void progress(@NotNull Snapshot snapshot);
+	}
+
+	/**
+	 * 区块状态<br/>
+	 * CONNECTING - 连接中<br/>
+	 * DOWNLOADING - 下载中<br/>
+	 * RETRYING - 等待重试
+	 */
+	public enum PieceState {
+		CONNECTING, DOWNLOADING, RETRYING
+	}
+
+	/**
+	 * 进行中的区块
+	 */
+	public static class Piece {
+
+		protected final long start; // 起始位
+		protected volatile long end; // 结束位
+		protected volatile long position; // 已写入位置
+		protected volatile PieceState state = PieceState.CONNECTING; // 状态
+		protected volatile int source = -1; // 下载源序号
+
+		protected Piece(final long start, final long end) {
+			this.start = start;
+			this.end = end;
+			this.position = start;
+		}
+
+		protected Piece(@NotNull Piece piece) {
+			this(piece.start, piece.end);
+			this.position = piece.position;
+			this.state = piece.state;
+			this.source = piece.source;
+		}
+
+		/**
+		 * 获取 起始位
+		 *
+		 * @return 起始位
+		 */
+		@Contract(pure = true) public long start() {
+			return start;
+		}
+
+		/**
+		 * 获取 结束位
+		 *
+		 * @return 结束位
+		 */
+		@Contract(pure = true) public long end() {
+			return end;
+		}
+
+		/**
+		 * 获取 已写入位置
+		 *
+		 * @return 已写入位置
+		 */
+		@Contract(pure = true) public long position() {
+			return position;
+		}
+
+		/**
+		 * 获取 状态
+		 *
+		 * @return 状态
+		 */
+		@Contract(pure = true) public PieceState state() {
+			return state;
+		}
+
+		/**
+		 * 获取 当前下载源序号,对应 {@link DownloadSources#get(int)}
+		 *
+		 * @return 序号,未选择时为-1
+		 */
+		@Contract(pure = true) public int source() {
+			return source;
+		}
+
+	}
+
+	/**
+	 * 下载统计快照
+	 */
+	public static class Snapshot {
+
+		protected long fileSize; // 文件大小
+		protected long received; // 本次运行接收的字节数
+		protected long completed; // 已完成的字节数
+		protected long retries; // 重试次数
+		protected long elapsed; // 已用时间(毫秒)
+		protected long idle; // 距最后接收数据的时间(毫秒)
+		protected int connections; // 活动连接数
+		protected double rate; // 当前速率(字节/秒)
+		protected double averageRate; // 平均速率(字节/秒)
+		protected Map<Integer, Long> statusRetries = new TreeMap<>(); // 状态码 -> 重试次数
+		protected List<Piece> pieces = new ArrayList<>(); // 进行中的区块
+
+		/**
+		 * 获取 文件大小,未知时为0
+		 *
+		 * @return 文件大小
+		 */
+		@Contract(pure = true) public long fileSize() {
+			return fileSize;
+		}
+
+		/**
+		 * 获取 本次运行接收的字节数,包含失败后重新下载的部分
+		 *
+		 * @return 字节数
+		 */
+		@Contract(pure = true) public long received() {
+			return received;
+		}
+
+		/**
+		 * 获取 已完成的字节数,包含续传前已完成的部分
+		 *
+		 * @return 字节数
+		 */
+		@Contract(pure = true) public long completed() {
+			return completed;
+		}
+
+		/**
+		 * 获取 重试次数
+		 *
+		 * @return 重试次数
+		 */
+		@Contract(pure = true) public long retries() {
+			return retries;
+		}
+
+		/**
+		 * 获取 各状态码的重试次数
+		 *
+		 * @return 状态码 -> 重试次数
+		 */
+		@Contract(pure = true) public Map<Integer, Long> statusRetries() {
+			return statusRetries;
+		}
+
+		/**
+		 * 获取 已用时间
+		 *
+		 * @return 毫秒
+		 */
+		@Contract(pure = true) public long elapsed() {
+			return elapsed;
+		}
+
+		/**
+		 * 获取 距最后接收数据的时间,可用于判断下载停滞,精度为快照间隔
+		 *
+		 * @return 毫秒
+		 */
+		@Contract(pure = true) public long idle() {
+			return idle;
+		}
+
+		/**
+		 * 获取 活动连接数
+		 *
+		 * @return 连接数
+		 */
+		@Contract(pure = true) public int connections() {
+			return connections;
+		}
+
+		/**
+		 * 获取 当前速率,距上次快照的平均速率
+		 *
+		 * @return 字节/秒
+		 */
+		@Contract(pure = true) public double rate() {
+			return rate;
+		}
+
+		/**
+		 * 获取 平均速率
+		 *
+		 * @return 字节/秒
+		 */
+		@Contract(pure = true) public double averageRate() {
+			return averageRate;
+		}
+
+		/**
+		 * 获取 进行中的区块
+		 *
+		 * @return 区块列表,按起始位排序
+		 */
+		@Contract(pure = true) public List<Piece> pieces() {
+			return pieces;
+		}
+
+		/**
+		 * 获取 完成比例
+		 *
+		 * @return 0.0 - 1.0,文件大小未知时为0
+		 */
+		@Contract(pure = true) public double ratio() {
+			return fileSize > 0 ? (double) completed / fileSize : 0;
+		}
+
+		/**
+		 * 获取 预计剩余时间,按平均速率计算
+		 *
+		 * @return 毫秒,无法计算时为-1
+		 */
+		@Contract(pure = true) public long eta() {
+			return fileSize > 0 && averageRate > 0 ? (long) ((fileSize - completed) * 1000 / averageRate) : -1;
+		}
+
+	}
+
+}
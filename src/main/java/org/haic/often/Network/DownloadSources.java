@@ -0,0 +1,256 @@
+package org.haic.often.Network;
+
+import org.haic.often.Judge;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多源下载的下载源选择,同一文件的多个链接(镜像)按实测速率加权分配区块<br/>
+ * 速率为每次请求速率的指数加权平均值,未测速的下载源按当前最快速率计算以保证被尝试<br/>
+ * 请求失败的下载源降权并暂停使用一段时间,连续失败次数越多暂停越久,成功后恢复;返回排除状态码(如404)的下载源不再使用<br/>
+ * 所有下载源均不可用时选择失败次数最少的下载源,启用熔断时跳过host熔断中的下载源
+ *
+ * @author haicdust
+ * @version 1.0
+ * @since 2022/3/20 14:36
+ */
+public class DownloadSources {
+
+	protected static final double SMOOTHING = 0.3; // 速率平滑系数
+	protected static final long DEMOTE_MILLIS = 1000; // 失败后暂停使用的基础时间(毫秒)
+	protected static final long DEMOTE_MAX_MILLIS = 60000; // 最长暂停使用时间(毫秒)
+
+	protected final List<Source> sources = new ArrayList<>(); // 下载源,序号即列表索引
+	protected final boolean circuitBreaker; // 跳过熔断中的下载源
+
+	/**
+	 * 创建下载源列表
+	 *
+	 * @param urls           链接,第一个为主链接
+	 * @param circuitBreaker 是否跳过熔断中的下载源
+	 */
+	protected DownloadSources(@NotNull List<String> urls, final boolean circuitBreaker) {
+		this.circuitBreaker = circuitBreaker;
+		for (String url : urls) {
+			if (!Judge.isEmpty(url) && sources.stream().noneMatch(source -> source.url.equals(url))) {
+				sources.add(new Source(sources.size(), url));
+			}
+		}
+	}
+
+	/**
+	 * 获取 下载源数量
+	 *
+	 * @return 数量
+	 */
+	@Contract(pure = true) public int size() {
+		return sources.size();
+	}
+
+	/**
+	 * 获取 指定序号的下载源
+	 *
+	 * @param index 序号
+	 * @return 下载源
+	 */
+	@Contract(pure = true) public Source get(final int index) {
+		return sources.get(index);
+	}
+
+	/**
+	 * 获取 所有下载源
+	 *
+	 * @return 下载源列表,按序号排列
+	 */
+	@Contract(pure = true) public List<Source> sources() {
+		return Collections.unmodifiableList(sources);
+	}
+
+	/**
+	 * 按速率加权随机选择下载源
+	 *
+	 * @return 下载源
+	 */
+	@Contract(pure = true) public synchronized Source select() {
+		long now = System.nanoTime();
+		double fastest = sources.stream().mapToDouble(source -> source.rate).max().orElse(0);
+		double[] weights = new double[sources.size()];
+		double total = 0;
+		for (Source source : sources) {
+			if (source.disabled || source.failures > 0 && now - source.demotedUntil < 0 || isOpen(source)) {
+				continue;
+			}
+			double weight = source.rate > 0 ? source.rate : Math.max(fastest, 1);
+			total += weights[source.index] = weight / (1L << Math.min(source.failures, 30)); // 曾失败的下载源恢复后降权
+		}
+		if (total <= 0) { // 没有可用的下载源
+			return sources.stream().filter(source -> !source.disabled).min((a, b) -> a.failures - b.failures).orElse(sources.get(0));
+		}
+		double random = ThreadLocalRandom.current().nextDouble(total);
+		for (Source source : sources) {
+			if ((random -= weights[source.index]) < 0 && weights[source.index] > 0) {
+				return source;
+			}
+		}
+		return sources.get(0);
+	}
+
+	/**
+	 * 判断是否所有可用下载源的host均在熔断中
+	 *
+	 * @return 是否均在熔断中,未启用熔断时为false
+	 */
+	@Contract(pure = true) public boolean isOpen() {
+		return sources.stream().filter(source -> !source.disabled).allMatch(this::isOpen);
+	}
+
+	/**
+	 * 判断下载源的host是否在熔断中
+	 *
+	 * @param source 下载源
+	 * @return 是否在熔断中,未启用熔断时为false
+	 */
+	@Contract(pure = true) protected boolean isOpen(@NotNull Source source) {
+		return circuitBreaker && CircuitBreaker.url(source.url).isOpen();
+	}
+
+	/**
+	 * 记录请求成功,更新速率并清除失败次数
+	 *
+	 * @param source 下载源
+	 * @param bytes  字节数
+	 * @param nanos  请求耗时(纳秒)
+	 */
+	@Contract(pure = true) public synchronized void success(@NotNull Source source, final long bytes, final long nanos) {
+		double rate = nanos > 0 ? bytes * 1e9 / nanos : 0;
+		source.rate = source.rate > 0 ? source.rate * (1 - SMOOTHING) + rate * SMOOTHING : rate;
+		source.failures = 0;
+		source.succeeded++;
+	}
+
+	/**
+	 * 校验下载源返回的ETag,首次返回时记录,之后需与记录的一致,ETag变化说明该下载源的文件已改变
+	 *
+	 * @param source 下载源
+	 * @param etag   响应的ETag,没有时为null
+	 * @return 是否一致,响应没有ETag时为true
+	 */
+	@Contract(pure = true) public synchronized boolean etag(@NotNull Source source, final String etag) {
+		if (Judge.isEmpty(etag)) {
+			return true;
+		} else if (Judge.isNull(source.etag)) {
+			source.etag = etag;
+			return true;
+		}
+		return source.etag.equals(etag);
+	}
+
+	/**
+	 * 记录请求失败,下载源降权并暂停使用
+	 *
+	 * @param source  下载源
+	 * @param disable 是否不再使用,仅剩此下载源时保留
+	 * @return 下载源是否已停用,停用后可立即使用其它下载源重新请求
+	 */
+	@Contract(pure = true) public synchronized boolean failure(@NotNull Source source, final boolean disable) {
+		source.failures++;
+		source.failed++;
+		source.demotedUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.min(DEMOTE_MILLIS << Math.min(source.failures - 1, 16), DEMOTE_MAX_MILLIS));
+		if (disable && sources.stream().filter(s -> !s.disabled).count() > 1) {
+			source.disabled = true;
+		}
+		return source.disabled;
+	}
+
+	/**
+	 * 下载源
+	 */
+	public static class Source {
+
+		protected final int index; // 序号
+		protected final String url; // 链接
+		protected volatile double rate; // 平均速率(字节/秒)
+		protected volatile int failures; // 连续失败次数
+		protected volatile long succeeded; // 成功次数
+		protected volatile long failed; // 失败次数
+		protected volatile long demotedUntil; // 暂停使用截止时间(纳秒)
+		protected volatile boolean disabled; // 是否停用
+		protected String etag; // 该下载源返回的ETag,同一下载源返回的区块需一致
+
+		protected Source(final int index, @NotNull String url) {
+			this.index = index;
+			this.url = url;
+		}
+
+		/**
+		 * 获取 序号
+		 *
+		 * @return 序号
+		 */
+		@Contract(pure = true) public int index() {
+			return index;
+		}
+
+		/**
+		 * 获取 链接
+		 *
+		 * @return 链接
+		 */
+		@Contract(pure = true) public String url() {
+			return url;
+		}
+
+		/**
+		 * 获取 平均速率,未测速时为0
+		 *
+		 * @return 字节/秒
+		 */
+		@Contract(pure = true) public double rate() {
+			return rate;
+		}
+
+		/**
+		 * 获取 连续失败次数
+		 *
+		 * @return 次数
+		 */
+		@Contract(pure = true) public int failures() {
+			return failures;
+		}
+
+		/**
+		 * 获取 成功次数
+		 *
+		 * @return 次数
+		 */
+		@Contract(pure = true) public long succeeded() {
+			return succeeded;
+		}
+
+		/**
+		 * 获取 失败次数
+		 *
+		 * @return 次数
+		 */
+		@Contract(pure = true) public long failed() {
+			return failed;
+		}
+
+		/**
+		 * 获取 是否停用
+		 *
+		 * @return 是否停用
+		 */
+		@Contract(pure = true) public boolean disabled() {
+			return disabled;
+		}
+
+	}
+
+}
@@ -0,0 +1,66 @@
+package org.haic.often.Network;
+
+import org.haic.often.Multithread.TokenBucket;
+import org.haic.often.URIUtils;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按host共享的连接速率限制,同一JVM内 NetworkFileUtils、JsoupUtils、HttpsUtils 使用相同host的令牌桶
+ *
+ * @author haicdust
+ * @version 1.0
+ * @since 2022/3/12 10:46
+ */
+public class HostLimiter {
+
+	/**
+	 * 默认每秒新建连接数
+	 */
+	public static final double DEFAULT_RATE = 20;
+	/**
+	 * 默认突发连接数
+	 */
+	public static final double DEFAULT_BURST = 16;
+
+	protected static final Map<String, TokenBucket> limiters = new ConcurrentHashMap<>(); // host -> 令牌桶
+
+	protected HostLimiter() {
+	}
+
+	/**
+	 * 获取 host对应的令牌桶,不存在时按默认速率创建
+	 *
+	 * @param host 主机名
+	 * @return 令牌桶
+	 */
+	@Contract(pure = true) public static TokenBucket host(@NotNull String host) {
+		return limiters.computeIfAbsent(host, key -> TokenBucket.create(DEFAULT_RATE, DEFAULT_BURST));
+	}
+
+	/**
+	 * 获取 链接所属host对应的令牌桶
+	 *
+	 * @param url 链接
+	 * @return 令牌桶
+	 */
+	@Contract(pure = true) public static TokenBucket url(@NotNull String url) {
+		return host(URIUtils.getHost(url));
+	}
+
+	/**
+	 * 设置 host的连接速率
+	 *
+	 * @param host  主机名
+	 * @param rate  每秒新建连接数,不大于0时不限制
+	 * @param burst 突发连接数
+	 * @return 令牌桶
+	 */
+	@Contract(pure = true) public static TokenBucket rate(@NotNull String host, final double rate, final double burst) {
+		return host(host).rate(rate).burst(burst);
+	}
+
+}
@@ -6,7 +6,6 @@ import com.gargoylesoftware.htmlunit.util.Cookie;
 import com.gargoylesoftware.htmlunit.util.NameValuePair;
 import org.apache.commons.logging.LogFactory;
 import org.haic.often.Judge;
-import org.haic.often.Multithread.MultiThreadUtils;
 import org.haic.often.URIUtils;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
@@ -15,6 +14,7 @@ import org.jsoup.nodes.Document;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.Map.Entry;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
@@ -41,6 +41,7 @@ public class HtmlUnitUtils {
 	protected boolean followRedirects = true; // 重定向
 	protected boolean isSocksProxy; // 是否Socks代理
 	protected boolean isCloseWebClient = true; // 是否关闭WebClient
+	protected boolean circuitBreaker = true; // 按host熔断
 	protected int waitJSTime = 1000; // JS最大运行时间
 	protected int retry; // 请求异常重试次数
 	protected int MILLISECONDS_SLEEP; // 重试等待时间
@@ -50,6 +51,7 @@ public class HtmlUnitUtils {
 	protected Map<String, String> cookies = new HashMap<>(); // cookies
 	protected List<NameValuePair> params = new ArrayList<>(); // params
 	protected List<Integer> excludeErrorStatusCodes = new ArrayList<>(); // 排除错误状态码,不重试
+	protected RetryPolicy retryPolicy = RetryPolicy.defaults(); // 重试策略
 
 	protected WebRequest request; // 会话
 	protected WebClient webClient; // HtmlUnit
@@ -58,7 +60,7 @@ public class HtmlUnitUtils {
 	protected HtmlUnitUtils() {
 		headers.put("user-agent", UserAgent.chrome()); // 设置随机请求头
 		headers.put("accept-language", "zh-CN,zh;q=0.9,en;q=0.8");
-		excludeErrorStatus(HttpStatus.SC_NOT_FOUND, HttpStatus.SC_TOO_MANY_REQUEST);
+		excludeErrorStatus(HttpStatus.SC_NOT_FOUND);
 	}
 
 	/**
@@ -184,6 +186,28 @@ public class HtmlUnitUtils {
 		return this;
 	}
 
+	/**
+	 * 设置 按host熔断,默认启用,熔断器打开时不发起连接,有限重试直接结束
+	 *
+	 * @param circuitBreaker 是否启用
+	 * @return this
+	 */
+	@Contract(pure = true) public HtmlUnitUtils circuitBreaker(final boolean circuitBreaker) {
+		this.circuitBreaker = circuitBreaker;
+		return this;
+	}
+
+	/**
+	 * 设置 重试策略,默认指数退避并遵循 Retry-After,RetryPolicy.fixed() 为固定间隔重试
+	 *
+	 * @param retryPolicy 重试策略
+	 * @return this
+	 */
+	@Contract(pure = true) public HtmlUnitUtils retryPolicy(@NotNull RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+		return this;
+	}
+
 	/**
 	 * 排除错误码,在指定状态发生时,不进行重试,可指定多个
 	 *
@@ -521,20 +545,85 @@ public class HtmlUnitUtils {
 	 * @return Page
 	 */
 	@Contract(pure = true) public Page execute(@NotNull HttpMethod method) {
-		page = executeProgram(method);
-		int statusCode = Judge.isNull(page) ? HttpStatus.SC_REQUEST_TIMEOUT : page.getWebResponse().getStatusCode();
-		for (int i = 0;
-			 !URIUtils.statusIsOK(statusCode) && !URIUtils.statusIsRedirect(statusCode) && !excludeErrorStatusCodes.contains(statusCode) && (i < retry
-					 || unlimitedRetry); i++) {
-			MultiThreadUtils.WaitForThread(MILLISECONDS_SLEEP);
-			statusCode = Judge.isNull(page) ? HttpStatus.SC_REQUEST_TIMEOUT : page.getWebResponse().getStatusCode();
-		}
+		return verify(retryPolicy.execute(url, () -> executeProgram(method), HtmlUnitUtils::statusCode, page -> header(page, "Retry-After"),
+				this::retryable, retry, unlimitedRetry, MILLISECONDS_SLEEP));
+	}
+
+	/**
+	 * 异步运行并获取 Page,在工作线程池中执行,重试等待由定时器调度
+	 *
+	 * @return CompletableFuture,请求失败时结果为null,启用错误退出时异常完成
+	 */
+	@Contract(pure = true) public CompletableFuture<Page> executeAsync() {
+		return executeAsync(HttpMethod.GET);
+	}
+
+	/**
+	 * 异步运行并获取 Page,在工作线程池中执行,重试等待由定时器调度
+	 *
+	 * @param method HttpMethod类型
+	 * @return CompletableFuture,请求失败时结果为null,启用错误退出时异常完成
+	 */
+	@Contract(pure = true) public CompletableFuture<Page> executeAsync(@NotNull HttpMethod method) {
+		return retryPolicy.executeAsync(url, () -> AsyncExecutor.supply(() -> executeProgram(method)), HtmlUnitUtils::statusCode,
+				page -> header(page, "Retry-After"), this::retryable, retry, unlimitedRetry, MILLISECONDS_SLEEP).thenApply(this::verify);
+	}
+
+	/**
+	 * 判断状态码是否需要重试,熔断器打开时仅无限重试继续
+	 *
+	 * @param statusCode 状态码
+	 * @return 是否需要重试
+	 */
+	@Contract(pure = true) protected boolean retryable(final int statusCode) {
+		CircuitBreaker breaker = breaker();
+		return RetryPolicy.retryable(statusCode, excludeErrorStatusCodes) && (unlimitedRetry || Judge.isNull(breaker) || !breaker.isOpen());
+	}
+
+	/**
+	 * 获取 请求host的熔断器
+	 *
+	 * @return 熔断器,未启用时为null
+	 */
+	@Contract(pure = true) protected CircuitBreaker breaker() {
+		return circuitBreaker ? CircuitBreaker.url(url) : null;
+	}
+
+	/**
+	 * 检查最终结果,启用错误退出时请求失败抛出异常
+	 *
+	 * @param page Page
+	 * @return Page
+	 */
+	@Contract(pure = true) protected Page verify(Page page) {
+		int statusCode = statusCode(page);
 		if (errorExit && !URIUtils.statusIsOK(statusCode) && !URIUtils.statusIsRedirect(statusCode)) {
 			throw new RuntimeException("连接URL失败，状态码: " + statusCode + " URL: " + url);
 		}
 		return page;
 	}
 
+	/**
+	 * 获取 页面状态码
+	 *
+	 * @param page Page
+	 * @return 状态码,请求失败时为 408
+	 */
+	@Contract(pure = true) protected static int statusCode(Page page) {
+		return Judge.isNull(page) ? HttpStatus.SC_REQUEST_TIMEOUT : page.getWebResponse().getStatusCode();
+	}
+
+	/**
+	 * 获取 响应头
+	 *
+	 * @param page Page
+	 * @param name 响应头名称
+	 * @return 响应头,请求失败或不存在时为null
+	 */
+	@Contract(pure = true) protected static String header(Page page, @NotNull String name) {
+		return Judge.isNull(page) ? null : page.getWebResponse().getResponseHeaderValue(name);
+	}
+
 	/**
 	 * 主程序
 	 *
@@ -565,10 +654,20 @@ public class HtmlUnitUtils {
 			}
 		}
 
+		CircuitBreaker breaker = breaker();
+		if (!Judge.isNull(breaker) && !breaker.allow()) { // 熔断中,不发起连接
+			return null;
+		}
+		int statusCode = HttpStatus.SC_REQUEST_TIMEOUT; // 抛出异常时计为失败,避免半开状态的探测请求无法释放
 		try { // 获得页面
 			page = webClient.getPage(Judge.isNull(request) ? getWebRequest(method) : request);
+			statusCode = statusCode(page);
 		} catch (IOException e) {
 			return page;
+		} finally {
+			if (!Judge.isNull(breaker)) {
+				breaker.record(statusCode);
+			}
 		}
 
 		if (!Judge.isEmpty(waitJSTime)) { // 设置JS超时时间
@@ -0,0 +1,555 @@
+package org.haic.often.Network;
+
+import org.haic.often.Judge;
+import org.haic.often.StreamUtils;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jsoup.Connection;
+import org.jsoup.Connection.Method;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.*;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 连接池传输层,基于JDK HttpClient,同一代理及重定向配置共用一个客户端,连接按host保持并复用(keep-alive)<br/>
+ * JsoupUtils、HttpsUtils、NetworkFileUtils 开启连接池后共享同一传输层,避免每个请求重复DNS解析、TCP及TLS握手<br/>
+ * HttpClient 仅支持HTTP代理,SOCKS代理请求使用原有连接方式
+ *
+ * @author haicdust
+ * @version 1.0
+ * @since 2022/3/19 16:40
+ */
+public class HttpTransport {
+
+	protected static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host", "upgrade"); // HttpClient 禁止设置的请求头
+	protected static final Map<String, HttpTransport> transports = new ConcurrentHashMap<>(); // 配置 -> 传输层
+	protected static final String[][] HTTP2_PROPERTIES = { { "jdk.httpclient.windowsize", String.valueOf(16 * 1024 * 1024) },
+			{ "jdk.httpclient.connectionWindowSize", String.valueOf(256 * 1024 * 1024) }, { "jdk.httpclient.maxframesize", String.valueOf(256 * 1024) } }; // HTTP/2 流量控制参数
+
+	protected HttpClient client; // 客户端
+
+	protected HttpTransport(@NotNull HttpClient client) {
+		this.client = client;
+	}
+
+	/**
+	 * 获取 无代理、跟随重定向的共享传输层
+	 *
+	 * @return 传输层
+	 */
+	@Contract(pure = true) public static HttpTransport shared() {
+		return of(Proxy.NO_PROXY, true);
+	}
+
+	/**
+	 * 获取 共享传输层,相同配置返回同一对象,使用JDK默认证书库验证证书及主机名
+	 *
+	 * @param proxy           代理,仅支持HTTP代理
+	 * @param followRedirects 是否跟随重定向
+	 * @return 传输层
+	 */
+	@Contract(pure = true) public static HttpTransport of(@NotNull Proxy proxy, final boolean followRedirects) {
+		return of(proxy, followRedirects, TlsConfig.system());
+	}
+
+	/**
+	 * 获取 共享传输层,相同配置返回同一对象
+	 *
+	 * @param proxy           代理,仅支持HTTP代理
+	 * @param followRedirects 是否跟随重定向
+	 * @param tls             TLS配置
+	 * @return 传输层
+	 */
+	@Contract(pure = true) public static HttpTransport of(@NotNull Proxy proxy, final boolean followRedirects, @NotNull TlsConfig tls) {
+		return of(proxy, followRedirects, HttpClient.Version.HTTP_1_1, 0, tls);
+	}
+
+	/**
+	 * 获取 共享传输层,相同配置返回同一对象,每个传输层对同一host的HTTP/2请求使用一个连接,使用JDK默认证书库验证证书及主机名
+	 *
+	 * @param proxy           代理,仅支持HTTP代理
+	 * @param followRedirects 是否跟随重定向
+	 * @param version         HTTP版本
+	 * @param index           序号,相同配置需要多个独立客户端(连接)时使用
+	 * @return 传输层
+	 */
+	@Contract(pure = true) public static HttpTransport of(@NotNull Proxy proxy, final boolean followRedirects, @NotNull HttpClient.Version version, final int index) {
+		return of(proxy, followRedirects, version, index, TlsConfig.system());
+	}
+
+	/**
+	 * 获取 共享传输层,相同配置返回同一对象,每个传输层对同一host的HTTP/2请求使用一个连接
+	 *
+	 * @param proxy           代理,仅支持HTTP代理
+	 * @param followRedirects 是否跟随重定向
+	 * @param version         HTTP版本
+	 * @param index           序号,相同配置需要多个独立客户端(连接)时使用
+	 * @param tls             TLS配置
+	 * @return 传输层
+	 */
+	@Contract(pure = true) public static HttpTransport of(@NotNull Proxy proxy, final boolean followRedirects, @NotNull HttpClient.Version version, final int index,
+			@NotNull TlsConfig tls) {
+		return transports.computeIfAbsent(proxy + "|" + followRedirects + "|" + version + "|" + index + "|" + tls.name(),
+				key -> new HttpTransport(builder(proxy, followRedirects, tls).version(version).build()));
+	}
+
+	/**
+	 * 获取 HTTP/2共享传输层,用于多路复用分块下载,同一序号的所有请求在一个连接上并发传输,服务器不支持HTTP/2时使用HTTP/1.1连接池<br/>
+	 * 不调整HTTP/2流量控制参数,需要时在首次建立连接前调用 {@link #tuneHttp2()}
+	 *
+	 * @param proxy 代理,仅支持HTTP代理
+	 * @param index 连接序号
+	 * @return 传输层
+	 */
+	@Contract(pure = true) public static HttpTransport http2(@NotNull Proxy proxy, final int index) {
+		return of(proxy, true, HttpClient.Version.HTTP_2, index);
+	}
+
+	/**
+	 * 调整HTTP/2参数,流窗口16M,连接窗口256M(可容纳16个流同时满窗口),最大帧256K,已通过系统属性设置的值保持不变<br/>
+	 * 参数为 jdk.httpclient.* 系统属性,作用于整个JVM中所有 HttpClient,且JDK只在首次使用HTTP/2时读取,需在建立任何HTTP/2连接前调用
+	 */
+	@Contract(pure = true) public static void tuneHttp2() {
+		for (String[] property : HTTP2_PROPERTIES) {
+			if (Judge.isNull(System.getProperty(property[0]))) {
+				System.setProperty(property[0], property[1]);
+			}
+		}
+	}
+
+	/**
+	 * 判断代理是否支持连接池
+	 *
+	 * @param proxy 代理
+	 * @return 是否支持
+	 */
+	@Contract(pure = true) public static boolean supports(@NotNull Proxy proxy) {
+		return proxy.type() != Proxy.Type.SOCKS;
+	}
+
+	/**
+	 * 创建 客户端构建器,使用TLS配置共享的 SSLContext
+	 *
+	 * @param proxy           代理
+	 * @param followRedirects 是否跟随重定向
+	 * @param tls             TLS配置
+	 * @return 客户端构建器
+	 */
+	@Contract(pure = true) protected static HttpClient.Builder builder(@NotNull Proxy proxy, final boolean followRedirects, @NotNull TlsConfig tls) {
+		HttpClient.Builder builder = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+				.followRedirects(followRedirects ? HttpClient.Redirect.NORMAL : HttpClient.Redirect.NEVER);
+		if (proxy.type() == Proxy.Type.HTTP) {
+			builder.proxy(ProxySelector.of((InetSocketAddress) proxy.address()));
+		}
+		return builder.sslContext(tls.context());
+	}
+
+	/**
+	 * 获取 HttpClient
+	 *
+	 * @return HttpClient
+	 */
+	@Contract(pure = true) public HttpClient client() {
+		return client;
+	}
+
+	/**
+	 * 发送请求,响应正文为流,读取完毕或关闭后连接归还连接池
+	 *
+	 * @param url     链接
+	 * @param method  请求方法
+	 * @param headers 请求头
+	 * @param body    请求正文,没有时为null
+	 * @param timeout 超时(毫秒),为0时不限制
+	 * @return 响应
+	 * @throws IOException 请求失败
+	 */
+	@Contract(pure = true) public HttpResponse<InputStream> send(@NotNull String url, @NotNull String method, @NotNull Map<String, String> headers, byte[] body,
+			final int timeout) throws IOException {
+		return send(request(url, method, headers, body, timeout));
+	}
+
+	/**
+	 * 异步发送请求,收到响应头后完成,不占用线程,响应正文为流,读取时接收
+	 *
+	 * @param url     链接
+	 * @param method  请求方法
+	 * @param headers 请求头
+	 * @param body    请求正文,没有时为null
+	 * @param timeout 超时(毫秒),为0时不限制
+	 * @return 响应,请求失败时异常完成
+	 */
+	@Contract(pure = true) public CompletableFuture<HttpResponse<InputStream>> sendAsync(@NotNull String url, @NotNull String method,
+			@NotNull Map<String, String> headers, byte[] body, final int timeout) {
+		try {
+			return sendAsync(request(url, method, headers, body, timeout));
+		} catch (IOException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	/**
+	 * 发送请求
+	 *
+	 * @param request 请求
+	 * @return 响应
+	 * @throws IOException 请求失败
+	 */
+	@Contract(pure = true) protected HttpResponse<InputStream> send(@NotNull HttpRequest request) throws IOException {
+		try {
+			return client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * 异步发送请求
+	 *
+	 * @param request 请求
+	 * @return 响应
+	 */
+	@Contract(pure = true) protected CompletableFuture<HttpResponse<InputStream>> sendAsync(@NotNull HttpRequest request) {
+		return client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+	}
+
+	/**
+	 * 创建请求,忽略 HttpClient 禁止设置的请求头
+	 *
+	 * @param url     链接
+	 * @param method  请求方法
+	 * @param headers 请求头
+	 * @param body    请求正文,没有时为null
+	 * @param timeout 超时(毫秒),为0时不限制
+	 * @return 请求
+	 * @throws IOException 链接格式错误
+	 */
+	@Contract(pure = true) protected HttpRequest request(@NotNull String url, @NotNull String method, @NotNull Map<String, String> headers, byte[] body,
+			final int timeout) throws IOException {
+		HttpRequest.Builder request;
+		try {
+			request = HttpRequest.newBuilder(URI.create(url));
+		} catch (IllegalArgumentException e) {
+			throw new IOException(e);
+		}
+		request.setHeader("accept-encoding", ContentDecoder.acceptEncoding()); // 未指定时使用支持的压缩编码
+		for (Map.Entry<String, String> entry : headers.entrySet()) {
+			if (!RESTRICTED_HEADERS.contains(entry.getKey().toLowerCase())) {
+				request.setHeader(entry.getKey(), entry.getValue());
+			}
+		}
+		if (timeout > 0) {
+			request.timeout(Duration.ofMillis(timeout));
+		}
+		return request.method(method, Judge.isNull(body) ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofByteArray(body)).build();
+	}
+
+	/**
+	 * 预先建立连接,发送HEAD请求并丢弃响应<br/>
+	 * HttpClient在首个HTTP/2连接建立前收到的并发请求会各自建立连接,多路复用前调用以保证后续请求共用一个连接
+	 *
+	 * @param url     链接
+	 * @param headers 请求头
+	 * @param timeout 超时(毫秒),为0时不限制
+	 * @return 是否成功
+	 */
+	@Contract(pure = true) public boolean preconnect(@NotNull String url, @NotNull Map<String, String> headers, final int timeout) {
+		try {
+			send(url, "HEAD", headers, null, timeout).body().close();
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * 发送请求,返回Jsoup响应对象
+	 *
+	 * @param url         链接
+	 * @param method      请求方法
+	 * @param headers     请求头
+	 * @param cookies     cookies
+	 * @param params      参数,GET请求拼接至链接,其它请求作为表单正文
+	 * @param requestBody 请求正文,设置时替代表单参数
+	 * @param timeout     超时(毫秒),为0时不限制
+	 * @return 响应
+	 * @throws IOException 请求失败
+	 */
+	@Contract(pure = true) public Connection.Response execute(@NotNull String url, @NotNull Method method, @NotNull Map<String, String> headers,
+			@NotNull Map<String, String> cookies, @NotNull Map<String, String> params, String requestBody, final int timeout) throws IOException {
+		return new PooledResponse(send(request(url, method, headers, cookies, params, requestBody, timeout)), method);
+	}
+
+	/**
+	 * 异步发送请求,收到响应头后完成,返回Jsoup响应对象
+	 *
+	 * @param url         链接
+	 * @param method      请求方法
+	 * @param headers     请求头
+	 * @param cookies     cookies
+	 * @param params      参数,GET请求拼接至链接,其它请求作为表单正文
+	 * @param requestBody 请求正文,设置时替代表单参数
+	 * @param timeout     超时(毫秒),为0时不限制
+	 * @return 响应,请求失败时异常完成
+	 */
+	@Contract(pure = true) public CompletableFuture<Connection.Response> executeAsync(@NotNull String url, @NotNull Method method,
+			@NotNull Map<String, String> headers, @NotNull Map<String, String> cookies, @NotNull Map<String, String> params, String requestBody, final int timeout) {
+		try {
+			return sendAsync(request(url, method, headers, cookies, params, requestBody, timeout)).thenApply(response -> {
+				try {
+					return new PooledResponse(response, method);
+				} catch (IOException e) {
+					throw new CompletionException(e);
+				}
+			});
+		} catch (IOException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	/**
+	 * 创建请求,cookies合并为请求头,参数按请求方法拼接至链接或作为表单正文
+	 *
+	 * @param url         链接
+	 * @param method      请求方法
+	 * @param headers     请求头
+	 * @param cookies     cookies
+	 * @param params      参数,GET请求拼接至链接,其它请求作为表单正文
+	 * @param requestBody 请求正文,设置时替代表单参数
+	 * @param timeout     超时(毫秒),为0时不限制
+	 * @return 请求
+	 * @throws IOException 链接格式错误
+	 */
+	@Contract(pure = true) protected HttpRequest request(@NotNull String url, @NotNull Method method, @NotNull Map<String, String> headers,
+			@NotNull Map<String, String> cookies, @NotNull Map<String, String> params, String requestBody, final int timeout) throws IOException {
+		Map<String, String> requestHeaders = new HashMap<>(headers);
+		if (!cookies.isEmpty()) {
+			requestHeaders.put("cookie", cookies.entrySet().stream().map(entry -> entry.getKey() + "=" + entry.getValue()).collect(Collectors.joining("; ")));
+		}
+		String query = params.entrySet().stream()
+				.map(entry -> URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8) + "=" + URLEncoder.encode(entry.getValue(), StandardCharsets.UTF_8))
+				.collect(Collectors.joining("&"));
+		byte[] body = null;
+		if (!Judge.isEmpty(requestBody)) {
+			body = requestBody.getBytes(StandardCharsets.UTF_8);
+			requestHeaders.putIfAbsent("content-type", "application/json; charset=UTF-8");
+		} else if (!query.isEmpty() && method.hasBody()) {
+			body = query.getBytes(StandardCharsets.UTF_8);
+			requestHeaders.putIfAbsent("content-type", "application/x-www-form-urlencoded; charset=UTF-8");
+		}
+		if (!query.isEmpty() && !method.hasBody()) {
+			url += (url.contains("?") ? "&" : "?") + query;
+		}
+		return request(url, method.name(), requestHeaders, body, timeout);
+	}
+
+	/**
+	 * 连接池响应,实现Jsoup响应接口,正文按 content-encoding 由 ContentDecoder 流式解码
+	 */
+	protected static class PooledResponse implements Connection.Response {
+
+		protected URL url; // 最终链接
+		protected Method method; // 请求方法
+		protected int statusCode; // 状态码
+		protected String charset; // 编码
+		protected InputStream stream; // 响应流
+		protected byte[] bytes; // 已读取的正文
+		protected Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER); // 响应头
+		protected Map<String, String> cookies = new LinkedHashMap<>(); // cookies
+
+		protected PooledResponse(@NotNull HttpResponse<InputStream> response, @NotNull Method method) throws IOException {
+			this(response.uri().toURL(), method, response.statusCode(), response.headers().map(), null);
+			this.stream = response.body();
+		}
+
+		/**
+		 * 使用已读取的正文创建响应,如缓存的响应,正文已解码
+		 *
+		 * @param url        链接
+		 * @param method     请求方法
+		 * @param statusCode 状态码
+		 * @param headers    响应头
+		 * @param bytes      正文
+		 */
+		protected PooledResponse(@NotNull URL url, @NotNull Method method, final int statusCode, @NotNull Map<String, List<String>> headers, byte[] bytes) {
+			this.url = url;
+			this.method = method;
+			this.statusCode = statusCode;
+			this.bytes = bytes;
+			headers.forEach((name, values) -> this.headers.put(name, new ArrayList<>(values)));
+			for (String cookie : headers("set-cookie")) {
+				String[] pair = cookie.split(";")[0].split("=", 2);
+				if (pair.length == 2 && !pair[0].isBlank()) {
+					cookies.put(pair[0].trim(), pair[1].trim());
+				}
+			}
+			String contentType = contentType();
+			if (!Judge.isNull(contentType)) {
+				for (String parameter : contentType.split(";")) {
+					if (parameter.trim().toLowerCase().startsWith("charset=")) {
+						charset = parameter.trim().substring(8).replace("\"", "");
+					}
+				}
+			}
+		}
+
+		@Override public URL url() {
+			return url;
+		}
+
+		@Override public Connection.Response url(URL url) {
+			this.url = url;
+			return this;
+		}
+
+		@Override public Method method() {
+			return method;
+		}
+
+		@Override public Connection.Response method(Method method) {
+			this.method = method;
+			return this;
+		}
+
+		@Override public String header(String name) {
+			List<String> values = headers(name);
+			return values.isEmpty() ? null : String.join(", ", values);
+		}
+
+		@Override public List<String> headers(String name) {
+			return headers.getOrDefault(name, Collections.emptyList());
+		}
+
+		@Override public Connection.Response header(String name, String value) {
+			headers.put(name, new ArrayList<>(List.of(value)));
+			return this;
+		}
+
+		@Override public Connection.Response addHeader(String name, String value) {
+			headers.computeIfAbsent(name, key -> new ArrayList<>()).add(value);
+			return this;
+		}
+
+		@Override public boolean hasHeader(String name) {
+			return headers.containsKey(name);
+		}
+
+		@Override public boolean hasHeaderWithValue(String name, String value) {
+			return headers(name).stream().anyMatch(value::equalsIgnoreCase);
+		}
+
+		@Override public Connection.Response removeHeader(String name) {
+			headers.remove(name);
+			return this;
+		}
+
+		@Override public Map<String, String> headers() {
+			Map<String, String> result = new LinkedHashMap<>();
+			headers.forEach((name, values) -> result.put(name, values.isEmpty() ? "" : values.get(0)));
+			return result;
+		}
+
+		@Override public Map<String, List<String>> multiHeaders() {
+			return headers;
+		}
+
+		@Override public String cookie(String name) {
+			return cookies.get(name);
+		}
+
+		@Override public Connection.Response cookie(String name, String value) {
+			cookies.put(name, value);
+			return this;
+		}
+
+		@Override public boolean hasCookie(String name) {
+			return cookies.containsKey(name);
+		}
+
+		@Override public Connection.Response removeCookie(String name) {
+			cookies.remove(name);
+			return this;
+		}
+
+		@Override public Map<String, String> cookies() {
+			return cookies;
+		}
+
+		@Override public int statusCode() {
+			return statusCode;
+		}
+
+		@Override public String statusMessage() {
+			return String.valueOf(statusCode);
+		}
+
+		@Override public String charset() {
+			return charset;
+		}
+
+		@Override public Connection.Response charset(String charset) {
+			this.charset = charset;
+			return this;
+		}
+
+		@Override public String contentType() {
+			return header("content-type");
+		}
+
+		@Override public Document parse() throws IOException {
+			return Jsoup.parse(new ByteArrayInputStream(bodyAsBytes()), charset, url.toString());
+		}
+
+		@Override public String body() {
+			Charset charset;
+			try {
+				charset = Judge.isEmpty(this.charset) ? StandardCharsets.UTF_8 : Charset.forName(this.charset);
+			} catch (IllegalArgumentException e) {
+				charset = StandardCharsets.UTF_8;
+			}
+			return new String(bodyAsBytes(), charset);
+		}
+
+		@Override public byte[] bodyAsBytes() {
+			bufferUp();
+			return bytes;
+		}
+
+		@Override public Connection.Response bufferUp() {
+			if (Judge.isNull(bytes)) {
+				try (InputStream inputStream = bodyStream()) {
+					bytes = StreamUtils.stream(inputStream).toByteArray();
+				} catch (IOException e) {
+					bytes = new byte[0];
+				}
+			}
+			return this;
+		}
+
+		@Override public BufferedInputStream bodyStream() {
+			if (!Judge.isNull(bytes)) {
+				return new BufferedInputStream(new ByteArrayInputStream(bytes));
+			}
+			return new BufferedInputStream(ContentDecoder.decode(stream, header("content-encoding")));
+		}
+
+	}
+
+}
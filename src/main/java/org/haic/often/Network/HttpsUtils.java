@@ -1,7 +1,7 @@
 package org.haic.often.Network;
 
 import org.haic.often.Judge;
-import org.haic.often.Multithread.MultiThreadUtils;
+import org.haic.often.Multithread.TokenBucket;
 import org.haic.often.StreamUtils;
 import org.haic.often.URIUtils;
 import org.jetbrains.annotations.Contract;
@@ -10,20 +10,35 @@ import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 
 import javax.net.ssl.*;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.Socket;
+import java.net.http.HttpResponse;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Scanner;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Https 工具类
@@ -44,7 +59,13 @@ public class HttpsUtils {
 	protected boolean unlimitedRetry;// 请求异常无限重试
 	protected boolean errorExit; // 错误退出
 	protected boolean followRedirects = true; // 重定向
+	protected boolean pooled; // 使用连接池
 	protected Proxy proxy = Proxy.NO_PROXY; // 代理
+	protected boolean circuitBreaker = true; // 按host熔断
+	protected TokenBucket limiter; // 连接速率限制
+	protected TlsConfig tls = TlsConfig.trustAll(); // TLS配置,默认忽略证书验证
+	protected RetryPolicy retryPolicy = RetryPolicy.defaults(); // 重试策略
+	protected ResponseCache cache; // 响应缓存,为空时不缓存
 	protected HttpURLConnection conn; // HttpURLConnection对象
 
 	protected Map<String, String> headers = new HashMap<>(); // 请求头
@@ -53,7 +74,7 @@ public class HttpsUtils {
 	protected HttpsUtils() {
 		headers.put("user-agent", UserAgent.chrome()); // 设置随机请求头
 		headers.put("accept-language", "zh-CN,zh;q=0.9,en;q=0.8");
-		excludeErrorStatus(HttpStatus.SC_NOT_FOUND, HttpStatus.SC_TOO_MANY_REQUEST);
+		excludeErrorStatus(HttpStatus.SC_NOT_FOUND);
 	}
 
 	/**
@@ -170,6 +191,72 @@ public class HttpsUtils {
 		return this;
 	}
 
+	/**
+	 * 设置 重试策略,默认指数退避并遵循 Retry-After,RetryPolicy.fixed() 为固定间隔重试
+	 *
+	 * @param retryPolicy 重试策略
+	 * @return this
+	 */
+	@Contract(pure = true) public HttpsUtils retryPolicy(@NotNull RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+		return this;
+	}
+
+	/**
+	 * 设置 连接速率限制,每次发起连接前获取令牌,可使用 HostLimiter 获取按host共享的令牌桶
+	 *
+	 * @param limiter 令牌桶
+	 * @return this
+	 */
+	@Contract(pure = true) public HttpsUtils limiter(TokenBucket limiter) {
+		this.limiter = limiter;
+		return this;
+	}
+
+	/**
+	 * 设置 按host熔断,默认启用,熔断器打开时不发起连接,有限重试直接结束
+	 *
+	 * @param circuitBreaker 是否启用
+	 * @return this
+	 */
+	@Contract(pure = true) public HttpsUtils circuitBreaker(final boolean circuitBreaker) {
+		this.circuitBreaker = circuitBreaker;
+		return this;
+	}
+
+	/**
+	 * 设置 TLS配置,默认 TlsConfig.trustAll() 忽略证书验证,TlsConfig.system() 或 TlsConfig.trustStore(path, password) 验证证书
+	 *
+	 * @param tls TLS配置
+	 * @return this
+	 */
+	@Contract(pure = true) public HttpsUtils tls(@NotNull TlsConfig tls) {
+		this.tls = tls;
+		return this;
+	}
+
+	/**
+	 * 设置 响应缓存,GET请求新鲜的缓存直接返回,过期的缓存条件请求验证,多个对象可共用同一缓存
+	 *
+	 * @param cache 响应缓存
+	 * @return this
+	 */
+	@Contract(pure = true) public HttpsUtils cache(@NotNull ResponseCache cache) {
+		this.cache = cache;
+		return this;
+	}
+
+	/**
+	 * 设置 使用连接池,同一host的请求复用连接,SOCKS代理时仍使用 HttpURLConnection
+	 *
+	 * @param pooled 是否使用连接池
+	 * @return this
+	 */
+	@Contract(pure = true) public HttpsUtils pooled(final boolean pooled) {
+		this.pooled = pooled;
+		return this;
+	}
+
 	/**
 	 * 设置 超时
 	 *
@@ -355,8 +442,7 @@ public class HttpsUtils {
 	 * @return 响应结果
 	 */
 	@Contract(pure = true) public Document get(@NotNull HttpMethod method) {
-		String result = execute(method).body();
-		return Judge.isEmpty(result) ? null : Jsoup.parse(result);
+		return execute(method).parse();
 	}
 
 	/**
@@ -375,19 +461,62 @@ public class HttpsUtils {
 	 * @return HttpURLConnection
 	 */
 	@Contract(pure = true) public HttpsResult execute(@NotNull HttpMethod method) {
-		executeProgram(method);
-		int statusCode = executeProgram(method).statusCode();
-		for (int i = 0;
-			 !URIUtils.statusIsOK(statusCode) && !URIUtils.statusIsRedirect(statusCode) && !excludeErrorStatusCodes.contains(statusCode) && (i < retry
-					 || unlimitedRetry); i++) {
-			MultiThreadUtils.WaitForThread(MILLISECONDS_SLEEP); // 程序等待
-			statusCode = executeProgram(method).statusCode();
-		}
+		return verify(retryPolicy.execute(url, () -> executeProgram(method), HttpsResult::statusCode, result -> result.header("retry-after"),
+				this::retryable, retry, unlimitedRetry, MILLISECONDS_SLEEP));
+	}
+
+	/**
+	 * 异步运行程序,连接池请求不占用线程,其它请求在工作线程池中执行,重试等待由定时器调度
+	 *
+	 * @return CompletableFuture,启用错误退出时异常完成
+	 */
+	@Contract(pure = true) public CompletableFuture<HttpsResult> executeAsync() {
+		return executeAsync(HttpMethod.GET);
+	}
+
+	/**
+	 * 异步运行程序,连接池请求不占用线程,其它请求在工作线程池中执行,重试等待由定时器调度
+	 *
+	 * @param method 请求方法 HttpMethod
+	 * @return CompletableFuture,启用错误退出时异常完成
+	 */
+	@Contract(pure = true) public CompletableFuture<HttpsResult> executeAsync(@NotNull HttpMethod method) {
+		return retryPolicy.executeAsync(url, () -> executeProgramAsync(method), HttpsResult::statusCode, result -> result.header("retry-after"),
+				this::retryable, retry, unlimitedRetry, MILLISECONDS_SLEEP).thenApply(this::verify);
+	}
+
+	/**
+	 * 判断状态码是否需要重试,熔断器打开时仅无限重试继续
+	 *
+	 * @param statusCode 状态码
+	 * @return 是否需要重试
+	 */
+	@Contract(pure = true) protected boolean retryable(final int statusCode) {
+		CircuitBreaker breaker = breaker();
+		return RetryPolicy.retryable(statusCode, excludeErrorStatusCodes) && (unlimitedRetry || Judge.isNull(breaker) || !breaker.isOpen());
+	}
+
+	/**
+	 * 获取 请求host的熔断器
+	 *
+	 * @return 熔断器,未启用时为null
+	 */
+	@Contract(pure = true) protected CircuitBreaker breaker() {
+		return circuitBreaker ? CircuitBreaker.url(url) : null;
+	}
+
+	/**
+	 * 检查最终结果,启用错误退出时请求失败抛出异常
+	 *
+	 * @param result HttpsResult
+	 * @return HttpsResult
+	 */
+	@Contract(pure = true) protected HttpsResult verify(@NotNull HttpsResult result) {
+		int statusCode = result.statusCode();
 		if (errorExit && !URIUtils.statusIsOK(statusCode) && !URIUtils.statusIsRedirect(statusCode)) {
 			throw new RuntimeException("连接URL失败，状态码: " + statusCode + " URL: " + url);
 		}
-		//	new HttpsResult(conn.getURL(), conn);
-		return new HttpsResult(url, conn);
+		return result;
 	}
 
 	/**
@@ -400,6 +529,35 @@ public class HttpsUtils {
 		return executeProgram(url, method);
 	}
 
+	/**
+	 * 异步主程序,获取连接令牌后发送请求
+	 *
+	 * @param method http响应类型 HttpMethod
+	 * @return CompletableFuture
+	 */
+	@Contract(pure = true) protected CompletableFuture<HttpsResult> executeProgramAsync(@NotNull HttpMethod method) {
+		String url = method == HttpMethod.GET && !Judge.isEmpty(params) ? this.url + "?" + params : this.url;
+		ResponseCache.Entry entry = cached(url, method);
+		if (!Judge.isNull(entry) && entry.isFresh()) { // 缓存有效,不发起请求
+			return CompletableFuture.completedFuture(new HttpsResult(url, entry));
+		}
+		Map<String, String> conditional = Judge.isNull(entry) ? new HashMap<>() : cache.conditional(entry);
+		CircuitBreaker breaker = breaker();
+		if (!Judge.isNull(breaker) && !breaker.allow()) { // 熔断中,不发起连接
+			return CompletableFuture.completedFuture(new HttpsResult(url, (HttpResponse<InputStream>) null));
+		}
+		CompletableFuture<Void> permit = Judge.isNull(limiter) ? CompletableFuture.completedFuture(null) : limiter.acquireAsync(1);
+		CompletableFuture<HttpsResult> result = pooled && HttpTransport.supports(proxy) ?
+				permit.thenCompose(v -> HttpTransport.of(proxy, followRedirects, tls)
+								.sendAsync(url, method.name(), pooledHeaders(conditional), pooledBody(method), timeout))
+						.handle((response, e) -> new HttpsResult(url, response)) :
+				permit.thenApplyAsync(v -> executeConnection(url, method, conditional), AsyncExecutor.workers());
+		if (!Judge.isNull(breaker)) { // 异常完成时计为失败
+			result = result.whenComplete((value, e) -> breaker.record(Judge.isNull(value) ? HttpStatus.SC_REQUEST_TIMEOUT : value.statusCode()));
+		}
+		return isCacheable(method) ? result.thenApplyAsync(value -> cache(url, method, entry, value), AsyncExecutor.workers()) : result;
+	}
+
 	/**
 	 * 主程序
 	 *
@@ -408,20 +566,115 @@ public class HttpsUtils {
 	 * @return this
 	 */
 	@Contract(pure = true) protected HttpsResult executeProgram(@NotNull String url, @NotNull HttpMethod method) {
-		try {
-			if (method == HttpMethod.GET && !Judge.isEmpty(params)) {
-				url = url + "?" + params;
+		if (method == HttpMethod.GET && !Judge.isEmpty(params)) {
+			url = url + "?" + params;
+		}
+
+		ResponseCache.Entry entry = cached(url, method);
+		if (!Judge.isNull(entry) && entry.isFresh()) { // 缓存有效,不发起请求
+			return new HttpsResult(url, entry);
+		}
+
+		CircuitBreaker breaker = circuitBreaker ? CircuitBreaker.url(url) : null; // 重定向时按目标host熔断
+		if (!Judge.isNull(breaker) && !breaker.allow()) { // 熔断中,不发起连接
+			return new HttpsResult(url, (HttpResponse<InputStream>) null);
+		}
+
+		HttpsResult result = null;
+		try { // 允许的请求必须记录结果,抛出异常时计为失败,避免半开状态的探测请求无法释放
+			if (!Judge.isNull(limiter)) {
+				limiter.acquire();
+			}
+
+			// 连接池
+			Map<String, String> conditional = Judge.isNull(entry) ? new HashMap<>() : cache.conditional(entry);
+			result = pooled && HttpTransport.supports(proxy) ? executePooled(url, method, conditional) : executeConnection(url, method, conditional);
+		} finally {
+			if (!Judge.isNull(breaker)) {
+				breaker.record(Judge.isNull(result) ? HttpStatus.SC_REQUEST_TIMEOUT : result.statusCode());
+			}
+		}
+		return cache(url, method, entry, result);
+	}
+
+	/**
+	 * 判断请求是否使用缓存,仅缓存不带cookie及授权请求头的GET请求
+	 *
+	 * @param method http响应类型 HttpMethod
+	 * @return 是否使用缓存
+	 */
+	@Contract(pure = true) protected boolean isCacheable(@NotNull HttpMethod method) {
+		return !Judge.isNull(cache) && method == HttpMethod.GET && !ResponseCache.isPrivate(headers);
+	}
+
+	/**
+	 * 获取 请求的缓存,缓存的响应带 Vary 时按本次发送的请求头匹配
+	 *
+	 * @param url    请求的URL,包含参数
+	 * @param method http响应类型 HttpMethod
+	 * @return 缓存,不使用缓存或没有缓存时为null
+	 */
+	@Contract(pure = true) protected ResponseCache.Entry cached(@NotNull String url, @NotNull HttpMethod method) {
+		return isCacheable(method) ? cache.get(url, pooledHeaders()) : null;
+	}
+
+	/**
+	 * 处理响应缓存,304时返回验证后的缓存,可缓存的200响应读取正文后写入缓存并返回缓存
+	 *
+	 * @param url    请求的URL,包含参数
+	 * @param method http响应类型 HttpMethod
+	 * @param entry  请求前的缓存,没有时为null
+	 * @param result HttpsResult
+	 * @return HttpsResult
+	 */
+	@Contract(pure = true) protected HttpsResult cache(@NotNull String url, @NotNull HttpMethod method, ResponseCache.Entry entry, @NotNull HttpsResult result) {
+		if (!isCacheable(method)) {
+			return result;
+		}
+		int statusCode = result.statusCode();
+		if (statusCode == HttpStatus.SC_NOT_MODIFIED && !Judge.isNull(entry)) {
+			return new HttpsResult(url, cache.revalidate(entry, result.multiHeaders()));
+		}
+		Map<String, List<String>> headers = result.multiHeaders();
+		if (cache.storable(statusCode, headers)) {
+			byte[] body = result.bodyAsBytes(); // 正文已读取,返回缓存的响应
+			if (!Judge.isNull(body)) {
+				headers.remove("content-encoding"); // 缓存的正文已解码
+				headers.remove("content-length");
+				ResponseCache.Entry stored = cache.put(url, statusCode, headers, body, pooledHeaders());
+				return Judge.isNull(stored) ? new HttpsResult(url, new ResponseCache.Entry(url, statusCode, headers, body, System.currentTimeMillis(), 0)) : new HttpsResult(url, stored);
 			}
+		}
+		return result;
+	}
 
+	/**
+	 * 使用 HttpURLConnection 发送请求
+	 *
+	 * @param url    请求的URL
+	 * @param method http响应类型 HttpMethod
+	 * @return HttpsResult
+	 */
+	@Contract(pure = true) protected HttpsResult executeConnection(@NotNull String url, @NotNull HttpMethod method) {
+		return executeConnection(url, method, new HashMap<>());
+	}
+
+	/**
+	 * 使用 HttpURLConnection 发送请求
+	 *
+	 * @param url    请求的URL
+	 * @param method http响应类型 HttpMethod
+	 * @param extra  附加请求头,如条件请求头
+	 * @return HttpsResult
+	 */
+	@Contract(pure = true) protected HttpsResult executeConnection(@NotNull String url, @NotNull HttpMethod method, @NotNull Map<String, String> extra) {
+		try {
 			// 打开和URL之间的连接
 			conn = (HttpURLConnection) URIUtils.getURL(url).openConnection(proxy);
 
-			// https 忽略证书验证
-			if (url.startsWith("https")) {
-				SSLContext ctx = MyX509TrustManagerUtils();
-				((HttpsURLConnection) conn).setSSLSocketFactory(ctx.getSocketFactory());
-				// 在握手期间，如果 URL 的主机名和服务器的标识主机名不匹配，则验证机制可以回调此接口的实现程序来确定是否应该允许此连接。
-				((HttpsURLConnection) conn).setHostnameVerifier((arg0, arg1) -> true);
+			// https 使用共享的TLS配置,复用会话缓存
+			if (conn instanceof HttpsURLConnection) {
+				tls.apply((HttpsURLConnection) conn);
 			}
 
 			// 发送POST请求必须设置如下两行
@@ -435,9 +688,13 @@ public class HttpsUtils {
 			conn.setReadTimeout(timeout); // 设置超时
 
 			// 设置通用的请求属性
+			conn.setRequestProperty("accept-encoding", ContentDecoder.acceptEncoding()); // 未指定时使用支持的压缩编码,响应流自动解码
 			for (Map.Entry<String, String> entry : headers.entrySet()) {
 				conn.setRequestProperty(entry.getKey(), entry.getValue());
 			}
+			for (Map.Entry<String, String> entry : extra.entrySet()) {
+				conn.setRequestProperty(entry.getKey(), entry.getValue());
+			}
 
 			// 设置上一页
 			if (!Judge.isEmpty(referrer)) {
@@ -476,16 +733,76 @@ public class HttpsUtils {
 		return new HttpsResult(url, conn);
 	}
 
-	protected SSLContext MyX509TrustManagerUtils() {
-		TrustManager[] tm = { new MyX509TrustManager() };
-		SSLContext ctx = null;
+	/**
+	 * 使用连接池发送请求
+	 *
+	 * @param url    请求的URL
+	 * @param method http响应类型 HttpMethod
+	 * @return HttpsResult
+	 */
+	@Contract(pure = true) protected HttpsResult executePooled(@NotNull String url, @NotNull HttpMethod method) {
+		return executePooled(url, method, new HashMap<>());
+	}
+
+	/**
+	 * 使用连接池发送请求
+	 *
+	 * @param url    请求的URL
+	 * @param method http响应类型 HttpMethod
+	 * @param extra  附加请求头,如条件请求头
+	 * @return HttpsResult
+	 */
+	@Contract(pure = true) protected HttpsResult executePooled(@NotNull String url, @NotNull HttpMethod method, @NotNull Map<String, String> extra) {
 		try {
-			ctx = SSLContext.getInstance("TLS");
-			ctx.init(null, tm, null);
-		} catch (Exception e) {
-			e.printStackTrace();
+			return new HttpsResult(url, HttpTransport.of(proxy, followRedirects, tls).send(url, method.name(), pooledHeaders(extra), pooledBody(method), timeout));
+		} catch (IOException e) {
+			return new HttpsResult(url, (HttpResponse<InputStream>) null);
 		}
-		return ctx;
+	}
+
+	/**
+	 * 获取 连接池请求头,包含上一页
+	 *
+	 * @return 请求头
+	 */
+	@Contract(pure = true) protected Map<String, String> pooledHeaders() {
+		return pooledHeaders(new HashMap<>());
+	}
+
+	/**
+	 * 获取 连接池请求头,包含上一页及附加请求头
+	 *
+	 * @param extra 附加请求头,如条件请求头
+	 * @return 请求头
+	 */
+	@Contract(pure = true) protected Map<String, String> pooledHeaders(@NotNull Map<String, String> extra) {
+		Map<String, String> headers = new HashMap<>(this.headers);
+		headers.putAll(extra);
+		if (!Judge.isEmpty(referrer)) {
+			headers.put("referer", referrer);
+		}
+		return headers;
+	}
+
+	/**
+	 * 获取 连接池请求正文,POST请求为参数及请求数据
+	 *
+	 * @param method http响应类型 HttpMethod
+	 * @return 请求正文,没有时为null
+	 */
+	@Contract(pure = true) protected byte[] pooledBody(@NotNull HttpMethod method) {
+		return method == HttpMethod.POST ?
+				((Judge.isEmpty(params) ? "" : params) + (Judge.isEmpty(requestBody) ? "" : requestBody)).getBytes(StandardCharsets.UTF_8) :
+				null;
+	}
+
+	/**
+	 * 获取 当前TLS配置的 SSLContext,所有请求共用
+	 *
+	 * @return SSLContext
+	 */
+	protected SSLContext MyX509TrustManagerUtils() {
+		return tls.context();
 	}
 
 	/**
@@ -553,8 +870,12 @@ public class HttpsUtils {
 	}
 
 	public static class HttpsResult {
+		protected static final long TRANSFER_SIZE = 1 << 20; // 单次写入文件字节数
+
 		protected String url; // URL
 		protected HttpURLConnection conn; // HttpURLConnection对象
+		protected HttpResponse<InputStream> response; // 连接池响应
+		protected ResponseCache.Entry entry; // 缓存的响应
 
 		/**
 		 * Constructor for the HttpURLConnection.
@@ -566,6 +887,26 @@ public class HttpsUtils {
 			this.conn = conn;
 		}
 
+		/**
+		 * Constructor for the pooled HttpResponse.
+		 *
+		 * @param response HttpResponse,请求失败时为null
+		 */
+		protected HttpsResult(String url, HttpResponse<InputStream> response) {
+			this.url = url;
+			this.response = response;
+		}
+
+		/**
+		 * Constructor for the cached response.
+		 *
+		 * @param entry 缓存的响应
+		 */
+		protected HttpsResult(String url, @NotNull ResponseCache.Entry entry) {
+			this.url = url;
+			this.entry = entry;
+		}
+
 		/**
 		 *
 		 */
@@ -574,7 +915,7 @@ public class HttpsUtils {
 		}
 
 		/**
-		 * 获取 HttpURLConnection
+		 * 获取 HttpURLConnection,使用连接池时为null
 		 *
 		 * @return HttpURLConnection
 		 */
@@ -582,12 +923,44 @@ public class HttpsUtils {
 			return conn;
 		}
 
+		/**
+		 * 获取 连接池响应,未使用连接池时为null
+		 *
+		 * @return HttpResponse
+		 */
+		@Contract(pure = true) public HttpResponse<InputStream> response() {
+			return response;
+		}
+
+		/**
+		 * 是否为连接池请求
+		 *
+		 * @return 是否为连接池请求
+		 */
+		@Contract(pure = true) protected boolean pooled() {
+			return Judge.isNull(conn);
+		}
+
+		/**
+		 * 是否为缓存的响应
+		 *
+		 * @return 是否为缓存的响应
+		 */
+		@Contract(pure = true) public boolean cached() {
+			return !Judge.isNull(entry);
+		}
+
 		/**
 		 * 获取 请求响应代码
 		 *
 		 * @return 请求响应代码
 		 */
 		@Contract(pure = true) public int statusCode() {
+			if (cached()) {
+				return entry.statusCode();
+			} else if (pooled()) {
+				return Judge.isNull(response) ? HttpStatus.SC_REQUEST_TIMEOUT : response.statusCode();
+			}
 			int statusCode;
 			try {
 				statusCode = conn.getResponseCode();
@@ -603,6 +976,11 @@ public class HttpsUtils {
 		 * @return 请求头的值
 		 */
 		@Contract(pure = true) public String header(String name) {
+			if (cached()) {
+				return entry.header(name);
+			} else if (pooled()) {
+				return Judge.isNull(response) ? null : response.headers().firstValue(name).orElse(null);
+			}
 			return conn.getHeaderField(name);
 		}
 
@@ -612,10 +990,36 @@ public class HttpsUtils {
 		 * @return 请求头
 		 */
 		@Contract(pure = true) public Map<String, String> headers() {
+			if (cached()) {
+				return entry.headers().entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, stringListEntry -> stringListEntry.getValue().toString()));
+			} else if (pooled()) {
+				return Judge.isNull(response) ?
+						new HashMap<>() :
+						response.headers().map().entrySet().stream()
+								.collect(Collectors.toMap(Map.Entry::getKey, stringListEntry -> stringListEntry.getValue().toString()));
+			}
 			return conn.getHeaderFields().entrySet().stream()
 					.collect(Collectors.toMap(Map.Entry::getKey, stringListEntry -> stringListEntry.getValue().toString()));
 		}
 
+		/**
+		 * 获取 请求头,保留多个值
+		 *
+		 * @return 请求头
+		 */
+		@Contract(pure = true) public Map<String, List<String>> multiHeaders() {
+			Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+			Map<String, List<String>> source = cached() ?
+					entry.headers() :
+					pooled() ? Judge.isNull(response) ? new HashMap<>() : response.headers().map() : conn.getHeaderFields();
+			source.forEach((name, values) -> {
+				if (!Judge.isNull(name)) { // HttpURLConnection 的状态行没有名称
+					headers.put(name, values);
+				}
+			});
+			return headers;
+		}
+
 		/**
 		 * 获取 cookies
 		 *
@@ -623,7 +1027,12 @@ public class HttpsUtils {
 		 */
 		@Contract(pure = true) public Map<String, String> cookies() {
 			Map<String, String> cookies = new HashMap<>();
-			for (String str : conn.getHeaderFields().get("set-cookie")) {
+			List<String> setCookies = cached() ?
+					entry.headers().getOrDefault("set-cookie", new ArrayList<>()) :
+					pooled() ?
+							Judge.isNull(response) ? new ArrayList<>() : response.headers().allValues("set-cookie") :
+							conn.getHeaderFields().get("set-cookie");
+			for (String str : setCookies) {
 				String[] cookie = str.split("=");
 				cookies.put(cookie[0], Judge.isEmpty(cookie[1]) ? "" : cookie[1]);
 			}
@@ -646,12 +1055,24 @@ public class HttpsUtils {
 		}
 
 		/**
-		 * 获取 响应流
+		 * 获取 响应流,按 content-encoding 流式解码
 		 *
 		 * @return 响应流
 		 */
 		@Contract(pure = true) public InputStream bodyStream() throws IOException {
-			return URIUtils.statusIsOK(statusCode()) ? conn.getInputStream() : conn.getErrorStream();
+			if (cached()) {
+				return new ByteArrayInputStream(entry.body());
+			} else if (pooled()) {
+				if (Judge.isNull(response)) {
+					throw new IOException("Request failed " + url);
+				}
+				return ContentDecoder.decode(response.body(), header("content-encoding"));
+			}
+			InputStream inputStream = URIUtils.statusIsOK(statusCode()) ? conn.getInputStream() : conn.getErrorStream();
+			if (Judge.isNull(inputStream)) { // 错误响应没有正文
+				throw new IOException("No response body " + url);
+			}
+			return ContentDecoder.decode(inputStream, header("content-encoding"));
 		}
 
 		/**
@@ -669,6 +1090,119 @@ public class HttpsUtils {
 			return result;
 		}
 
+		/**
+		 * 获取 响应通道,读取时不缓存整个响应
+		 *
+		 * @return 响应通道
+		 */
+		@Contract(pure = true) public ReadableByteChannel bodyChannel() throws IOException {
+			return Channels.newChannel(bodyStream());
+		}
+
+		/**
+		 * 按行读取响应正文,读取时不缓存整个响应,使用后需关闭流
+		 *
+		 * @return 行流,请求失败时为空流
+		 */
+		@Contract(pure = true) public Stream<String> lines() {
+			BufferedReader reader;
+			try {
+				reader = new BufferedReader(new InputStreamReader(bodyStream(), charsetOrDefault()));
+			} catch (IOException e) {
+				return Stream.empty();
+			}
+			return reader.lines().onClose(() -> {
+				try {
+					reader.close();
+				} catch (IOException e) {
+					// e.printStackTrace();
+				}
+			});
+		}
+
+		/**
+		 * 按分隔符读取响应正文记录,读取时不缓存整个响应,使用后需关闭流
+		 *
+		 * @param delimiter 分隔符(正则表达式)
+		 * @return 记录流,请求失败时为空流
+		 */
+		@Contract(pure = true) public Stream<String> records(@NotNull String delimiter) {
+			Scanner scanner;
+			try {
+				scanner = new Scanner(bodyStream(), charsetOrDefault()).useDelimiter(delimiter);
+			} catch (IOException e) {
+				return Stream.empty();
+			}
+			return scanner.tokens().onClose(scanner::close);
+		}
+
+		/**
+		 * 响应正文直接写入文件,不缓存整个响应
+		 *
+		 * @param path 文件路径,已存在时覆盖
+		 * @return 写入字节数,请求失败时为-1
+		 */
+		@Contract(pure = true) public long transferTo(@NotNull Path path) {
+			try (ReadableByteChannel input = bodyChannel(); FileChannel output = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				long position = 0;
+				for (long count; (count = output.transferFrom(input, position, TRANSFER_SIZE)) > 0; ) {
+					position += count;
+				}
+				return position;
+			} catch (IOException e) {
+				return -1;
+			}
+		}
+
+		/**
+		 * 从响应流直接解析 Document,不转换为字符串,未指定编码时按BOM及meta标签识别
+		 *
+		 * @return Document,请求失败或没有响应正文时为null
+		 */
+		@Contract(pure = true) public Document parse() {
+			try (InputStream inputStream = new BufferedInputStream(bodyStream())) {
+				inputStream.mark(1);
+				if (Judge.isMinusOne(inputStream.read())) {
+					return null;
+				}
+				inputStream.reset();
+				return Jsoup.parse(inputStream, charset(), url);
+			} catch (IOException e) {
+				return null;
+			}
+		}
+
+		/**
+		 * 获取 响应头 content-type 指定的编码
+		 *
+		 * @return 编码,未指定时为null
+		 */
+		@Contract(pure = true) public String charset() {
+			String contentType = header("content-type");
+			if (Judge.isEmpty(contentType)) {
+				return null;
+			}
+			for (String param : contentType.split(";")) {
+				String[] pair = param.trim().split("=", 2);
+				if (pair.length == 2 && pair[0].trim().equalsIgnoreCase("charset")) {
+					String charset = pair[1].trim().replace("\"", "");
+					return Charset.isSupported(charset) ? charset : null;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * 获取 响应编码,未指定时为UTF-8
+		 *
+		 * @return 编码
+		 */
+		@Contract(pure = true) protected Charset charsetOrDefault() {
+			String charset = charset();
+			return Judge.isNull(charset) ? StandardCharsets.UTF_8 : Charset.forName(charset);
+		}
+
 	}
 
 }
\ No newline at end of file
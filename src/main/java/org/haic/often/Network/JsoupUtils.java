@@ -1,7 +1,7 @@
 package org.haic.often.Network;
 
 import org.haic.often.Judge;
-import org.haic.often.Multithread.MultiThreadUtils;
+import org.haic.often.Multithread.TokenBucket;
 import org.haic.often.Tuple.ThreeTuple;
 import org.haic.often.Tuple.TupleUtil;
 import org.haic.often.URIUtils;
@@ -18,6 +18,8 @@ import java.io.*;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 /**
  * Jsoup 工具类
@@ -38,7 +40,14 @@ public class JsoupUtils {
 	protected boolean unlimitedRetry;// 请求异常无限重试
 	protected boolean errorExit; // 错误退出
 	protected boolean followRedirects = true; // 重定向
+	protected boolean pooled; // 使用连接池
+	protected boolean circuitBreaker = true; // 按host熔断
 	protected Proxy proxy = Proxy.NO_PROXY; // 代理
+	protected TokenBucket limiter; // 连接速率限制
+	protected HttpTransport transport; // 连接池传输层,为空时按代理配置获取共享传输层
+	protected RetryPolicy retryPolicy = RetryPolicy.defaults(); // 重试策略
+	protected TlsConfig tls; // TLS配置,为空时Jsoup连接及连接池使用默认证书验证
+	protected ResponseCache cache; // 响应缓存,为空时不缓存
 
 	protected Map<String, String> headers = new HashMap<>(); // 请求头参数
 	protected Map<String, String> cookies = new HashMap<>(); // cookies
@@ -51,7 +60,7 @@ public class JsoupUtils {
 	protected JsoupUtils() {
 		headers.put("user-agent", UserAgent.chrome()); // 设置随机请求头
 		headers.put("accept-language", "zh-CN,zh;q=0.9,en;q=0.8");
-		excludeErrorStatus(HttpStatus.SC_NOT_FOUND, HttpStatus.SC_TOO_MANY_REQUEST);
+		excludeErrorStatus(HttpStatus.SC_NOT_FOUND);
 	}
 
 	/**
@@ -268,6 +277,84 @@ public class JsoupUtils {
 		return this;
 	}
 
+	/**
+	 * 设置 重试策略,默认指数退避并遵循 Retry-After,RetryPolicy.fixed() 为固定间隔重试
+	 *
+	 * @param retryPolicy 重试策略
+	 * @return this
+	 */
+	@Contract(pure = true) public JsoupUtils retryPolicy(@NotNull RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+		return this;
+	}
+
+	/**
+	 * 设置 连接速率限制,每次发起连接前获取令牌,可使用 HostLimiter 获取按host共享的令牌桶
+	 *
+	 * @param limiter 令牌桶
+	 * @return this
+	 */
+	@Contract(pure = true) public JsoupUtils limiter(TokenBucket limiter) {
+		this.limiter = limiter;
+		return this;
+	}
+
+	/**
+	 * 设置 使用连接池,同一host的请求复用连接,上传文件、使用会话或SOCKS代理时仍使用Jsoup连接
+	 *
+	 * @param pooled 是否使用连接池
+	 * @return this
+	 */
+	@Contract(pure = true) public JsoupUtils pooled(final boolean pooled) {
+		this.pooled = pooled;
+		return this;
+	}
+
+	/**
+	 * 设置 按host熔断,默认启用,熔断器打开时不发起连接,有限重试直接结束
+	 *
+	 * @param circuitBreaker 是否启用
+	 * @return this
+	 */
+	@Contract(pure = true) public JsoupUtils circuitBreaker(final boolean circuitBreaker) {
+		this.circuitBreaker = circuitBreaker;
+		return this;
+	}
+
+	/**
+	 * 设置 响应缓存,GET请求新鲜的缓存直接返回,过期的缓存条件请求验证,多个对象可共用同一缓存
+	 *
+	 * @param cache 响应缓存
+	 * @return this
+	 */
+	@Contract(pure = true) public JsoupUtils cache(@NotNull ResponseCache cache) {
+		this.cache = cache;
+		return this;
+	}
+
+	/**
+	 * 设置 TLS配置,Jsoup连接及连接池共用配置的 SSLContext,如 TlsConfig.trustStore(path, password) 使用指定证书库
+	 *
+	 * @param tls TLS配置
+	 * @return this
+	 */
+	@Contract(pure = true) public JsoupUtils tls(@NotNull TlsConfig tls) {
+		this.tls = tls;
+		return this;
+	}
+
+	/**
+	 * 设置 连接池传输层并使用连接池,如 HttpTransport.http2 获取的HTTP/2传输层
+	 *
+	 * @param transport 传输层
+	 * @return this
+	 */
+	@Contract(pure = true) public JsoupUtils transport(@NotNull HttpTransport transport) {
+		this.transport = transport;
+		this.pooled = true;
+		return this;
+	}
+
 	/**
 	 * 设置 超时
 	 *
@@ -433,21 +520,65 @@ public class JsoupUtils {
 	 * @return Response
 	 */
 	@Contract(pure = true) public Response execute(@NotNull Method method) {
-		Response response = executeProgram(method);
-		int statusCode = Judge.isNull(response) ? HttpStatus.SC_REQUEST_TIMEOUT : Objects.requireNonNull(response).statusCode();
-		for (int i = 0;
-			 !URIUtils.statusIsOK(statusCode) && !URIUtils.statusIsRedirect(statusCode) && !excludeErrorStatusCodes.contains(statusCode) && (i < retry
-					 || unlimitedRetry); i++) {
-			MultiThreadUtils.WaitForThread(MILLISECONDS_SLEEP); // 程序等待
-			response = executeProgram(method);
-			statusCode = Judge.isNull(response) ? statusCode : Objects.requireNonNull(response).statusCode();
-		}
+		return verify(retryPolicy.execute(url, () -> executeProgram(method), JsoupUtils::statusCode, response -> header(response, "retry-after"),
+				this::retryable, retry, unlimitedRetry, MILLISECONDS_SLEEP));
+	}
+
+	/**
+	 * 异步获取 Response,连接池请求不占用线程,其它请求在工作线程池中执行,重试等待由定时器调度
+	 *
+	 * @return CompletableFuture,请求失败时结果为null,启用错误退出时异常完成
+	 */
+	@Contract(pure = true) public CompletableFuture<Response> executeAsync() {
+		return executeAsync(Method.GET);
+	}
+
+	/**
+	 * 异步获取 Response,连接池请求不占用线程,其它请求在工作线程池中执行,重试等待由定时器调度
+	 *
+	 * @param method Method类型
+	 * @return CompletableFuture,请求失败时结果为null,启用错误退出时异常完成
+	 */
+	@Contract(pure = true) public CompletableFuture<Response> executeAsync(@NotNull Method method) {
+		return retryPolicy.executeAsync(url, () -> executeProgramAsync(method), JsoupUtils::statusCode, response -> header(response, "retry-after"),
+				this::retryable, retry, unlimitedRetry, MILLISECONDS_SLEEP).thenApply(this::verify);
+	}
+
+	/**
+	 * 检查最终结果,启用错误退出时请求失败抛出异常
+	 *
+	 * @param response Response
+	 * @return Response
+	 */
+	@Contract(pure = true) protected Response verify(Response response) {
+		int statusCode = statusCode(response);
 		if (errorExit && !URIUtils.statusIsOK(statusCode) && !URIUtils.statusIsRedirect(statusCode)) {
 			throw new RuntimeException("连接URL失败，状态码: " + statusCode + " URL: " + url);
 		}
 		return response;
 	}
 
+	/**
+	 * 获取 响应状态码
+	 *
+	 * @param response Response
+	 * @return 状态码,请求失败时为 408
+	 */
+	@Contract(pure = true) protected static int statusCode(Response response) {
+		return Judge.isNull(response) ? HttpStatus.SC_REQUEST_TIMEOUT : response.statusCode();
+	}
+
+	/**
+	 * 获取 响应头
+	 *
+	 * @param response Response
+	 * @param name     响应头名称
+	 * @return 响应头,请求失败或不存在时为null
+	 */
+	@Contract(pure = true) protected static String header(Response response, @NotNull String name) {
+		return Judge.isNull(response) ? null : response.header(name);
+	}
+
 	/**
 	 * 主程序
 	 *
@@ -455,7 +586,205 @@ public class JsoupUtils {
 	 * @return Response
 	 */
 	@Contract(pure = true) protected Response executeProgram(@NotNull Method method) {
-		Connection conn = Jsoup.connect(url).headers(headers).proxy(proxy).timeout(timeout).method(method).maxBodySize(maxBodySize)
+		ResponseCache.Entry entry = cached(method);
+		if (!Judge.isNull(entry) && entry.isFresh()) { // 缓存有效,不发起请求
+			return entry.response(method);
+		}
+		CircuitBreaker breaker = breaker();
+		if (!Judge.isNull(breaker) && !breaker.allow()) { // 熔断中,不发起连接
+			return null;
+		}
+		Response response = null;
+		try { // 允许的请求必须记录结果,抛出异常时计为失败,避免半开状态的探测请求无法释放
+			if (!Judge.isNull(limiter)) {
+				limiter.acquire();
+			}
+			Map<String, String> conditional = Judge.isNull(entry) ? new HashMap<>() : cache.conditional(entry);
+			if (isPooled()) {
+				try {
+					response = transport().execute(url, method, pooledHeaders(conditional), cookies, params, requestBody, timeout);
+				} catch (IOException e) {
+					response = null;
+				}
+			} else {
+				response = executeConnection(method, conditional);
+			}
+		} finally {
+			if (!Judge.isNull(breaker)) {
+				breaker.record(statusCode(response));
+			}
+		}
+		return cache(method, entry, response);
+	}
+
+	/**
+	 * 异步主程序,获取连接令牌后发送请求,请求失败时结果为null
+	 *
+	 * @param method Method类型
+	 * @return CompletableFuture
+	 */
+	@Contract(pure = true) protected CompletableFuture<Response> executeProgramAsync(@NotNull Method method) {
+		ResponseCache.Entry entry = cached(method);
+		if (!Judge.isNull(entry) && entry.isFresh()) { // 缓存有效,不发起请求
+			return CompletableFuture.completedFuture(entry.response(method));
+		}
+		Map<String, String> conditional = Judge.isNull(entry) ? new HashMap<>() : cache.conditional(entry);
+		CircuitBreaker breaker = breaker();
+		if (!Judge.isNull(breaker) && !breaker.allow()) { // 熔断中,不发起连接
+			return CompletableFuture.completedFuture(null);
+		}
+		CompletableFuture<Void> permit = Judge.isNull(limiter) ? CompletableFuture.completedFuture(null) : limiter.acquireAsync(1);
+		CompletableFuture<Response> response = isPooled() ?
+				permit.thenCompose(v -> transport().executeAsync(url, method, pooledHeaders(conditional), cookies, params, requestBody, timeout))
+						.exceptionally(e -> null) :
+				permit.thenApplyAsync(v -> executeConnection(method, conditional), AsyncExecutor.workers());
+		if (!Judge.isNull(breaker)) { // 异常完成时结果为null,计为失败
+			response = response.whenComplete((result, e) -> breaker.record(statusCode(result)));
+		}
+		return isCacheable(method) ? response.thenApplyAsync(result -> cache(method, entry, result), AsyncExecutor.workers()) : response;
+	}
+
+	/**
+	 * 判断请求是否使用缓存,仅缓存不带cookies、授权请求头及上传文件的GET请求
+	 *
+	 * @param method Method类型
+	 * @return 是否使用缓存
+	 */
+	@Contract(pure = true) protected boolean isCacheable(@NotNull Method method) {
+		return !Judge.isNull(cache) && method == Method.GET && Judge.isNull(request) && Judge.isNull(stream) && cookies.isEmpty() && !ResponseCache.isPrivate(headers);
+	}
+
+	/**
+	 * 获取 缓存键,包含请求参数
+	 *
+	 * @return 缓存键
+	 */
+	@Contract(pure = true) protected String cacheKey() {
+		return params.isEmpty() ?
+				url :
+				url + (url.contains("?") ? "&" : "?") + params.entrySet().stream().map(param -> param.getKey() + "=" + param.getValue()).sorted()
+						.collect(Collectors.joining("&"));
+	}
+
+	/**
+	 * 获取 请求的缓存,缓存的响应带 Vary 时按本次发送的请求头匹配
+	 *
+	 * @param method Method类型
+	 * @return 缓存,不使用缓存或没有缓存时为null
+	 */
+	@Contract(pure = true) protected ResponseCache.Entry cached(@NotNull Method method) {
+		return isCacheable(method) ? cache.get(cacheKey(), pooledHeaders()) : null;
+	}
+
+	/**
+	 * 处理响应缓存,304时返回验证后的缓存,可缓存的200响应读取正文后写入缓存
+	 *
+	 * @param method   Method类型
+	 * @param entry    请求前的缓存,没有时为null
+	 * @param response Response
+	 * @return Response
+	 */
+	@Contract(pure = true) protected Response cache(@NotNull Method method, ResponseCache.Entry entry, Response response) {
+		if (!isCacheable(method) || Judge.isNull(response)) {
+			return response;
+		}
+		if (response.statusCode() == HttpStatus.SC_NOT_MODIFIED && !Judge.isNull(entry)) {
+			return cache.revalidate(entry, response.multiHeaders()).response(method);
+		}
+		if (cache.storable(response.statusCode(), response.multiHeaders())) {
+			Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+			headers.putAll(response.multiHeaders());
+			headers.remove("content-encoding"); // 缓存的正文已解码
+			headers.remove("content-length");
+			cache.put(cacheKey(), response.statusCode(), headers, response.bodyAsBytes(), pooledHeaders());
+		}
+		return response;
+	}
+
+	/**
+	 * 判断状态码是否需要重试,熔断器打开时仅无限重试继续
+	 *
+	 * @param statusCode 状态码
+	 * @return 是否需要重试
+	 */
+	@Contract(pure = true) protected boolean retryable(final int statusCode) {
+		CircuitBreaker breaker = breaker();
+		return RetryPolicy.retryable(statusCode, excludeErrorStatusCodes) && (unlimitedRetry || Judge.isNull(breaker) || !breaker.isOpen());
+	}
+
+	/**
+	 * 获取 请求host的熔断器
+	 *
+	 * @return 熔断器,未启用时为null
+	 */
+	@Contract(pure = true) protected CircuitBreaker breaker() {
+		return circuitBreaker ? CircuitBreaker.url(url) : null;
+	}
+
+	/**
+	 * 判断是否使用连接池,上传文件及使用会话时使用原有连接方式
+	 *
+	 * @return 是否使用连接池
+	 */
+	@Contract(pure = true) protected boolean isPooled() {
+		return pooled && Judge.isNull(stream) && Judge.isNull(request) && HttpTransport.supports(proxy);
+	}
+
+	/**
+	 * 获取 连接池传输层,未指定时按代理及重定向配置获取共享传输层
+	 *
+	 * @return 传输层
+	 */
+	@Contract(pure = true) protected HttpTransport transport() {
+		if (!Judge.isNull(transport)) {
+			return transport;
+		}
+		return Judge.isNull(tls) ? HttpTransport.of(proxy, followRedirects) : HttpTransport.of(proxy, followRedirects, tls);
+	}
+
+	/**
+	 * 获取 连接池请求头,包含上一页
+	 *
+	 * @return 请求头
+	 */
+	@Contract(pure = true) protected Map<String, String> pooledHeaders() {
+		return pooledHeaders(new HashMap<>());
+	}
+
+	/**
+	 * 获取 连接池请求头,包含上一页及附加请求头
+	 *
+	 * @param extra 附加请求头,如条件请求头
+	 * @return 请求头
+	 */
+	@Contract(pure = true) protected Map<String, String> pooledHeaders(@NotNull Map<String, String> extra) {
+		Map<String, String> headers = new HashMap<>(this.headers);
+		headers.putAll(extra);
+		if (!Judge.isEmpty(referrer)) {
+			headers.put("referer", referrer);
+		}
+		return headers;
+	}
+
+	/**
+	 * 使用 Jsoup 连接发送请求
+	 *
+	 * @param method Method类型
+	 * @return Response,请求失败时为null
+	 */
+	@Contract(pure = true) protected Response executeConnection(@NotNull Method method) {
+		return executeConnection(method, new HashMap<>());
+	}
+
+	/**
+	 * 使用 Jsoup 连接发送请求
+	 *
+	 * @param method Method类型
+	 * @param extra  附加请求头,如条件请求头
+	 * @return Response,请求失败时为null
+	 */
+	@Contract(pure = true) protected Response executeConnection(@NotNull Method method, @NotNull Map<String, String> extra) {
+		Connection conn = Jsoup.connect(url).headers(headers).headers(extra).proxy(proxy).timeout(timeout).method(method).maxBodySize(maxBodySize)
 				.followRedirects(followRedirects);
 		conn = Judge.isNull(request) ? conn : conn.request(request);
 		conn = cookies.isEmpty() ? conn : conn.cookies(cookies);
@@ -463,6 +792,7 @@ public class JsoupUtils {
 		conn = Judge.isNull(stream) ? conn : conn.data(stream.first, stream.second, stream.third);
 		conn = Judge.isEmpty(referrer) ? conn : conn.referrer(referrer);
 		conn = Judge.isEmpty(requestBody) ? conn : conn.requestBody(requestBody);
+		conn = Judge.isNull(tls) ? conn : conn.sslSocketFactory(tls.socketFactory());
 		Response response;
 		try {
 			response = conn.ignoreContentType(true).ignoreHttpErrors(true).execute();
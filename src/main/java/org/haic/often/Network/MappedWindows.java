@@ -0,0 +1,238 @@
+package org.haic.often.Network;
+
+import org.haic.often.Judge;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * 内存映射写入,按固定大小的窗口分段映射文件,超过单个映射上限(2G)的文件按区域映射<br/>
+ * 窗口在第一次写入时映射,所有下载线程共用,各线程使用绝对位置写入各自的区块,不移动缓冲区位置<br/>
+ * 区块完成时调用 force 将该区块对应的映射页写入磁盘,再记录断点续传日志;窗口内的数据全部写入磁盘后立即解除映射<br/>
+ * 同时映射的窗口数超过上限时,将最久未使用且没有线程正在写入的窗口写入磁盘并解除映射,之后写入该窗口时重新映射
+ *
+ * @author haicdust
+ * @version 1.0
+ * @since 2022/3/28 21:10
+ */
+public class MappedWindows implements Closeable {
+
+	protected static final int MAX_WINDOWS = 8; // 同时映射的窗口数上限
+
+	protected final FileChannel channel; // 文件通道,仅用于映射
+	protected final long size; // 文件大小
+	protected final int windowSize; // 映射窗口大小
+	protected final LinkedHashMap<Long, Window> windows = new LinkedHashMap<>(16, 0.75f, true); // 已映射的窗口,按窗口序号,按访问顺序排列
+
+	protected MappedWindows(@NotNull FileChannel channel, final long size, final int windowSize) {
+		this.channel = channel;
+		this.size = size;
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * 打开文件并设置文件大小,窗口在写入时映射
+	 *
+	 * @param file       文件
+	 * @param size       文件大小
+	 * @param windowSize 映射窗口大小
+	 * @return MappedWindows
+	 * @throws IOException 打开文件失败
+	 */
+	@Contract(pure = true) public static MappedWindows open(@NotNull File file, final long size, final int windowSize) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			if (size > 0 && channel.size() < size) { // 映射超出文件大小的区域会扩展文件,预先设置避免各窗口映射时分别扩展
+				channel.write(ByteBuffer.allocate(1), size - 1);
+			}
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		return new MappedWindows(channel, size, Math.max(windowSize, 4096));
+	}
+
+	/**
+	 * 写入数据到指定位置,跨越窗口时分段写入
+	 *
+	 * @param position 文件位置
+	 * @param source   数据,写入全部剩余字节
+	 * @throws IOException 映射失败或超出文件大小
+	 */
+	public void write(long position, @NotNull ByteBuffer source) throws IOException {
+		if (position + source.remaining() > size) {
+			throw new IOException("Write beyond end of file: " + (position + source.remaining()) + " > " + size);
+		}
+		while (source.hasRemaining()) {
+			long index = position / windowSize;
+			Window window = acquire(index);
+			try {
+				int offset = (int) (position - index * windowSize);
+				int length = Math.min(source.remaining(), window.buffer.capacity() - offset);
+				window.buffer.put(offset, source, source.position(), length);
+				source.position(source.position() + length);
+				position += length;
+			} finally {
+				release(window);
+			}
+		}
+	}
+
+	/**
+	 * 将区间对应的映射页写入磁盘,窗口内的数据全部写入磁盘后解除映射
+	 *
+	 * @param start 起始位
+	 * @param end   结束位
+	 * @throws IOException 写入磁盘失败
+	 */
+	public void force(final long start, final long end) throws IOException {
+		for (long index = start / windowSize, last = end / windowSize; index <= last; index++) {
+			Window window;
+			synchronized (windows) {
+				window = windows.get(index);
+				if (Judge.isNull(window)) { // 未写入或已解除映射的窗口
+					continue;
+				}
+				window.users++;
+			}
+			long base = index * windowSize;
+			int from = (int) (Math.max(start, base) - base);
+			int to = (int) (Math.min(end + 1, base + window.buffer.capacity()) - base);
+			try {
+				window.buffer.force(from, to - from);
+			} catch (UncheckedIOException e) {
+				release(window);
+				throw e.getCause();
+			}
+			synchronized (windows) {
+				window.forced += to - from;
+				if (window.forced >= window.buffer.capacity() && windows.get(index) == window) { // 最后一个区块已写入磁盘
+					windows.remove(index);
+					window.dropped = true;
+				}
+			}
+			release(window);
+		}
+	}
+
+	/**
+	 * 获取窗口并登记使用,未映射时映射,最后一个窗口截至文件结尾,映射数超过上限时淘汰最久未使用的空闲窗口
+	 *
+	 * @param index 窗口序号
+	 * @return 窗口
+	 * @throws IOException 映射失败
+	 */
+	@Contract(pure = true) protected Window acquire(final long index) throws IOException {
+		List<Window> evicted = new ArrayList<>();
+		Window window;
+		synchronized (windows) {
+			window = windows.get(index);
+			if (Judge.isNull(window)) {
+				long position = index * windowSize;
+				window = new Window(channel.map(FileChannel.MapMode.READ_WRITE, position, Math.min(windowSize, size - position)));
+				windows.put(index, window);
+				for (Iterator<Window> iterator = windows.values().iterator(); windows.size() > MAX_WINDOWS && iterator.hasNext(); ) {
+					Window eldest = iterator.next();
+					if (eldest.users == 0 && eldest != window) {
+						iterator.remove();
+						eldest.dropped = true;
+						eldest.users++; // 写入磁盘前不解除映射
+						evicted.add(eldest);
+					}
+				}
+			}
+			window.users++;
+		}
+		for (Window eldest : evicted) { // 未完成区块的数据写入磁盘,区块完成时该部分无需再次写入
+			try {
+				eldest.buffer.force();
+			} catch (UncheckedIOException e) {
+				// 区块完成时写入磁盘失败与直接写入相同,由文件系统保证
+			} finally {
+				release(eldest);
+			}
+		}
+		return window;
+	}
+
+	/**
+	 * 结束使用窗口,已移除的窗口在没有线程使用时解除映射
+	 *
+	 * @param window 窗口
+	 */
+	@Contract(pure = true) protected void release(@NotNull Window window) {
+		synchronized (windows) {
+			if (--window.users > 0 || !window.dropped) {
+				return;
+			}
+		}
+		unmap(window.buffer);
+	}
+
+	/**
+	 * 解除映射,JDK 不提供公开方法时等待缓冲区被回收后释放
+	 *
+	 * @param buffer 映射缓冲区
+	 */
+	@Contract(pure = true) protected static void unmap(@NotNull MappedByteBuffer buffer) {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(field.get(null), buffer);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// 由垃圾回收释放
+		}
+	}
+
+	/**
+	 * 关闭文件通道,解除所有窗口的映射
+	 */
+	@Override public void close() {
+		List<Window> mapped;
+		synchronized (windows) {
+			mapped = new ArrayList<>(windows.values());
+			windows.clear();
+			for (Window window : mapped) {
+				window.dropped = true;
+				window.users++;
+			}
+		}
+		mapped.forEach(this::release);
+		try {
+			channel.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * 映射窗口
+	 */
+	protected static class Window {
+
+		protected final MappedByteBuffer buffer; // 映射缓冲区
+		protected int users; // 正在使用的线程数
+		protected long forced; // 区块完成时已写入磁盘的字节数
+		protected boolean dropped; // 是否已移除,没有线程使用时解除映射
+
+		protected Window(@NotNull MappedByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+	}
+
+}
@@ -1,20 +1,33 @@
 package org.haic.often.Network;
 
+import com.alibaba.fastjson.JSONException;
 import com.alibaba.fastjson.JSONObject;
+import org.apache.commons.compress.utils.BoundedInputStream;
 import org.haic.often.*;
+import org.haic.often.Multithread.ExecutorStrategy;
 import org.haic.often.Multithread.MultiThreadUtils;
-import org.haic.often.Multithread.ParameterizedThread;
+import org.haic.often.Multithread.TokenBucket;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jsoup.Connection;
 import org.jsoup.Connection.Response;
 
 import java.io.*;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 网络文件 工具类 默认16线程下载
@@ -25,36 +38,68 @@ import java.util.concurrent.Executors;
  */
 public class NetworkFileUtils {
 
+	protected static final ByteBuffer ALLOCATION_ZEROS = ByteBuffer.allocateDirect(1048576); // 完整分配时写入的零值缓冲区,1M,只读取副本
+
 	protected String url; // 请求URL
 	protected String fileName; // 文件名
 	protected String referrer; // 上一页
-	protected String hash; // hash值,md5算法
+	protected String hash; // hash值,按长度识别算法
 	protected String authorization; // 授权码
 	protected int MILLISECONDS_SLEEP; // 重试等待时间
 	protected int retry; // 请求异常重试次数
 	protected int MAX_THREADS = 16; // 默认16线程下载
+	protected int MULTIPLEX_CONNECTIONS = 2; // HTTP/2多路复用连接数
+	protected boolean tuneHttp2; // HTTP/2多路复用模式调整JVM全局的流量控制参数
 	protected int bufferSize = 8192; // 默认缓冲区大小
-	protected int fileSize; // 文件大小
-	protected int PIECE_MAX_SIZE = 1048576; // 默认块大小，1M
-	protected int interval = 50; // 默认异步访问间隔50毫秒
+	protected long fileSize; // 文件大小
+	protected long PIECE_MAX_SIZE = 1048576; // 默认块大小，1M
+	protected int pieceDuration; // 自适应分块的目标请求时长(秒),为0时使用固定分块大小
+	protected Double connectionRate; // 每秒新建连接数,为null时使用host共享令牌桶,不大于0时不限制
+	protected double connectionBurst; // 突发连接数,不大于0时使用默认值
 	protected boolean unlimitedRetry;// 请求异常无限重试
 	protected boolean errorExit; // 错误退出
+	protected boolean pooled; // 使用连接池
+	protected boolean circuitBreaker = true; // 按host熔断
 	protected Proxy proxy = Proxy.NO_PROXY; // 代理
 	protected File storage; // 本地存储文件
 	protected File conf; // 配置信息文件
 
-	protected List<String> infos = new ArrayList<>(); // 文件信息
 	protected Map<String, String> headers = new HashMap<>(); // headers
 	protected Map<String, String> cookies = new HashMap<>(); // cookies
 	protected List<Integer> excludeErrorStatusCodes = new ArrayList<>(); // 排除错误状态码,不重试
+	protected List<String> pieceHashes; // 区块hash值列表,按分块大小划分
+	protected List<String> mirrors = new ArrayList<>(); // 镜像链接,与主链接为同一文件
+
+	protected DownloadSources sources; // 下载源,主链接及镜像链接
 
 	protected ExecutorService executorService; // 下载线程池
+	protected ExecutorStrategy executorStrategy = ExecutorStrategy.fixed(); // 线程池创建策略
+	protected TokenBucket limiter; // 连接速率限制,默认按host共享
+	protected Map<String, TokenBucket> limiters = new ConcurrentHashMap<>(); // 设置连接速率时本下载按host使用的令牌桶
+	protected RetryPolicy retryPolicy = RetryPolicy.defaults(); // 重试策略
+	protected ThreadLocal<String> retryAfter = new ThreadLocal<>(); // 区块线程上次失败响应的 Retry-After
+	protected ThreadLocal<String> retrySource = new ThreadLocal<>(); // 区块线程上次请求的下载源链接,重试预算按该链接的host计算
+	protected TokenBucket bandwidth = TokenBucket.unlimited(); // 带宽限制,另受全局带宽限制
+	protected DownloadJournal journal; // 断点续传日志
+	protected StreamingDigest digest; // 边下载边计算的文件hash
+	protected boolean repaired; // 文件hash不匹配时是否已按块校验值重新下载损坏的块
+	protected DownloadMetrics metrics = new DownloadMetrics(); // 下载进度统计
+	protected DownloadMetrics.Listener listener; // 下载进度监听器
+	protected long listenerInterval = 1000; // 监听间隔(毫秒)
 	protected Method method = Method.MULTITHREAD;// 下载模式
+	protected WriteMode writeMode = WriteMode.CHANNEL; // 分块写入模式
+	protected Allocation allocation = Allocation.NONE; // 分块下载文件空间分配方式
+	protected FileChannel channel; // 分块共享文件通道
+	protected WriteBehind writeBehind; // 共享文件通道的合并写入器
+	protected int writeBehindSize = 1048576; // 合并写入缓冲区大小,为0时直接写入文件
+	protected MappedWindows mapped; // 内存映射写入的映射窗口
+	protected int mappedWindowSize = 268435456; // 内存映射窗口大小
+	protected PieceSizer pieceSizer; // 自适应分块大小,固定分块时为null
+	protected Queue<ByteBuffer> bufferPool = new ConcurrentLinkedQueue<>(); // 直接缓冲区池
 
 	protected NetworkFileUtils() {
-		headers.put("accept-encoding", "gzip, deflate, br");
 		headers.put("accept-language", "zh-CN,zh;q=0.9,en;q=0.8");
-		excludeErrorStatus(HttpStatus.SC_NOT_FOUND, HttpStatus.SC_TOO_MANY_REQUEST);
+		excludeErrorStatus(HttpStatus.SC_NOT_FOUND);
 	}
 
 	/**
@@ -67,6 +112,16 @@ public class NetworkFileUtils {
 		return config().url(url);
 	}
 
+	/**
+	 * 连接多个下载源,所有链接为同一文件,第一个为主链接,其余为镜像链接
+	 *
+	 * @param urls 链接列表
+	 * @return this
+	 */
+	@Contract(pure = true) public static NetworkFileUtils connect(@NotNull List<String> urls) {
+		return config().url(urls.get(0)).mirror(urls.subList(1, urls.size()));
+	}
+
 	/**
 	 * 获取新的NetworkFileUtils对象并设置配置文件<br/>
 	 * 配置文件 -> 包含待下载文件的下载信息的文件
@@ -121,6 +176,38 @@ public class NetworkFileUtils {
 		return this;
 	}
 
+	/**
+	 * 添加镜像链接,分块下载时按各下载源实测速率分配区块,请求失败的下载源降权,返回排除状态码的下载源不再使用<br/>
+	 * 全量下载及获取文件信息仅在主链接失败时使用镜像链接
+	 *
+	 * @param urls 镜像链接
+	 * @return this
+	 */
+	@Contract(pure = true) public NetworkFileUtils mirror(@NotNull String... urls) {
+		return mirror(Arrays.asList(urls));
+	}
+
+	/**
+	 * 添加镜像链接,分块下载时按各下载源实测速率分配区块,请求失败的下载源降权,返回排除状态码的下载源不再使用<br/>
+	 * 全量下载及获取文件信息仅在主链接失败时使用镜像链接
+	 *
+	 * @param urls 镜像链接列表
+	 * @return this
+	 */
+	@Contract(pure = true) public NetworkFileUtils mirror(@NotNull List<String> urls) {
+		this.mirrors.addAll(urls);
+		return this;
+	}
+
+	/**
+	 * 获取 下载源,包含各下载源的速率及失败次数,开始下载后可用
+	 *
+	 * @return 下载源
+	 */
+	@Contract(pure = true) public DownloadSources sources() {
+		return sources;
+	}
+
 	/**
 	 * 排除错误码,在指定状态发生时,不进行重试,可指定多个
 	 *
@@ -167,6 +254,28 @@ public class NetworkFileUtils {
 		return this;
 	}
 
+	/**
+	 * 设置 分块写入模式
+	 *
+	 * @param writeMode 分块写入模式
+	 * @return this
+	 */
+	@Contract(pure = true) public NetworkFileUtils writeMode(@NotNull NetworkFileUtils.WriteMode writeMode) {
+		this.writeMode = writeMode;
+		return this;
+	}
+
+	/**
+	 * 设置 分块下载文件空间分配方式,开始下载前均检查剩余磁盘空间
+	 *
+	 * @param allocation 空间分配方式
+	 * @return this
+	 */
+	@Contract(pure = true) public NetworkFileUtils allocation(@NotNull NetworkFileUtils.Allocation allocation) {
+		this.allocation = allocation;
+		return this;
+	}
+
 	/**
 	 * 设置文件名
 	 *
@@ -340,6 +449,30 @@ public class NetworkFileUtils {
 		return this;
 	}
 
+	/**
+	 * 设置HTTP/2多路复用模式的连接数,线程数为同时传输的流数,区块请求按序号分配到各连接
+	 *
+	 * @param connections 连接数,不小于1
+	 * @return this
+	 */
+	@Contract(pure = true) public NetworkFileUtils multiplex(final int connections) {
+		this.MULTIPLEX_CONNECTIONS = Math.max(connections, 1);
+		return this;
+	}
+
+	/**
+	 * 设置HTTP/2多路复用模式的连接数,并选择是否调整HTTP/2流量控制窗口及帧大小以适应大量数据传输<br/>
+	 * 调整通过 jdk.httpclient.* 系统属性实现,作用于整个JVM,详见 {@link HttpTransport#tuneHttp2()}
+	 *
+	 * @param connections 连接数,不小于1
+	 * @param tuneHttp2   是否调整HTTP/2流量控制参数,默认不调整
+	 * @return this
+	 */
+	@Contract(pure = true) public NetworkFileUtils multiplex(final int connections, final boolean tuneHttp2) {
+		this.tuneHttp2 = tuneHttp2;
+		return multiplex(connections);
+	}
+
 	/**
 	 * 设置多线程下载，线程数不小于1，否则抛出异常
 	 *
@@ -355,13 +488,160 @@ public class NetworkFileUtils {
 	}
 
 	/**
-	 * 多线程下载使用并发访问，会导致数据丢失，使用异步访问可以解决数据丢失、数据错误问题，如果存在问题，请增大访问间隔（默认50毫秒,应不低于36毫秒）
+	 * 设置 新建连接的平均间隔,等价于 connectionRate(1000 / interval),仅作用于本下载
 	 *
-	 * @param interval 异步访问间隔
+	 * @param interval 连接间隔(毫秒),不大于0时不限制
 	 * @return this
 	 */
 	@Contract(pure = true) public NetworkFileUtils interval(final int interval) {
-		this.interval = interval;
+		this.connectionRate = interval > 0 ? 1000d / interval : 0;
+		return this;
+	}
+
+	/**
+	 * 设置 新建连接速率,本下载按host使用独立的令牌桶,不修改host共享令牌桶<br/>
+	 * 未设置时同一host的所有下载共享令牌桶,默认每秒20个连接,突发16个
+	 *
+	 * @param rate 每秒新建连接数,不大于0时不限制
+	 * @return this
+	 */
+	@Contract(pure = true) public NetworkFileUtils connectionRate(final double rate) {
+		this.connectionRate = rate;
+		return this;
+	}
+
+	/**
+	 * 设置 新建连接速率,本下载按host使用独立的令牌桶,不修改host共享令牌桶
+	 *
+	 * @param rate  每秒新建连接数,不大于0时不限制
+	 * @param burst 突发连接数
+	 * @return this
+	 */
+	@Contract(pure = true) public NetworkFileUtils connectionRate(final double rate, final double burst) {
+		this.connectionRate = rate;
+		this.connectionBurst = burst;
+		return this;
+	}
+
+	/**
+	 * 设置 共享线程池,多个下载共用同一线程池时总连接数受线程池大小限制,下载结束后不关闭该线程池<br/>
+	 * 单个下载同时使用的线程数仍不超过设置的线程数
+	 *
+	 * @param executorService 线程池
+	 * @return this
+	 */
+	@Contract(pure = true) public NetworkFileUtils executor(@NotNull ExecutorService executorService) {
+		return executor(ExecutorStrategy.supplied(executorService));
+	}
+
+	/**
+	 * 设置 线程池创建策略,默认为固定大小线程池,使用虚拟线程时可大量同时下载而不占用平台线程栈<br/>
+	 * 无论使用何种策略,单个下载同时使用的线程数不超过设置的线程数
+	 *
+	 * @param executorStrategy 线程池创建策略
+	 * @return this
+	 */
+	@Contract(pure = true) public NetworkFileUtils executor(@NotNull ExecutorStrategy executorStrategy) {
+		this.executorStrategy = executorStrategy;
+		this.executorService = null;
+		return this;
+	}
+
+	/**
+	 * 设置 下载进度监听器,每秒接收一次快照,下载结束时接收最终快照
+	 *
+	 * @param listener 监听器
+	 * @return this
+	 */
+	@Contract(pure = true) public NetworkFileUtils listener(@NotNull DownloadMetrics.Listener listener) {
+		return listener(listener, 1000);
+	}
+
+	/**
+	 * 设置 下载进度监听器,按固定间隔接收快照,下载结束时接收最终快照
+	 *
+	 * @param listener 监听器
+	 * @param interval 间隔(毫秒)
+	 * @return this
+	 */
+	@Contract(pure = true) public NetworkFileUtils listener(@NotNull DownloadMetrics.Listener listener, final long interval) {
+		this.listener = listener;
+		this.listenerInterval = interval;
+		return this;
+	}
+
+	/**
+	 * 获取 下载进度统计,可在下载过程中从其它线程获取快照
+	 *
+	 * @return 下载进度统计
+	 */
+	@Contract(pure = true) public DownloadMetrics metrics() {
+		return metrics;
+	}
+
+	/**
+	 * 设置 下载及上传带宽,可在下载过程中从其它线程修改,同时受全局带宽 {@link Bandwidth#global(long)} 限制
+	 *
+	 * @param bytesPerSecond 每秒字节数,不大于0时不限制
+	 * @return this
+	 */
+	@Contract(pure = true) public NetworkFileUtils rateLimit(final long bytesPerSecond) {
+		Bandwidth.limit(bandwidth, bytesPerSecond);
+		return this;
+	}
+
+	/**
+	 * 设置 带宽令牌桶,多个下载使用同一令牌桶时共享带宽
+	 *
+	 * @param bandwidth 令牌桶,令牌为字节数
+	 * @return this
+	 */
+	@Contract(pure = true) public NetworkFileUtils bandwidth(@NotNull TokenBucket bandwidth) {
+		this.bandwidth = bandwidth;
+		return this;
+	}
+
+	/**
+	 * 设置 使用连接池,分块请求复用同一host的连接,避免每个区块重复TCP及TLS握手,与 JsoupUtils、HttpsUtils 共享连接池
+	 *
+	 * @param pooled 是否使用连接池
+	 * @return this
+	 */
+	@Contract(pure = true) public NetworkFileUtils pooled(final boolean pooled) {
+		this.pooled = pooled;
+		return this;
+	}
+
+	/**
+	 * 设置 重试策略,默认指数退避并遵循 Retry-After,区块重试共享同一host的重试预算,RetryPolicy.fixed() 为固定间隔重试
+	 *
+	 * @param retryPolicy 重试策略
+	 * @return this
+	 */
+	@Contract(pure = true) public NetworkFileUtils retryPolicy(@NotNull RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+		return this;
+	}
+
+	/**
+	 * 设置 按host熔断,默认启用,熔断中的下载源不再分配区块,所有下载源熔断时有限重试直接结束
+	 *
+	 * @param circuitBreaker 是否启用
+	 * @return this
+	 */
+	@Contract(pure = true) public NetworkFileUtils circuitBreaker(final boolean circuitBreaker) {
+		this.circuitBreaker = circuitBreaker;
+		return this;
+	}
+
+	/**
+	 * 设置 连接速率限制,替代默认的host共享令牌桶
+	 *
+	 * @param limiter 令牌桶
+	 * @return this
+	 */
+	@Contract(pure = true) public NetworkFileUtils limiter(@NotNull TokenBucket limiter) {
+		this.limiter = limiter;
 		return this;
 	}
 
@@ -377,9 +657,31 @@ public class NetworkFileUtils {
 	}
 
 	/**
-	 * 设置md5算法hash值进行文件完整性效验
+	 * 设置 合并写入缓冲区大小,共享文件通道写入时,网络读取的数据先复制到缓冲区,写满后由写入线程一次写入文件,默认1M
+	 *
+	 * @param writeBehindSize 缓冲区大小(KB),为0时每次读取后直接写入文件
+	 * @return this
+	 */
+	@Contract(pure = true) public NetworkFileUtils writeBehind(final int writeBehindSize) {
+		this.writeBehindSize = writeBehindSize * 1024;
+		return this;
+	}
+
+	/**
+	 * 设置 内存映射写入模式的映射窗口大小,文件按窗口分段映射,默认256M
+	 *
+	 * @param mappedWindowSize 映射窗口大小(MB),最大2047
+	 * @return this
+	 */
+	@Contract(pure = true) public NetworkFileUtils mappedWindow(final int mappedWindowSize) {
+		this.mappedWindowSize = Math.min(Math.max(mappedWindowSize, 1), 2047) * 1048576;
+		return this;
+	}
+
+	/**
+	 * 设置hash值进行文件完整性效验,按长度识别算法 MD5(16位/32位), SHA1, SHA256, SHA384, SHA512
 	 *
-	 * @param hash 文件md5值
+	 * @param hash 文件hash值
 	 * @return this
 	 */
 	@Contract(pure = true) public NetworkFileUtils hash(@NotNull String hash) {
@@ -387,6 +689,20 @@ public class NetworkFileUtils {
 		return this;
 	}
 
+	/**
+	 * 设置区块hash值列表(如Metalink pieces),下载时逐块效验,不匹配的区块单独重新下载<br/>
+	 * 设置后多线程模式使用分块多线程模式下载,分块大小为区块长度
+	 *
+	 * @param pieceLength 区块长度(字节)
+	 * @param hashes      按顺序排列的区块hash值
+	 * @return this
+	 */
+	@Contract(pure = true) public NetworkFileUtils pieceHash(final long pieceLength, @NotNull List<String> hashes) {
+		this.PIECE_MAX_SIZE = pieceLength;
+		this.pieceHashes = hashes;
+		return this;
+	}
+
 	/**
 	 * 设置多线程分块大小
 	 *
@@ -394,7 +710,19 @@ public class NetworkFileUtils {
 	 * @return this
 	 */
 	@Contract(pure = true) public NetworkFileUtils pieceSize(final int pieceSize) {
-		this.PIECE_MAX_SIZE = pieceSize * 1024;
+		this.PIECE_MAX_SIZE = pieceSize * 1024L;
+		return this;
+	}
+
+	/**
+	 * 设置 自适应分块大小,分块多线程及HTTP/2多路复用模式按实测单连接速率及响应延迟调整后续区块大小,使每个区块请求耗时接近目标时长<br/>
+	 * 分块大小(pieceSize)为最小区块大小及断点续传日志的块大小,设置区块hash值列表时使用固定分块大小
+	 *
+	 * @param pieceDuration 目标请求时长(秒),建议2-5秒,为0时使用固定分块大小(默认)
+	 * @return this
+	 */
+	@Contract(pure = true) public NetworkFileUtils pieceDuration(final int pieceDuration) {
+		this.pieceDuration = Math.max(pieceDuration, 0);
 		return this;
 	}
 
@@ -418,8 +746,211 @@ public class NetworkFileUtils {
 		if (!Judge.isEmpty(authorization)) {
 			headers.put("Authorization", authorization);
 		}
-		Response response = JsoupUtils.connect(url).headers(headers).header("content-type", "multipart/form-data").file(file).proxy(proxy).cookies(cookies)
-				.referrer(referrer).retry(retry, MILLISECONDS_SLEEP).retry(unlimitedRetry).errorExit(errorExit).execute();
+		InputStream inputStream;
+		try {
+			inputStream = Bandwidth.stream(new BufferedInputStream(new FileInputStream(file)), bandwidth); // 上传限速
+		} catch (FileNotFoundException e) {
+			if (errorExit) {
+				throw new RuntimeException("Not found or not is file " + file);
+			}
+			return HttpStatus.SC_NOT_FOUND;
+		}
+		Response response = JsoupUtils.connect(url).headers(headers).header("content-type", "multipart/form-data").data("file", file.getName(), inputStream)
+				.proxy(proxy).cookies(cookies).referrer(referrer).limiter(limiter()).pooled(pooled).circuitBreaker(circuitBreaker)
+				.retry(retry, MILLISECONDS_SLEEP).retryPolicy(retryPolicy).retry(unlimitedRetry).errorExit(errorExit).execute(Connection.Method.POST);
+		return Judge.isNull(response) ? HttpStatus.SC_REQUEST_TIMEOUT : response.statusCode();
+	}
+
+	/**
+	 * 分块上传网络文件,支持断点续传,返回状态码
+	 *
+	 * @param filePath 待上传的文件路径
+	 * @return 上传状态码
+	 */
+	@Contract(pure = true) public int chunkedUpload(@NotNull String filePath) {
+		return chunkedUpload(new File(filePath));
+	}
+
+	/**
+	 * 分块上传网络文件,支持断点续传,返回状态码<br/>
+	 * 文件按块大小(pieceSize)切分,按线程数(multithread)并发上传,已完成的块记录在文件同目录的 .upload.haic 日志中,中断后再次调用从未完成的块继续,文件修改后重新上传<br/>
+	 * 上传协议: 每块发送 multipart/form-data 的POST请求,字段 file 为块数据,请求头 upload-id 为上传ID,upload-part 为块序号(从0开始),upload-range 为 起始位-结束位/文件大小;
+	 * 所有块完成后发送POST请求,请求头 upload-id 及 upload-commit(块数量),参数 fileName、size、parts,服务器合并文件后返回的状态码为上传状态码
+	 *
+	 * @param file 待上传的文件对象
+	 * @return 上传状态码
+	 */
+	@Contract(pure = true) public int chunkedUpload(@NotNull File file) {
+		if (!file.isFile()) {
+			if (errorExit) {
+				throw new RuntimeException("Not found or not is file " + file);
+			}
+			return HttpStatus.SC_NOT_FOUND;
+		}
+		if (!Judge.isEmpty(authorization)) {
+			headers.put("Authorization", authorization);
+		}
+		File uploadConf = new File(file + ".upload.haic");
+		DownloadJournal uploadJournal;
+		try {
+			uploadJournal = uploadJournal(file, uploadConf);
+		} catch (IOException e) {
+			throw new RuntimeException("Configuration file creation failed");
+		}
+		String uploadId = JSONObject.parseObject(uploadJournal.info()).getString("upload-id");
+		long partSize = uploadJournal.blockSize();
+		List<long[]> parts = new ArrayList<>(); // 未完成的块
+		long completed = file.length();
+		for (long[] gap : uploadJournal.gaps()) {
+			for (long start = gap[0]; start <= gap[1]; start += partSize) {
+				parts.add(new long[] { start, Math.min(start + partSize - 1, gap[1]) });
+			}
+			completed -= gap[1] - gap[0] + 1;
+		}
+		metrics.start(file.length(), completed);
+		if (!Judge.isNull(listener)) {
+			metrics.listen(listener, listenerInterval);
+		}
+		final List<Integer> statusCodes = new CopyOnWriteArrayList<>();
+		final AtomicInteger next = new AtomicInteger(); // 下一个块索引
+		final List<Future<?>> workers = new ArrayList<>();
+		for (int i = 0, count = Math.min(parts.size(), MAX_THREADS); i < count; i++) { // 每个线程依次领取块,限制并发上传数
+			workers.add(executor().submit(() -> {
+				for (int index; statusCodes.isEmpty() && (index = next.getAndIncrement()) < parts.size(); ) { // 已有块失败,跳过未开始的块
+					long[] part = parts.get(index);
+					int statusCode = addPart(uploadJournal, file, uploadId, part[0], part[1]);
+					if (!URIUtils.statusIsOK(statusCode)) {
+						statusCodes.add(statusCode);
+					}
+				}
+			}));
+		}
+		if (!workers.isEmpty()) {
+			awaitWorkers(workers); // 等待线程结束
+		}
+		int statusCode = statusCodes.isEmpty() ? commitUpload(file, uploadId, (int) ((file.length() + partSize - 1) / partSize)) : statusCodes.get(0);
+		closeMetrics();
+		try {
+			uploadJournal.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		if (URIUtils.statusIsOK(statusCode)) {
+			uploadConf.delete(); // 上传完成,删除日志
+		} else if (errorExit) {
+			throw new RuntimeException("文件上传失败，状态码: " + statusCode + " URL: " + url);
+		}
+		return statusCode;
+	}
+
+	/**
+	 * 打开分块上传日志,链接、文件大小或修改时间不一致时使用新的上传ID重新创建
+	 *
+	 * @param file       待上传的文件
+	 * @param uploadConf 日志文件
+	 * @return 上传日志
+	 * @throws IOException 创建失败
+	 */
+	@Contract(pure = true) protected DownloadJournal uploadJournal(@NotNull File file, @NotNull File uploadConf) throws IOException {
+		if (uploadConf.isFile()) {
+			try {
+				DownloadJournal uploadJournal = DownloadJournal.open(uploadConf, PIECE_MAX_SIZE);
+				JSONObject info = JSONObject.parseObject(uploadJournal.info());
+				if (url.equals(info.getString("URL")) && uploadJournal.fileSize() == file.length() && info.getLongValue("last-modified") == file.lastModified()
+						&& !Judge.isEmpty(info.getString("upload-id"))) {
+					return uploadJournal;
+				}
+				uploadJournal.close();
+			} catch (IOException | JSONException e) {
+				// 日志损坏,重新上传
+			}
+		}
+		JSONObject info = new JSONObject();
+		info.put("URL", url);
+		info.put("fileName", file.getName());
+		info.put("content-length", String.valueOf(file.length()));
+		info.put("last-modified", file.lastModified());
+		info.put("upload-id", UUID.randomUUID().toString().replace("-", ""));
+		info.put("piece-length", PIECE_MAX_SIZE);
+		return DownloadJournal.create(uploadConf, info.toJSONString(), file.length(), PIECE_MAX_SIZE);
+	}
+
+	/**
+	 * 上传块,失败时重试,成功后记录到上传日志
+	 *
+	 * @param uploadJournal 上传日志
+	 * @param file          待上传的文件
+	 * @param uploadId      上传ID
+	 * @param start         起始位
+	 * @param end           结束位
+	 * @return 状态码
+	 */
+	@Contract(pure = true) protected int addPart(@NotNull DownloadJournal uploadJournal, @NotNull File file, @NotNull String uploadId, final long start,
+			final long end) {
+		DownloadMetrics.Piece state = metrics.piece(start, end);
+		CircuitBreaker breaker = circuitBreaker ? CircuitBreaker.url(url) : null;
+		int statusCode = uploadPart(file, uploadId, start / uploadJournal.blockSize(), start, end);
+		for (int j = 0; !URIUtils.statusIsOK(statusCode) && !excludeErrorStatusCodes.contains(statusCode) && (j < retry && (Judge.isNull(breaker)
+				|| !breaker.isOpen()) || unlimitedRetry) && retryPolicy.acquire(url, unlimitedRetry); j++) {
+			metrics.retry(statusCode);
+			state.state = DownloadMetrics.PieceState.RETRYING;
+			MultiThreadUtils.WaitForThread((int) retryPolicy.delay(j, MILLISECONDS_SLEEP, statusCode, retryAfter.get())); // 程序等待
+			statusCode = uploadPart(file, uploadId, start / uploadJournal.blockSize(), start, end);
+		}
+		retryAfter.remove();
+		metrics.remove(state);
+		if (URIUtils.statusIsOK(statusCode)) {
+			uploadJournal.finish(start, end);
+			metrics.complete(start, end);
+		}
+		return statusCode;
+	}
+
+	/**
+	 * 发送块上传请求,块数据从文件对应位置读取
+	 *
+	 * @param file     待上传的文件
+	 * @param uploadId 上传ID
+	 * @param index    块序号
+	 * @param start    起始位
+	 * @param end      结束位
+	 * @return 状态码
+	 */
+	@Contract(pure = true) protected int uploadPart(@NotNull File file, @NotNull String uploadId, final long index, final long start, final long end) {
+		metrics.connect();
+		try (FileChannel input = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			input.position(start);
+			InputStream inputStream = Bandwidth.stream(new BufferedInputStream(new BoundedInputStream(Channels.newInputStream(input), end - start + 1)), bandwidth);
+			Response response = JsoupUtils.connect(url).proxy(proxy).headers(new HashMap<>(headers)).header("upload-id", uploadId)
+					.header("upload-part", String.valueOf(index)).header("upload-range", start + "-" + end + "/" + file.length())
+					.data("file", file.getName(), inputStream).cookies(cookies).referrer(referrer).limiter(limiter()).circuitBreaker(circuitBreaker)
+					.execute(Connection.Method.POST);
+			retryAfter.set(Judge.isNull(response) ? null : response.header("retry-after"));
+			if (!Judge.isNull(response) && URIUtils.statusIsOK(response.statusCode())) {
+				metrics.receive(end - start + 1);
+			}
+			return Judge.isNull(response) ? HttpStatus.SC_REQUEST_TIMEOUT : response.statusCode();
+		} catch (IOException e) {
+			return HttpStatus.SC_REQUEST_TIMEOUT;
+		} finally {
+			metrics.disconnect();
+		}
+	}
+
+	/**
+	 * 所有块上传完成后,发送合并请求
+	 *
+	 * @param file     待上传的文件
+	 * @param uploadId 上传ID
+	 * @param parts    块数量
+	 * @return 状态码
+	 */
+	@Contract(pure = true) protected int commitUpload(@NotNull File file, @NotNull String uploadId, final int parts) {
+		Response response = JsoupUtils.connect(url).proxy(proxy).headers(new HashMap<>(headers)).header("upload-id", uploadId)
+				.header("upload-commit", String.valueOf(parts)).data("fileName", file.getName()).data("size", String.valueOf(file.length()))
+				.data("parts", String.valueOf(parts)).cookies(cookies).referrer(referrer).limiter(limiter()).pooled(pooled).circuitBreaker(circuitBreaker)
+				.retry(retry, MILLISECONDS_SLEEP).retryPolicy(retryPolicy).excludeErrorStatus(excludeErrorStatusCodes).retry(unlimitedRetry)
+				.execute(Connection.Method.POST);
 		return Judge.isNull(response) ? HttpStatus.SC_REQUEST_TIMEOUT : response.statusCode();
 	}
 
@@ -455,13 +986,24 @@ public class NetworkFileUtils {
 		switch (method) { // 配置信息
 		case FILE -> {
 			if (conf.isFile()) { // 如果设置配置文件下载，并且配置文件存在，获取信息
-				infos = ReadWriteUtils.orgin(conf).list();
-				fileInfo = JSONObject.parseObject(infos.get(0));
+				try {
+					journal = DownloadJournal.open(conf, PIECE_MAX_SIZE);
+				} catch (IOException e) {
+					throw new RuntimeException("Info is error -> " + conf);
+				}
+				fileInfo = JSONObject.parseObject(journal.info());
 				url = fileInfo.getString("URL");
 				fileName = fileInfo.getString("fileName");
-				fileSize = fileInfo.getInteger("content-length");
+				fileSize = fileInfo.getLongValue("content-length");
 				hash = fileInfo.getString("x-cos-meta-md5");
+				if (fileInfo.containsKey("piece-hash")) {
+					pieceHash(fileInfo.getLongValue("piece-length"), fileInfo.getJSONArray("piece-hash").toJavaList(String.class));
+				}
+				if (fileInfo.containsKey("mirrors")) {
+					mirrors = fileInfo.getJSONArray("mirrors").toJavaList(String.class);
+				}
 				referrer = fileInfo.getString("referrer");
+				pieceDuration = fileInfo.getIntValue("piece-duration");
 				if (Judge.isEmpty(url) || Judge.isEmpty(fileName) || Judge.isEmpty(fileSize)) {
 					throw new RuntimeException("Info is error -> " + conf);
 				}
@@ -470,7 +1012,6 @@ public class NetworkFileUtils {
 				headers = StringUtils.jsonToMap(fileInfo.getString("header"));
 				cookies = StringUtils.jsonToMap(fileInfo.getString("cookie"));
 				storage = new File(folder, fileName); // 获取其file对象
-				infos.remove(0); // 删除信息行
 			} else { // 配置文件不存在，抛出异常
 				if (errorExit) {
 					throw new RuntimeException("Not found or not is file " + conf);
@@ -479,12 +1020,28 @@ public class NetworkFileUtils {
 				}
 			}
 		}
-		case FULL, PIECE, MULTITHREAD -> {
-			// 获取文件信息
-			response = JsoupUtils.connect(url).proxy(proxy).headers(headers).cookies(cookies).referrer(referrer).retry(retry, MILLISECONDS_SLEEP)
-					.excludeErrorStatus(excludeErrorStatusCodes).retry(unlimitedRetry).errorExit(errorExit).execute();
-			// 获取URL连接状态
-			int statusCode = Judge.isNull(response) ? HttpStatus.SC_REQUEST_TIMEOUT : response.statusCode();
+		case FULL, PIECE, MULTITHREAD, ADAPTIVE, MULTIPLEX -> {
+			// 获取文件信息,主链接失败时依次尝试镜像链接
+			sources = new DownloadSources(sourceUrls(), circuitBreaker);
+			String source = url;
+			int statusCode = 0;
+			for (int i = 0; i < sources.size() && !URIUtils.statusIsOK(statusCode); i++) {
+				source = sources.get(i).url;
+				JsoupUtils connection = JsoupUtils.connect(source).proxy(proxy).headers(new HashMap<>(headers));
+				if (method != Method.FULL) { // 分块下载的文件大小需为未压缩的大小
+					connection.header("accept-encoding", "identity");
+				}
+				response = connection.cookies(cookies).referrer(referrer).limiter(limiter(sources.get(i))).pooled(pooled).circuitBreaker(circuitBreaker)
+						.retry(retry, MILLISECONDS_SLEEP).retryPolicy(retryPolicy).excludeErrorStatus(excludeErrorStatusCodes).retry(unlimitedRetry)
+						.errorExit(errorExit && i + 1 == sources.size()).execute();
+				// 获取URL连接状态
+				statusCode = Judge.isNull(response) ? HttpStatus.SC_REQUEST_TIMEOUT : response.statusCode();
+				if (URIUtils.statusIsOK(statusCode)) { // 探测请求的下载源以探测请求返回的ETag为准
+					sources.etag(sources.get(i), response.header("etag"));
+				} else {
+					sources.failure(sources.get(i), excludeErrorStatusCodes.contains(statusCode));
+				}
+			}
 			if (!URIUtils.statusIsOK(statusCode)) {
 				return statusCode;
 			}
@@ -492,8 +1049,9 @@ public class NetworkFileUtils {
 			if (Judge.isEmpty(fileName)) {
 				String disposition = Objects.requireNonNull(response).header("content-disposition");
 				fileName = Judge.isNull(disposition) ?
-						StringUtils.decodeByURL(
-								url.contains("?") ? url.substring(url.lastIndexOf("/") + 1, url.indexOf("?")) : url.substring(url.lastIndexOf("/") + 1)) :
+						StringUtils.decodeByURL(source.contains("?") ?
+								source.substring(source.lastIndexOf("/") + 1, source.indexOf("?")) :
+								source.substring(source.lastIndexOf("/") + 1)) :
 						URIUtils.getFileNameForDisposition(disposition);
 			}
 			// 文件名排除非法字符
@@ -514,25 +1072,43 @@ public class NetworkFileUtils {
 			}
 
 			String contentLength = response.header("content-length"); // 获取文件大小
-			fileSize = Judge.isEmpty(contentLength) ? 0 : Integer.parseInt(Objects.requireNonNull(contentLength));
+			String contentEncoding = response.header("content-encoding");
+			// 服务器忽略 identity 返回压缩正文时,长度为压缩后的大小,使用全量下载
+			fileSize = Judge.isEmpty(contentLength) || !Judge.isEmpty(contentEncoding) && !contentEncoding.equalsIgnoreCase("identity") ?
+					0 :
+					Long.parseLong(Objects.requireNonNull(contentLength));
 			hash = Judge.isEmpty(hash) ? response.header("x-cos-meta-md5") : hash; // 获取文件MD5
 			if (conf.exists()) { // 文件存在但不是文件，抛出异常
 				throw new RuntimeException("Not is file " + conf);
 			} else { // 创建并写入文件配置信息
 				fileInfo.put("URL", url);
+				if (!mirrors.isEmpty()) {
+					fileInfo.put("mirrors", mirrors);
+				}
 				fileInfo.put("fileName", fileName);
 				fileInfo.put("content-length", String.valueOf(fileSize));
 				fileInfo.put("x-cos-meta-md5", hash);
 				fileInfo.put("referrer", referrer);
 				fileInfo.put("threads", MAX_THREADS);
+				if (!Judge.isNull(pieceHashes)) {
+					method = method == Method.FULL ? method : Method.PIECE; // 区块边界需与区块hash一致
+					fileInfo.put("piece-length", PIECE_MAX_SIZE);
+					fileInfo.put("piece-hash", pieceHashes);
+				}
 				fileInfo.put("method", method.name());
+				if (pieceDuration > 0) {
+					fileInfo.put("piece-duration", pieceDuration);
+				}
 				fileInfo.put("header", new JSONObject() {{
 					putAll(headers);
 				}});
 				fileInfo.put("cookie", new JSONObject() {{
 					putAll(cookies);
 				}});
-				if (!ReadWriteUtils.orgin(conf).text(fileInfo.toJSONString())) {
+				FilesUtils.createFolder(folder);
+				try {
+					journal = DownloadJournal.create(conf, fileInfo.toJSONString(), fileSize, blockSize());
+				} catch (IOException e) {
 					throw new RuntimeException("Configuration file creation failed");
 				}
 			}
@@ -540,40 +1116,100 @@ public class NetworkFileUtils {
 		}
 
 		method = Judge.isEmpty(fileSize) ? Method.FULL : method;// 如果文件大小获取失败或线程为1，使用全量下载模式
+		if (method != Method.FULL && !Judge.isNull(response)) { // 分块下载不读取获取信息请求的正文,关闭以释放连接
+			try {
+				response.bodyStream().close();
+			} catch (IOException e) {
+				// e.printStackTrace();
+			}
+		}
 		FilesUtils.createFolder(folder); // 创建文件夹
+		if (Judge.isNull(sources)) { // 续传时创建下载源
+			sources = new DownloadSources(sourceUrls(), circuitBreaker);
+		}
 
-		int statusCode = 0;
-		switch (method) {  // 开始下载
+		int statusCode = allocate(); // 检查磁盘空间并分配文件
+		if (!URIUtils.statusIsOK(statusCode)) {
+			closeJournal(); // 保留信息文件,释放空间后可继续下载
+			if (errorExit) {
+				throw new RuntimeException("磁盘空间不足或文件创建失败，状态码: " + statusCode + " File: " + storage);
+			}
+			return statusCode;
+		}
+
+		if (!Judge.isNull(journal) && isVerifiable()) { // 块内数据未按顺序写入时读取文件计算块校验值
+			journal.storage(storage);
+		}
+		openDigest();
+		openMetrics();
+		switch (method) {  // 开始下载
 		case FULL -> statusCode = Judge.isNull(response) ? FULL() : FULL(response);
-		case PIECE -> statusCode = MULTITHREAD((int) Math.ceil((double) fileSize / (double) PIECE_MAX_SIZE), PIECE_MAX_SIZE);
+		case PIECE -> statusCode = PIECE();
+		case MULTIPLEX -> {
+			if (tuneHttp2) {
+				HttpTransport.tuneHttp2();
+			}
+			for (int i = 0; i < MULTIPLEX_CONNECTIONS; i++) { // 依次建立到每个可用下载源的连接,避免并发请求各自建立连接
+				for (DownloadSources.Source source : sources.sources()) {
+					if (!source.disabled()) {
+						HttpTransport.http2(proxy, i).preconnect(source.url, headers, 0);
+					}
+				}
+			}
+			statusCode = PIECE();
+		}
+		case ADAPTIVE -> statusCode = ADAPTIVE();
 		case MULTITHREAD -> {
-			int PIECE_COUNT = Math.min((int) Math.ceil((double) fileSize / (double) PIECE_MAX_SIZE), MAX_THREADS);
-			int PIECE_SIZE = (int) Math.ceil((double) fileSize / (double) PIECE_COUNT);
-			statusCode = MULTITHREAD(PIECE_COUNT, PIECE_SIZE);
+			long PIECE_SIZE = blockSize();
+			statusCode = MULTITHREAD((int) Math.ceil((double) fileSize / (double) PIECE_SIZE), PIECE_SIZE);
 		}
 		}
+		closeMetrics();
 		if (!URIUtils.statusIsOK(statusCode)) { // 验证下载状态
+			closeDigest();
+			closeJournal();
 			if (errorExit) {
 				throw new RuntimeException("文件下载失败，状态码: " + statusCode + " URL: " + url);
 			}
 			return statusCode;
 		}
 
-		// 效验文件完整性
-		String md5;
-		if (!Judge.isEmpty(hash) && !(md5 = FilesUtils.getMD5(storage)).equals(hash)) {
+		// 效验文件完整性,下载过程中已计算完成时不再读取文件
+		boolean verified = Judge.isEmpty(hash) || (Judge.isNull(digest) || digest.await() != fileSize ?
+				FilesUtils.hashValidity(storage, hash) :
+				digest.matches(fileSize));
+		closeDigest();
+		if (!verified && !repaired && method != Method.FULL) { // 按块校验值找出损坏的块,仅重新下载这些块
+			int damaged;
+			try {
+				damaged = journal.verify();
+			} catch (IOException e) {
+				damaged = 0;
+			}
+			if (damaged > 0) {
+				repaired = true;
+				closeJournal();
+				return method(Method.FILE).download(folder);
+			}
+		}
+		if (!verified) {
+			repaired = false;
 			storage.delete(); // 删除下载错误的文件
-			if (!ReadWriteUtils.orgin(conf).append(false).text(fileInfo.toJSONString())) { // 重置信息文件
+			try { // 重置信息文件
+				journal.reset();
+			} catch (IOException e) {
 				throw new RuntimeException("Configuration file reset information failed");
+			} finally {
+				closeJournal();
 			}
 			if (unlimitedRetry) {
 				return method(Method.FILE).download(folder);
 			}
 			if (errorExit) {
-				throw new RuntimeException("File verification is not accurate, URLFile md5:" + hash + " LocalFile md5: " + md5 + " URL: " + url);
+				throw new RuntimeException("File verification is not accurate, URLFile hash: " + hash + " URL: " + url);
 			} else {
 				try {
-					throw new RuntimeException("File verification is not accurate, URLFile md5:" + hash + " LocalFile md5: " + md5 + " URL: " + url);
+					throw new RuntimeException("File verification is not accurate, URLFile hash: " + hash + " URL: " + url);
 				} catch (Exception e) {
 					e.printStackTrace();
 				}
@@ -581,18 +1217,49 @@ public class NetworkFileUtils {
 			return HttpStatus.SC_REQUEST_TIMEOUT;
 		}
 
+		closeJournal();
 		conf.delete(); // 删除信息文件
 		return HttpStatus.SC_OK;
 	}
 
+	/**
+	 * 异步下载网络文件,下载在工作线程池中执行
+	 *
+	 * @return CompletableFuture,结果为下载状态码
+	 */
+	@Contract(pure = true) public CompletableFuture<Integer> downloadAsync() {
+		return downloadAsync(FilesUtils.getDownloadsPath());
+	}
+
+	/**
+	 * 异步下载网络文件,下载在工作线程池中执行
+	 *
+	 * @param folderPath 文件存放目录路径
+	 * @return CompletableFuture,结果为下载状态码
+	 */
+	@Contract(pure = true) public CompletableFuture<Integer> downloadAsync(@NotNull String folderPath) {
+		return downloadAsync(new File(folderPath));
+	}
+
+	/**
+	 * 异步下载网络文件,下载在工作线程池中执行,分块由下载线程池并发下载
+	 *
+	 * @param folder 文件存放目录对象
+	 * @return CompletableFuture,结果为下载状态码,启用错误退出时异常完成
+	 */
+	@Contract(pure = true) public CompletableFuture<Integer> downloadAsync(@NotNull File folder) {
+		return AsyncExecutor.supply(() -> download(folder));
+	}
+
 	/**
 	 * 全量下载，下载获取文件信息并写入文件
 	 *
 	 * @return 下载并写入是否成功(状态码)
 	 */
 	@Contract(pure = true) protected int FULL() {
-		return FULL(JsoupUtils.connect(url).proxy(proxy).headers(headers).cookies(cookies).referrer(referrer).excludeErrorStatus(excludeErrorStatusCodes)
-				.retry(retry, MILLISECONDS_SLEEP).retry(unlimitedRetry).errorExit(errorExit).execute());
+		return FULL(JsoupUtils.connect(url).proxy(proxy).headers(headers).cookies(cookies).referrer(referrer).limiter(limiter()).pooled(pooled)
+				.circuitBreaker(circuitBreaker).excludeErrorStatus(excludeErrorStatusCodes).retry(retry, MILLISECONDS_SLEEP).retryPolicy(retryPolicy).retry(unlimitedRetry)
+				.errorExit(errorExit).execute());
 	}
 
 	/**
@@ -602,32 +1269,278 @@ public class NetworkFileUtils {
 	 * @return 下载并写入是否成功(状态码)
 	 */
 	@Contract(pure = true) protected int FULL(final Response response) {
+		metrics.connect();
 		try (InputStream inputStream = response.bodyStream(); OutputStream outputStream = new FileOutputStream(storage)) {
-			inputStream.transferTo(outputStream);
+			byte[] buffer = new byte[bufferSize];
+			for (int length; !Judge.isMinusOne(length = inputStream.read(buffer)); ) {
+				outputStream.write(buffer, 0, length);
+				metrics.receive(length);
+				metrics.completed.add(length);
+				Bandwidth.acquire(bandwidth, length);
+				if (!Judge.isNull(digest)) { // 随数据流计算hash
+					digest.update(buffer, 0, length);
+				}
+			}
 		} catch (Exception e) {
 			return HttpStatus.SC_REQUEST_TIMEOUT;
+		} finally {
+			metrics.disconnect();
 		}
 		return HttpStatus.SC_OK;
 	}
 
-	@Contract(pure = true) protected int MULTITHREAD(int PIECE_COUNT, int PIECE_SIZE) {
+	@Contract(pure = true) protected int MULTITHREAD(int PIECE_COUNT, long PIECE_SIZE) {
+		if (writeMode == WriteMode.CHANNEL && !openChannel() || writeMode == WriteMode.MAPPED && !openMapped()) { // 打开共享文件通道或映射文件
+			return HttpStatus.SC_REQUEST_TIMEOUT;
+		}
 		final List<Integer> statusCodes = new CopyOnWriteArrayList<>();
-		executorService = Executors.newFixedThreadPool(MAX_THREADS); // 限制多线程;
-		for (int i = 0; i < PIECE_COUNT; i++, MultiThreadUtils.WaitForThread(interval)) {
-			executorService.execute(new ParameterizedThread<>(i, (index) -> { // 执行多线程程
-				int start = index * PIECE_SIZE;
-				int end = (index + 1 == PIECE_COUNT ? fileSize : (index + 1) * PIECE_SIZE) - 1;
-				int statusCode = addPiece(start, end);
-				statusCodes.add(statusCode);
-				if (!URIUtils.statusIsOK(statusCode)) {
-					executorService.shutdownNow(); // 结束未开始的线程，并关闭线程池
+		final AtomicInteger next = new AtomicInteger(); // 下一个区块索引
+		final List<Future<?>> workers = new ArrayList<>();
+		for (int i = 0, count = Math.min(PIECE_COUNT, MAX_THREADS); i < count; i++) { // 每个线程依次领取区块,限制单个下载的线程数
+			workers.add(executor().submit(() -> {
+				for (int index; statusCodes.isEmpty() && (index = next.getAndIncrement()) < PIECE_COUNT; ) { // 已有区块失败,跳过未开始的区块
+					long start = index * PIECE_SIZE;
+					long end = (index + 1 == PIECE_COUNT ? fileSize : (index + 1) * PIECE_SIZE) - 1;
+					int statusCode = addPiece(start, end);
+					if (!URIUtils.statusIsOK(statusCode)) { // 不中断进行中的线程,中断会关闭共享文件通道
+						statusCodes.add(statusCode);
+					}
 				}
 			}));
 		}
-		MultiThreadUtils.WaitForEnd(executorService); // 等待线程结束
-		// 判断下载状态
-		List<Integer> statusCode = statusCodes.parallelStream().filter(s -> !URIUtils.statusIsOK(s)).toList();
-		return statusCode.isEmpty() ? HttpStatus.SC_OK : statusCode.get(0);
+		awaitWorkers(workers); // 等待线程结束
+		closeChannel(); // 关闭共享文件通道
+		closeMapped(); // 关闭映射文件
+		return statusCodes.isEmpty() ? HttpStatus.SC_OK : statusCodes.get(0); // 判断下载状态
+	}
+
+	/**
+	 * 分块多线程下载,开启自适应分块大小时按日志中未完成区间依次划分区块,区块大小随实测速率调整
+	 *
+	 * @return 下载状态码
+	 */
+	@Contract(pure = true) protected int PIECE() {
+		if (Judge.isEmpty(pieceDuration) || !Judge.isNull(pieceHashes)) { // 区块hash按固定分块大小划分
+			return MULTITHREAD((int) Math.ceil((double) fileSize / (double) PIECE_MAX_SIZE), PIECE_MAX_SIZE);
+		}
+		if (writeMode == WriteMode.CHANNEL && !openChannel() || writeMode == WriteMode.MAPPED && !openMapped()) { // 打开共享文件通道或映射文件
+			return HttpStatus.SC_REQUEST_TIMEOUT;
+		}
+		pieceSizer = new PieceSizer(journal.blockSize(), pieceDuration * 1000L);
+		final Deque<long[]> gaps = new ArrayDeque<>(journal.gaps()); // 未划分区间
+		final List<Integer> statusCodes = new CopyOnWriteArrayList<>();
+		final List<Future<?>> workers = new ArrayList<>();
+		for (int i = 0; i < MAX_THREADS; i++) {
+			workers.add(executor().submit(() -> {
+				for (long[] piece; statusCodes.isEmpty() && !Judge.isNull(piece = nextPiece(gaps)); ) { // 已有区块失败,不再划分新区块
+					int statusCode = addPiece(piece[0], piece[1]);
+					if (!URIUtils.statusIsOK(statusCode)) {
+						statusCodes.add(statusCode);
+					}
+				}
+			}));
+		}
+		awaitWorkers(workers); // 等待线程结束
+		closeChannel(); // 关闭共享文件通道
+		closeMapped(); // 关闭映射文件
+		pieceSizer = null;
+		return statusCodes.isEmpty() ? HttpStatus.SC_OK : statusCodes.get(0);
+	}
+
+	/**
+	 * 从未划分区间的开头划分下一个区块,区块大小不超过剩余大小按线程数平分的大小,避免最后的区块集中在少数线程
+	 *
+	 * @param gaps 未划分区间
+	 * @return 区块 {起始位, 结束位},没有剩余区间时返回null
+	 */
+	@Contract(pure = true) protected long[] nextPiece(@NotNull Deque<long[]> gaps) {
+		synchronized (gaps) {
+			long[] gap = gaps.peekFirst();
+			if (Judge.isNull(gap)) {
+				return null;
+			}
+			long blockSize = pieceSizer.blockSize();
+			long remaining = gaps.stream().mapToLong(g -> g[1] - g[0] + 1).sum();
+			long share = (remaining / MAX_THREADS + blockSize - 1) / blockSize * blockSize; // 向上对齐日志块大小
+			long end = Math.min(gap[0] + Math.max(Math.min(pieceSizer.size(), share), blockSize) - 1, gap[1]);
+			long[] piece = { gap[0], end };
+			if (end == gap[1]) {
+				gaps.pollFirst();
+			} else {
+				gap[0] = end + 1;
+			}
+			return piece;
+		}
+	}
+
+	/**
+	 * 自适应多线程下载,线程完成当前区间后,拆分剩余最大的进行中区间并接管其后半部分
+	 *
+	 * @return 下载状态码
+	 */
+	@Contract(pure = true) protected int ADAPTIVE() {
+		if (!openChannel()) { // 区间结束位会动态收缩,固定使用共享文件通道
+			return HttpStatus.SC_REQUEST_TIMEOUT;
+		}
+		final Deque<Segment> pending = new ArrayDeque<>(); // 未分配区间
+		final List<Segment> active = new ArrayList<>(); // 进行中区间
+		for (long[] gap : journal.gaps()) {
+			pending.add(new Segment(gap[0], gap[1]));
+		}
+		final List<Integer> statusCodes = new CopyOnWriteArrayList<>();
+		final List<Future<?>> workers = new ArrayList<>();
+		for (int i = 0; i < MAX_THREADS; i++) {
+			workers.add(executor().submit(() -> {
+				for (Segment segment; statusCodes.isEmpty() && !Judge.isNull(segment = nextSegment(pending, active)); ) {
+					int statusCode = addSegment(segment);
+					synchronized (active) {
+						active.remove(segment);
+					}
+					if (!URIUtils.statusIsOK(statusCode)) {
+						statusCodes.add(statusCode); // 其它线程完成当前区间后退出
+						break;
+					}
+				}
+			}));
+		}
+		awaitWorkers(workers); // 等待线程结束
+		closeChannel(); // 关闭共享文件通道
+		return statusCodes.isEmpty() ? HttpStatus.SC_OK : statusCodes.get(0);
+	}
+
+	/**
+	 * 获取下一个待下载区间,没有未分配区间时拆分剩余最大的进行中区间,剩余不足两个块大小时不再拆分
+	 *
+	 * @param pending 未分配区间
+	 * @param active  进行中区间
+	 * @return 区间,没有可下载区间时返回null
+	 */
+	@Contract(pure = true) protected Segment nextSegment(@NotNull Deque<Segment> pending, @NotNull List<Segment> active) {
+		synchronized (active) {
+			Segment segment = pending.poll();
+			if (Judge.isNull(segment)) {
+				Segment victim = active.stream().max(Comparator.comparingLong(Segment::remaining)).orElse(null);
+				if (Judge.isNull(victim) || victim.remaining() < PIECE_MAX_SIZE * 2) {
+					return null;
+				}
+				long end = victim.end;
+				long middle = victim.position + victim.remaining() / 2;
+				victim.end = middle - 1;
+				segment = new Segment(middle, end);
+			}
+			active.add(segment);
+			return segment;
+		}
+	}
+
+	/**
+	 * 下载区间,失败时从已写入位置继续重试
+	 *
+	 * @param segment 区间
+	 * @return 状态码
+	 */
+	@Contract(pure = true) protected int addSegment(@NotNull Segment segment) {
+		DownloadMetrics.Piece state = metrics.piece(segment.start, segment.end);
+		int statusCode = writeSegment(segment);
+		for (int j = 0; !URIUtils.statusIsOK(statusCode) && !excludeErrorStatusCodes.contains(statusCode) && (j < retry && !sources.isOpen()
+				|| unlimitedRetry) && retryPolicy.acquire(retrySource(), unlimitedRetry); j++) {
+			metrics.retry(statusCode);
+			state.state = DownloadMetrics.PieceState.RETRYING;
+			MultiThreadUtils.WaitForThread((int) retryPolicy.delay(j, MILLISECONDS_SLEEP, statusCode, retryAfter.get())); // 程序等待
+			statusCode = writeSegment(segment);
+		}
+		retryAfter.remove();
+		retrySource.remove();
+		metrics.remove(state);
+		return statusCode;
+	}
+
+	/**
+	 * 下载区间剩余部分并写入文件
+	 *
+	 * @param segment 区间
+	 * @return 下载并写入是否成功(状态码)
+	 */
+	@Contract(pure = true) protected int writeSegment(@NotNull Segment segment) {
+		for (; ; ) { // 下载源停用时立即使用其它下载源
+			DownloadSources.Source source = selectSource(segment.start);
+			long position = segment.position;
+			long time = 0; // 响应开始时间,速率不计入连接限速等待
+			int statusCode;
+			metrics.connect();
+			try {
+				Response piece = JsoupUtils.connect(source.url).proxy(proxy).headers(new HashMap<>(headers)).header("range", "bytes=" + position + "-" + segment.end)
+						.header("accept-encoding", "identity").cookies(cookies).referrer(referrer).limiter(limiter(source)).pooled(pooled).circuitBreaker(circuitBreaker).execute();
+				time = System.nanoTime();
+				statusCode = Judge.isNull(piece) ?
+						HttpStatus.SC_REQUEST_TIMEOUT :
+						!URIUtils.statusIsOK(piece.statusCode()) ? piece.statusCode() :
+								isSameFile(source, piece, position) ? writeSegment(segment, piece) : HttpStatus.SC_PRECONDITION_FAILED;
+				retryAfter.set(Judge.isNull(piece) ? null : piece.header("retry-after"));
+			} finally {
+				metrics.disconnect();
+			}
+			if (URIUtils.statusIsOK(statusCode)) {
+				sources.success(source, segment.position - position, System.nanoTime() - time);
+				return statusCode;
+			} else if (!sources.failure(source, statusCode == HttpStatus.SC_PRECONDITION_FAILED || excludeErrorStatusCodes.contains(statusCode))) {
+				return statusCode;
+			}
+		}
+	}
+
+	/**
+	 * 区间写入文件,每次写入前读取当前结束位,区间被拆分后提前结束
+	 *
+	 * @param segment 区间
+	 * @param piece   块Response对象
+	 * @return 下载并写入是否成功(状态码)
+	 */
+	@Contract(pure = true) protected int writeSegment(@NotNull Segment segment, @NotNull Response piece) {
+		if (segment.position > 0 && piece.statusCode() == HttpStatus.SC_OK) { // 服务器忽略range返回完整文件,数据与区间位置不符
+			return HttpStatus.SC_REQUEST_TIMEOUT;
+		}
+		ByteBuffer buffer = borrowBuffer();
+		DownloadMetrics.Piece state = metrics.pieces.get(segment.start);
+		state.state = DownloadMetrics.PieceState.DOWNLOADING;
+		long begin = segment.position;
+		WriteBehind.Appender appender = Judge.isNull(writeBehind) ? null : writeBehind.appender(begin);
+		try (ReadableByteChannel input = Channels.newChannel(piece.bodyStream())) {
+			for (long remaining; (remaining = segment.remaining()) > 0; ) {
+				buffer.limit((int) Math.min(buffer.capacity(), remaining));
+				if (Judge.isMinusOne(input.read(buffer))) {
+					break;
+				}
+				buffer.flip();
+				long position = segment.position;
+				received(position, buffer);
+				if (Judge.isNull(appender)) {
+					while (buffer.hasRemaining()) {
+						position += channel.write(buffer, position);
+					}
+				} else {
+					position += buffer.remaining();
+					appender.write(buffer);
+				}
+				metrics.receive(position - segment.position);
+				Bandwidth.acquire(bandwidth, position - segment.position);
+				segment.position = state.position = position;
+				state.end = segment.end;
+				buffer.clear();
+			}
+			if (segment.remaining() <= 0 && flush(appender)) { // 数据写入文件后再记录日志
+				finish(segment.start, segment.end);
+				return HttpStatus.SC_PARTIAL_CONTENT;
+			}
+		} catch (IOException e) {
+			// e.printStackTrace();
+		} finally {
+			bufferPool.offer(buffer);
+			if (!flush(appender)) { // 已接收的数据写入失败,从本次起始位置重新下载
+				segment.position = state.position = begin;
+			}
+		}
+		return HttpStatus.SC_REQUEST_TIMEOUT;
 	}
 
 	/**
@@ -637,15 +1550,22 @@ public class NetworkFileUtils {
 	 * @param end   结束位
 	 * @return 状态码
 	 */
-	@Contract(pure = true) protected int addPiece(int start, int end) {
-		if (infos.contains(start + "-" + end)) {
+	@Contract(pure = true) protected int addPiece(long start, long end) {
+		if (journal.isFinished(start, end)) {
 			return HttpStatus.SC_PARTIAL_CONTENT;
 		}
+		DownloadMetrics.Piece state = metrics.piece(start, end);
 		int statusCode = writePiece(start, end);
-		for (int j = 0; !URIUtils.statusIsOK(statusCode) && !excludeErrorStatusCodes.contains(statusCode) && (j < retry || unlimitedRetry); j++) {
-			MultiThreadUtils.WaitForThread(MILLISECONDS_SLEEP); // 程序等待
+		for (int j = 0; !URIUtils.statusIsOK(statusCode) && !excludeErrorStatusCodes.contains(statusCode) && (j < retry && !sources.isOpen()
+				|| unlimitedRetry) && retryPolicy.acquire(retrySource(), unlimitedRetry); j++) {
+			metrics.retry(statusCode);
+			state.state = DownloadMetrics.PieceState.RETRYING;
+			MultiThreadUtils.WaitForThread((int) retryPolicy.delay(j, MILLISECONDS_SLEEP, statusCode, retryAfter.get())); // 程序等待
 			statusCode = writePiece(start, end);
 		}
+		retryAfter.remove();
+		retrySource.remove();
+		metrics.remove(state);
 		return statusCode;
 	}
 
@@ -656,12 +1576,103 @@ public class NetworkFileUtils {
 	 * @param end   块结束位
 	 * @return 下载并写入是否成功(状态码)
 	 */
-	@Contract(pure = true) protected int writePiece(final int start, final int end) {
-		Response piece = JsoupUtils.connect(url).proxy(proxy).headers(headers).header("range", "bytes=" + start + "-" + end).cookies(cookies).referrer(referrer)
-				.execute();
-		return Judge.isNull(piece) ?
-				HttpStatus.SC_REQUEST_TIMEOUT :
-				URIUtils.statusIsOK(piece.statusCode()) ? writePiece(start, end, piece) : piece.statusCode();
+	@Contract(pure = true) protected int writePiece(final long start, final long end) {
+		for (; ; ) { // 下载源停用时立即使用其它下载源
+			DownloadSources.Source source = selectSource(start);
+			long time = 0; // 响应开始时间,速率不计入连接限速等待
+			long request = 0; // 请求开始时间,获取连接令牌后计时,响应延迟不计入限速等待
+			int statusCode;
+			limiter(source).acquire(); // 在此获取连接令牌,不由连接对象在计时内等待
+			metrics.connect();
+			try {
+				JsoupUtils connection = JsoupUtils.connect(source.url).proxy(proxy).headers(new HashMap<>(headers)).header("range", "bytes=" + start + "-" + end)
+						.header("accept-encoding", "identity").cookies(cookies).referrer(referrer).pooled(pooled).circuitBreaker(circuitBreaker);
+				if (method == Method.MULTIPLEX) { // 区块按序号分配到HTTP/2连接
+					connection.transport(HttpTransport.http2(proxy, (int) (start / PIECE_MAX_SIZE % MULTIPLEX_CONNECTIONS)));
+				}
+				request = System.nanoTime();
+				Response piece = connection.execute();
+				time = System.nanoTime();
+				statusCode = Judge.isNull(piece) ?
+						HttpStatus.SC_REQUEST_TIMEOUT :
+						!URIUtils.statusIsOK(piece.statusCode()) ? piece.statusCode() :
+								isSameFile(source, piece, start) ? writePiece(start, end, piece) : HttpStatus.SC_PRECONDITION_FAILED;
+				retryAfter.set(Judge.isNull(piece) ? null : piece.header("retry-after"));
+			} finally {
+				metrics.disconnect();
+			}
+			PieceSizer sizer = pieceSizer;
+			if (URIUtils.statusIsOK(statusCode)) {
+				sources.success(source, end - start + 1, System.nanoTime() - time);
+				if (!Judge.isNull(sizer)) { // 调整后续区块大小
+					sizer.success(end - start + 1, time - request, System.nanoTime() - time);
+				}
+				return statusCode;
+			}
+			if (!Judge.isNull(sizer)) {
+				sizer.failure();
+			}
+			if (!sources.failure(source, statusCode == HttpStatus.SC_PRECONDITION_FAILED || excludeErrorStatusCodes.contains(statusCode))) {
+				return statusCode;
+			}
+		}
+	}
+
+	/**
+	 * 选择区块的下载源并记录到进度统计
+	 *
+	 * @param start 区块起始位
+	 * @return 下载源
+	 */
+	@Contract(pure = true) protected DownloadSources.Source selectSource(final long start) {
+		DownloadSources.Source source = sources.select();
+		retrySource.set(source.url);
+		DownloadMetrics.Piece state = metrics.pieces.get(start);
+		if (!Judge.isNull(state)) {
+			state.source = source.index;
+		}
+		return source;
+	}
+
+	/**
+	 * 判断下载源返回的区块是否为同一文件,Content-Range 的起始位及文件大小需与请求一致,ETag需与该下载源之前返回的一致<br/>
+	 * 不一致时下载源按停用处理(仅剩此下载源时保留),区块改由其它下载源下载
+	 *
+	 * @param source 下载源
+	 * @param piece  区块响应
+	 * @param start  请求的起始位
+	 * @return 是否为同一文件
+	 */
+	@Contract(pure = true) protected boolean isSameFile(@NotNull DownloadSources.Source source, @NotNull Response piece, final long start) {
+		String range = piece.header("content-range"); // bytes start-end/total
+		if (!Judge.isEmpty(range)) {
+			range = range.trim();
+			int space = range.indexOf(' ');
+			int dash = range.indexOf('-', space + 1);
+			int slash = range.indexOf('/', dash + 1);
+			if (space < 0 || dash < 0 || slash < 0) {
+				return false;
+			}
+			try {
+				String total = range.substring(slash + 1).trim();
+				if (Long.parseLong(range.substring(space + 1, dash).trim()) != start || !total.equals("*") && Long.parseLong(total) != fileSize) {
+					return false;
+				}
+			} catch (NumberFormatException e) {
+				return false;
+			}
+		}
+		return sources.etag(source, piece.header("etag"));
+	}
+
+	/**
+	 * 获取 区块线程上次请求的下载源链接,用于按下载源host获取重试预算
+	 *
+	 * @return 下载源链接,未选择下载源时为文件链接
+	 */
+	@Contract(pure = true) protected String retrySource() {
+		String source = retrySource.get();
+		return Judge.isNull(source) ? url : source;
 	}
 
 	/**
@@ -671,30 +1682,495 @@ public class NetworkFileUtils {
 	 * @param end   块结束位 * @param piece 块Response对象
 	 * @return 下载并写入是否成功(状态码)
 	 */
-	@Contract(pure = true) protected int writePiece(final int start, final int end, final Response piece) {
+	@Contract(pure = true) protected int writePiece(final long start, final long end, final Response piece) {
+		if (start > 0 && piece.statusCode() == HttpStatus.SC_OK) { // 服务器忽略range返回完整文件,数据与区块位置不符
+			return HttpStatus.SC_REQUEST_TIMEOUT;
+		}
+		DownloadMetrics.Piece state = metrics.pieces.get(start);
+		if (!Judge.isNull(state)) {
+			state.state = DownloadMetrics.PieceState.DOWNLOADING;
+			state.position = start;
+		}
+		return switch (writeMode) {
+			case RANDOM_ACCESS -> writePieceOfRandomAccess(start, end, piece);
+			case CHANNEL -> writePieceOfChannel(start, end, piece);
+			case MAPPED -> writePieceOfMapped(start, end, piece);
+		};
+	}
+
+	/**
+	 * RandomAccessFile 写入文件区块,每个区块独立打开文件
+	 *
+	 * @param start 块起始位
+	 * @param end   块结束位
+	 * @param piece 块Response对象
+	 * @return 下载并写入是否成功(状态码)
+	 */
+	@Contract(pure = true) protected int writePieceOfRandomAccess(final long start, final long end, final Response piece) {
 		try (InputStream inputStream = piece.bodyStream(); RandomAccessFile output = new RandomAccessFile(storage, "rw")) {
 			output.seek(start);
 			byte[] buffer = new byte[bufferSize];
-			int count = 0;
-			for (int length; !Judge.isMinusOne(length = inputStream.read(buffer)); count += length) {
+			StreamingDigest pieceDigest = pieceDigest(start);
+			long count = 0;
+			for (int length; count < end - start + 1 && !Judge.isMinusOne(length = inputStream.read(buffer, 0, (int) Math.min(buffer.length, end - start + 1 - count)));
+					count += length) { // 服务器忽略range时不写入区块以外的数据
+				received(start + count, ByteBuffer.wrap(buffer, 0, length));
 				output.write(buffer, 0, length);
+				metrics.receive(length);
+				Bandwidth.acquire(bandwidth, length);
+				if (!Judge.isNull(pieceDigest)) {
+					pieceDigest.update(buffer, 0, length);
+				}
+			}
+			if (end - start + 1 == count && (Judge.isNull(pieceDigest) || pieceDigest.matches(count))) {
+				finish(start, end);
+				return HttpStatus.SC_PARTIAL_CONTENT;
+			}
+		} catch (IOException e) {
+			// e.printStackTrace();
+		}
+		return HttpStatus.SC_REQUEST_TIMEOUT;
+	}
+
+	/**
+	 * FileChannel 写入文件区块,所有区块共用一个文件通道,使用直接缓冲区按位置写入
+	 *
+	 * @param start 块起始位
+	 * @param end   块结束位
+	 * @param piece 块Response对象
+	 * @return 下载并写入是否成功(状态码)
+	 */
+	@Contract(pure = true) protected int writePieceOfChannel(final long start, final long end, final Response piece) {
+		ByteBuffer buffer = borrowBuffer();
+		WriteBehind.Appender appender = Judge.isNull(writeBehind) ? null : writeBehind.appender(start);
+		try (ReadableByteChannel input = Channels.newChannel(piece.bodyStream())) {
+			StreamingDigest pieceDigest = pieceDigest(start);
+			long position = start;
+			for (long remaining; (remaining = end + 1 - position) > 0; ) { // 服务器忽略range时不写入区块以外的数据
+				buffer.limit((int) Math.min(buffer.capacity(), remaining));
+				if (Judge.isMinusOne(input.read(buffer))) {
+					break;
+				}
+				buffer.flip();
+				if (!Judge.isNull(pieceDigest)) {
+					pieceDigest.update(buffer);
+				}
+				received(position, buffer);
+				metrics.receive(buffer.remaining());
+				Bandwidth.acquire(bandwidth, buffer.remaining());
+				if (Judge.isNull(appender)) {
+					while (buffer.hasRemaining()) {
+						position += channel.write(buffer, position);
+					}
+				} else {
+					position += buffer.remaining();
+					appender.write(buffer);
+				}
+				buffer.clear();
 			}
-			if (end - start + 1 == count) {
-				ReadWriteUtils.orgin(conf).text(start + "-" + end);
+			if (end + 1 == position && (Judge.isNull(pieceDigest) || pieceDigest.matches(end - start + 1)) && flush(appender)) { // 数据写入文件后再记录日志
+				finish(start, end);
 				return HttpStatus.SC_PARTIAL_CONTENT;
 			}
 		} catch (IOException e) {
 			// e.printStackTrace();
+		} finally {
+			bufferPool.offer(buffer);
+			flush(appender); // 归还缓冲区,失败的区块重新下载
 		}
 		return HttpStatus.SC_REQUEST_TIMEOUT;
 	}
 
+	/**
+	 * 内存映射写入文件区块,所有区块共用映射窗口,按绝对位置写入,完成后将区块写入磁盘
+	 *
+	 * @param start 块起始位
+	 * @param end   块结束位
+	 * @param piece 块Response对象
+	 * @return 下载并写入是否成功(状态码)
+	 */
+	@Contract(pure = true) protected int writePieceOfMapped(final long start, final long end, final Response piece) {
+		ByteBuffer buffer = borrowBuffer();
+		try (ReadableByteChannel input = Channels.newChannel(piece.bodyStream())) {
+			StreamingDigest pieceDigest = pieceDigest(start);
+			long position = start;
+			for (long remaining; (remaining = end + 1 - position) > 0; ) { // 服务器忽略range时不写入区块以外的数据
+				buffer.limit((int) Math.min(buffer.capacity(), remaining));
+				if (Judge.isMinusOne(input.read(buffer))) {
+					break;
+				}
+				buffer.flip();
+				if (!Judge.isNull(pieceDigest)) {
+					pieceDigest.update(buffer);
+				}
+				received(position, buffer);
+				metrics.receive(buffer.remaining());
+				Bandwidth.acquire(bandwidth, buffer.remaining());
+				position += buffer.remaining();
+				mapped.write(position - buffer.remaining(), buffer);
+				buffer.clear();
+			}
+			if (end + 1 == position && (Judge.isNull(pieceDigest) || pieceDigest.matches(end - start + 1))) {
+				mapped.force(start, end); // 区块写入磁盘后再记录日志
+				finish(start, end);
+				return HttpStatus.SC_PARTIAL_CONTENT;
+			}
+		} catch (IOException e) {
+			// e.printStackTrace();
+		} finally {
+			bufferPool.offer(buffer);
+		}
+		return HttpStatus.SC_REQUEST_TIMEOUT;
+	}
+
+	/**
+	 * 登记即将写入文件的数据,由内存中的数据计算块校验值,未设置文件hash及区块hash时不计算
+	 *
+	 * @param position 文件位置
+	 * @param buffer   数据,读取后位置不变
+	 */
+	@Contract(pure = true) protected void received(final long position, @NotNull ByteBuffer buffer) {
+		if (isVerifiable()) {
+			journal.update(position, buffer);
+		}
+	}
+
+	/**
+	 * 判断是否记录块校验值,设置文件hash或区块hash时记录,用于hash不匹配时找出损坏的块
+	 *
+	 * @return 是否记录
+	 */
+	@Contract(pure = true) protected boolean isVerifiable() {
+		return !Judge.isEmpty(hash) || !Judge.isNull(pieceHashes);
+	}
+
+	/**
+	 * 等待合并写入的数据写入文件
+	 *
+	 * @param appender 追加器,为null时直接写入文件
+	 * @return 是否全部写入成功
+	 */
+	@Contract(pure = true) protected boolean flush(WriteBehind.Appender appender) {
+		if (Judge.isNull(appender)) {
+			return true;
+		}
+		try {
+			appender.flush();
+		} catch (IOException e) {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * 记录区间已完成,写入断点续传日志并推进文件hash计算
+	 *
+	 * @param start 起始位
+	 * @param end   结束位
+	 */
+	@Contract(pure = true) protected void finish(final long start, final long end) {
+		DownloadMetrics.Piece state = metrics.pieces.get(start);
+		journal.finish(start, end, Judge.isNull(state) ? -1 : state.source);
+		metrics.complete(start, end);
+		if (!Judge.isNull(digest)) {
+			digest.finish(start, end);
+		}
+	}
+
+	/**
+	 * 获取 区块hash计算对象,未设置区块hash值时返回null<br/>
+	 * 区块hash不匹配时不写入日志,区块按下载失败处理并重试
+	 *
+	 * @param start 块起始位
+	 * @return 区块hash计算对象
+	 */
+	@Contract(pure = true) protected StreamingDigest pieceDigest(final long start) {
+		int index = (int) (start / PIECE_MAX_SIZE);
+		return Judge.isNull(pieceHashes) || index >= pieceHashes.size() ? null : StreamingDigest.of(pieceHashes.get(index));
+	}
+
+	/**
+	 * 创建文件hash计算对象,续传时先登记日志中已完成的区间
+	 */
+	@Contract(pure = true) protected void openDigest() {
+		digest = Judge.isEmpty(hash) ? null : StreamingDigest.of(hash);
+		if (Judge.isNull(digest) || method == Method.FULL) {
+			return;
+		}
+		digest.file(storage);
+		long position = 0;
+		for (long[] gap : journal.gaps()) {
+			if (gap[0] > position) {
+				digest.finish(position, gap[0] - 1);
+			}
+			position = gap[1] + 1;
+		}
+		if (position < fileSize) {
+			digest.finish(position, fileSize - 1);
+		}
+	}
+
+	/**
+	 * 开始下载进度统计,续传时已完成部分计入完成字节数,设置监听器时开始定时发送快照
+	 */
+	@Contract(pure = true) protected void openMetrics() {
+		long completed = method == Method.FULL ? 0 : fileSize;
+		if (completed > 0) {
+			for (long[] gap : journal.gaps()) {
+				completed -= gap[1] - gap[0] + 1;
+			}
+		}
+		metrics.start(fileSize, completed);
+		if (!Judge.isNull(listener)) {
+			metrics.listen(listener, listenerInterval);
+		}
+	}
+
+	/**
+	 * 结束下载进度统计,监听器接收最终快照
+	 */
+	@Contract(pure = true) protected void closeMetrics() {
+		metrics.unlisten();
+		if (!Judge.isNull(listener)) {
+			listener.progress(metrics.snapshot(Judge.isNull(metrics.listening) ? metrics.window() : metrics.listening));
+		}
+	}
+
+	/**
+	 * 关闭文件hash计算对象
+	 */
+	@Contract(pure = true) protected void closeDigest() {
+		if (Judge.isNull(digest)) {
+			return;
+		}
+		try {
+			digest.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		digest = null;
+	}
+
+	/**
+	 * 从缓冲区池获取直接缓冲区,池为空时新建
+	 *
+	 * @return 直接缓冲区
+	 */
+	@Contract(pure = true) protected ByteBuffer borrowBuffer() {
+		ByteBuffer buffer = bufferPool.poll();
+		return Judge.isNull(buffer) || buffer.capacity() != bufferSize ? ByteBuffer.allocateDirect(bufferSize) : buffer.clear();
+	}
+
+	/**
+	 * 获取 日志块大小,经典多线程模式为每个线程的区块大小,其它模式为分块大小
+	 *
+	 * @return 块大小
+	 */
+	@Contract(pure = true) protected long blockSize() {
+		if (method == Method.MULTITHREAD && fileSize > 0) {
+			int PIECE_COUNT = Math.min((int) Math.ceil((double) fileSize / (double) PIECE_MAX_SIZE), MAX_THREADS);
+			return (long) Math.ceil((double) fileSize / (double) PIECE_COUNT);
+		}
+		return PIECE_MAX_SIZE;
+	}
+
+	/**
+	 * 获取 下载线程池,按线程池创建策略及线程数获取
+	 *
+	 * @return 线程池
+	 */
+	@Contract(pure = true) protected ExecutorService executor() {
+		if (Judge.isNull(executorService) || executorService.isShutdown()) {
+			executorService = executorStrategy.create(MAX_THREADS); // 限制多线程
+		}
+		return executorService;
+	}
+
+	/**
+	 * 等待下载线程结束,非共享线程池在结束后关闭
+	 *
+	 * @param workers 下载线程
+	 */
+	@Contract(pure = true) protected void awaitWorkers(@NotNull List<Future<?>> workers) {
+		workers.forEach(MultiThreadUtils::getFuture);
+		if (!executorStrategy.shared()) {
+			MultiThreadUtils.WaitForEnd(executorService);
+		}
+	}
+
+	/**
+	 * 关闭断点续传日志
+	 */
+	@Contract(pure = true) protected void closeJournal() {
+		if (Judge.isNull(journal)) {
+			return;
+		}
+		try {
+			journal.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		journal = null;
+	}
+
+	/**
+	 * 获取 连接速率限制,未指定时使用host共享令牌桶
+	 *
+	 * @return 令牌桶
+	 */
+	@Contract(pure = true) protected TokenBucket limiter() {
+		if (Judge.isNull(limiter)) {
+			limiter = limiter(url);
+		}
+		return limiter;
+	}
+
+	/**
+	 * 获取 下载源的连接速率限制,主链接使用 {@link #limiter()},镜像链接使用其host共享令牌桶
+	 *
+	 * @param source 下载源
+	 * @return 令牌桶
+	 */
+	@Contract(pure = true) protected TokenBucket limiter(@NotNull DownloadSources.Source source) {
+		return source.index == 0 ? limiter() : limiter(source.url);
+	}
+
+	/**
+	 * 获取 链接所属host的令牌桶,未设置连接速率时使用host共享令牌桶(只读),否则使用本下载的令牌桶
+	 *
+	 * @param url 链接
+	 * @return 令牌桶
+	 */
+	@Contract(pure = true) protected TokenBucket limiter(@NotNull String url) {
+		if (Judge.isNull(connectionRate)) {
+			return HostLimiter.url(url);
+		}
+		return limiters.computeIfAbsent(URIUtils.getHost(url),
+				host -> TokenBucket.create(connectionRate, connectionBurst > 0 ? connectionBurst : HostLimiter.DEFAULT_BURST)); // 速率不大于0时不限制
+	}
+
+	/**
+	 * 获取 下载源链接列表,主链接在前
+	 *
+	 * @return 链接列表
+	 */
+	@Contract(pure = true) protected List<String> sourceUrls() {
+		List<String> urls = new ArrayList<>();
+		urls.add(url);
+		urls.addAll(mirrors);
+		return urls;
+	}
+
+	/**
+	 * 打开共享文件通道
+	 *
+	 * @return 是否成功
+	 */
+	@Contract(pure = true) protected boolean openChannel() {
+		try {
+			channel = FileChannel.open(storage.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		} catch (IOException e) {
+			return false;
+		}
+		if (writeBehindSize > 0) { // 每个线程最多占用一个未写满的缓冲区,另有等待写入的缓冲区
+			writeBehind = new WriteBehind(channel, writeBehindSize, MAX_THREADS + 2);
+		}
+		return true;
+	}
+
+	/**
+	 * 打开映射文件,文件大小设置为下载文件大小
+	 *
+	 * @return 是否成功
+	 */
+	@Contract(pure = true) protected boolean openMapped() {
+		try {
+			mapped = MappedWindows.open(storage, fileSize, mappedWindowSize);
+		} catch (IOException e) {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * 检查剩余磁盘空间是否足够写入未完成的部分,并按分配方式预先分配分块下载的文件
+	 *
+	 * @return 状态码,空间不足时为 507,其它写入失败时为 408
+	 */
+	@Contract(pure = true) protected int allocate() {
+		if (Judge.isEmpty(fileSize)) { // 文件大小未知
+			return HttpStatus.SC_OK;
+		}
+		long required = method == Method.FULL || Judge.isNull(journal) ? fileSize : journal.gaps().stream().mapToLong(gap -> gap[1] - gap[0] + 1).sum();
+		long usable = storage.getAbsoluteFile().getParentFile().getUsableSpace(); // 无法获取时为0
+		if (usable > 0 && usable < required) {
+			return HttpStatus.SC_INSUFFICIENT_STORAGE;
+		}
+		if (method == Method.FULL || allocation == Allocation.NONE) {
+			return HttpStatus.SC_OK;
+		}
+		try (RandomAccessFile output = new RandomAccessFile(storage, "rw")) {
+			long size = output.length();
+			if (size >= fileSize) {
+				return HttpStatus.SC_OK;
+			}
+			if (allocation == Allocation.FULL) { // 新增部分按1M整块写入零值,强制分配磁盘空间,不覆盖已写入的数据
+				FileChannel allocator = output.getChannel();
+				ByteBuffer zeros = ALLOCATION_ZEROS.duplicate();
+				for (long position = size; position < fileSize; ) {
+					zeros.clear().limit((int) Math.min(zeros.capacity(), fileSize - position));
+					while (zeros.hasRemaining()) {
+						position += allocator.write(zeros, position);
+					}
+				}
+			}
+			output.setLength(fileSize);
+		} catch (IOException e) { // 剩余空间不足以分配剩余部分时为空间不足,否则为文件创建或写入失败
+			return storage.getAbsoluteFile().getParentFile().getUsableSpace() < fileSize - storage.length() ?
+					HttpStatus.SC_INSUFFICIENT_STORAGE :
+					HttpStatus.SC_REQUEST_TIMEOUT;
+		}
+		return HttpStatus.SC_OK;
+	}
+
+	/**
+	 * 关闭共享文件通道
+	 */
+	@Contract(pure = true) protected void closeChannel() {
+		if (Judge.isNull(channel)) {
+			return;
+		}
+		if (!Judge.isNull(writeBehind)) { // 等待已提交的数据写入
+			writeBehind.close();
+			writeBehind = null;
+		}
+		try {
+			channel.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		channel = null;
+	}
+
+	/**
+	 * 关闭映射文件
+	 */
+	@Contract(pure = true) protected void closeMapped() {
+		if (Judge.isNull(mapped)) {
+			return;
+		}
+		mapped.close();
+		mapped = null;
+	}
+
 	/**
 	 * 下载方法名<br/>
 	 * FILE - 配置文件下载<br/>
 	 * FULL - 全量下载模式<br/>
+	 * PIECE - 分块多线程模式<br/>
 	 * MULTITHREAD - 多线程模式<br/>
-	 * INTELLIGENT - 智能多线程模式
+	 * ADAPTIVE - 自适应多线程模式<br/>
+	 * MULTIPLEX - HTTP/2多路复用模式
 	 */
 	public enum Method {
 		/**
@@ -712,7 +2188,16 @@ public class NetworkFileUtils {
 		/**
 		 * 经典多线程模式
 		 */
-		MULTITHREAD(true);
+		MULTITHREAD(true),
+		/**
+		 * 自适应多线程模式,空闲线程拆分剩余最大的区间
+		 */
+		ADAPTIVE(true),
+		/**
+		 * HTTP/2多路复用模式,按分块大小下载,所有区块请求在少量HTTP/2连接上并发传输,服务器不支持HTTP/2时使用HTTP/1.1连接池<br/>
+		 * 默认使用JDK的HTTP/2流量控制参数;通过 multiplex(connections, true) 调整时会设置JVM全局的 jdk.httpclient.* 系统属性,影响进程内所有 HttpClient
+		 */
+		MULTIPLEX(true);
 
 		private final boolean hasBody;
 
@@ -730,4 +2215,70 @@ public class NetworkFileUtils {
 		}
 	}
 
+	/**
+	 * 下载区间,结束位可被其它线程拆分收缩
+	 */
+	protected static class Segment {
+		protected final long start; // 起始位
+		protected volatile long position; // 已写入位置
+		protected volatile long end; // 结束位
+
+		protected Segment(long start, long end) {
+			this.start = start;
+			this.position = start;
+			this.end = end;
+		}
+
+		/**
+		 * 获取 剩余未写入大小
+		 *
+		 * @return 剩余大小
+		 */
+		@Contract(pure = true) protected long remaining() {
+			return end - position + 1;
+		}
+	}
+
+	/**
+	 * 分块写入模式<br/>
+	 * RANDOM_ACCESS - 每个区块独立打开RandomAccessFile写入<br/>
+	 * CHANNEL - 共享FileChannel按位置写入<br/>
+	 * MAPPED - 内存映射文件,按窗口分段映射,区块完成时写入磁盘
+	 */
+	public enum WriteMode {
+		/**
+		 * RandomAccessFile 写入
+		 */
+		RANDOM_ACCESS,
+		/**
+		 * 共享 FileChannel 写入
+		 */
+		CHANNEL,
+		/**
+		 * MappedByteBuffer 内存映射写入
+		 */
+		MAPPED
+	}
+
+	/**
+	 * 分块下载文件空间分配方式<br/>
+	 * NONE - 不分配,文件随写入增长<br/>
+	 * SPARSE - 开始下载前设置文件大小,支持稀疏文件的文件系统不占用磁盘空间<br/>
+	 * FULL - 开始下载前分配全部磁盘空间,减少多线程写入产生的碎片
+	 */
+	public enum Allocation {
+		/**
+		 * 不分配
+		 */
+		NONE,
+		/**
+		 * 稀疏文件
+		 */
+		SPARSE,
+		/**
+		 * 完整分配
+		 */
+		FULL
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,89 @@
+package org.haic.often.Network;
+
+import org.jetbrains.annotations.Contract;
+
+/**
+ * 自适应分块大小,按已完成区块请求的单连接速率及响应延迟调整后续区块大小,使每个区块请求的耗时接近目标时长<br/>
+ * 高速连接使用大区块减少请求次数,低速或不稳定的连接使用小区块降低重试代价,区块失败时大小减半<br/>
+ * 区块大小为日志块大小的整数倍,区块边界与断点续传日志的块边界对齐,日志不记录区块大小,续传时按未完成区间重新划分
+ *
+ * @author haicdust
+ * @version 1.0
+ * @since 2022/3/29 19:40
+ */
+public class PieceSizer {
+
+	protected static final long MAX_SIZE = 268435456; // 区块大小上限,256M
+	protected static final double SMOOTHING = 0.25; // 速率及延迟的平滑系数
+	protected static final int MAX_GROWTH = 4; // 单次调整的最大增长倍数
+
+	protected final long blockSize; // 日志块大小,区块大小的最小单位
+	protected final long maxSize; // 区块大小上限
+	protected final long target; // 目标请求时长(纳秒)
+	protected double rate; // 平滑后的单连接速率(字节/纳秒),为0时未测量
+	protected double rtt; // 平滑后的响应延迟(纳秒)
+	protected long size; // 当前区块大小
+
+	/**
+	 * 创建自适应分块大小,初始为日志块大小
+	 *
+	 * @param blockSize 日志块大小
+	 * @param target    目标请求时长(毫秒)
+	 */
+	public PieceSizer(final long blockSize, final long target) {
+		this.blockSize = Math.max(blockSize, 1);
+		this.maxSize = Math.max(this.blockSize, MAX_SIZE / this.blockSize * this.blockSize);
+		this.target = Math.max(target, 1) * 1000000;
+		this.size = this.blockSize;
+	}
+
+	/**
+	 * 获取 当前区块大小
+	 *
+	 * @return 区块大小,日志块大小的整数倍
+	 */
+	@Contract(pure = true) public synchronized long size() {
+		return size;
+	}
+
+	/**
+	 * 获取 日志块大小
+	 *
+	 * @return 日志块大小
+	 */
+	@Contract(pure = true) public long blockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * 记录区块请求完成,按平滑后的速率及延迟计算目标时长内可传输的大小
+	 *
+	 * @param length   区块长度
+	 * @param latency  请求发出至收到响应的时间(纳秒)
+	 * @param transfer 接收正文的时间(纳秒)
+	 */
+	@Contract(pure = true) public synchronized void success(final long length, final long latency, final long transfer) {
+		double sample = (double) length / Math.max(transfer, 1);
+		rate = rate == 0 ? sample : rate + SMOOTHING * (sample - rate);
+		rtt = rtt == 0 ? latency : rtt + SMOOTHING * (latency - rtt);
+		double expected = rate * Math.max(target - rtt, target / 2.0); // 延迟超过目标时长一半时按一半计算,避免区块过小
+		resize((long) Math.min(expected, (double) size * MAX_GROWTH));
+	}
+
+	/**
+	 * 记录区块请求失败,区块大小减半
+	 */
+	@Contract(pure = true) public synchronized void failure() {
+		resize(size / 2);
+	}
+
+	/**
+	 * 设置区块大小,向下对齐日志块大小并限制在上下限之间
+	 *
+	 * @param length 区块大小
+	 */
+	@Contract(pure = true) protected void resize(final long length) {
+		size = Math.min(Math.max(length / blockSize * blockSize, blockSize), maxSize);
+	}
+
+}
@@ -0,0 +1,678 @@
+package org.haic.often.Network;
+
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.TypeReference;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.haic.often.Judge;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jsoup.Connection;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 响应缓存,JsoupUtils、HttpsUtils 的GET请求共用<br/>
+ * 内存层按访问顺序淘汰(LRU),总大小不超过内存上限;磁盘层保存所有缓存,超过磁盘上限时删除最早写入的缓存<br/>
+ * 新鲜度按 Cache-Control max-age、Expires 计算,服务器未指定时使用默认有效时间;新鲜的缓存直接返回不发起请求<br/>
+ * 过期的缓存带 If-None-Match/If-Modified-Since 发起条件请求,304 响应不传输正文,刷新有效时间后返回缓存<br/>
+ * 缓存按链接区分,响应带 Vary 时记录请求实际发送的对应请求头,请求头不同时不使用该缓存,Vary: * 不缓存<br/>
+ * 带 cookie 或 authorization 的请求为会话请求,不使用缓存,见 {@link #isPrivate(Map)}
+ *
+ * @author haicdust
+ * @version 1.0
+ * @since 2022/3/25 20:40
+ */
+public class ResponseCache {
+
+	protected static final int HEADER_OVERHEAD = 512; // 每个缓存响应头及对象的估算大小
+	protected static final Set<String> PRIVATE_HEADERS = Set.of("cookie", "authorization", "proxy-authorization"); // 会话请求头
+
+	protected long maxMemory = 64 * 1024 * 1024; // 内存层上限(字节)
+	protected long maxEntrySize = 8 * 1024 * 1024; // 单个响应上限(字节),超过时不缓存
+	protected long defaultMaxAge; // 服务器未指定有效时间时的默认有效时间(毫秒)
+	protected Path disk; // 磁盘层目录,为空时仅使用内存层
+	protected long maxDisk = 1024 * 1024 * 1024; // 磁盘层上限(字节)
+
+	protected final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(16, 0.75f, true); // 链接 -> 缓存,按访问顺序排列
+	protected long memoryBytes; // 内存层已用大小
+	protected final AtomicLong diskBytes = new AtomicLong(-1); // 磁盘层已用大小,首次写入时统计
+
+	protected ResponseCache() {
+	}
+
+	/**
+	 * 获取新的响应缓存,默认内存层64M,单个响应8M,不使用磁盘层
+	 *
+	 * @return new ResponseCache
+	 */
+	@Contract(pure = true) public static ResponseCache config() {
+		return new ResponseCache();
+	}
+
+	/**
+	 * 设置 内存层上限
+	 *
+	 * @param maxMemory 上限(字节)
+	 * @return this
+	 */
+	@Contract(pure = true) public ResponseCache memory(final long maxMemory) {
+		this.maxMemory = maxMemory;
+		return this;
+	}
+
+	/**
+	 * 设置 单个响应上限,超过时不缓存
+	 *
+	 * @param maxEntrySize 上限(字节)
+	 * @return this
+	 */
+	@Contract(pure = true) public ResponseCache maxEntrySize(final long maxEntrySize) {
+		this.maxEntrySize = maxEntrySize;
+		return this;
+	}
+
+	/**
+	 * 设置 服务器未指定 max-age 或 Expires 时的默认有效时间,为0时每次使用前条件请求验证
+	 *
+	 * @param defaultMaxAge 有效时间(毫秒)
+	 * @return this
+	 */
+	@Contract(pure = true) public ResponseCache defaultMaxAge(final long defaultMaxAge) {
+		this.defaultMaxAge = defaultMaxAge;
+		return this;
+	}
+
+	/**
+	 * 设置 磁盘层,内存层淘汰的缓存仍可从磁盘读取,程序重启后继续使用
+	 *
+	 * @param disk    缓存目录
+	 * @param maxDisk 磁盘层上限(字节)
+	 * @return this
+	 */
+	@Contract(pure = true) public ResponseCache disk(@NotNull Path disk, final long maxDisk) {
+		this.disk = disk;
+		this.maxDisk = maxDisk;
+		return this;
+	}
+
+	/**
+	 * 判断请求是否为会话请求,带 cookie、authorization 或 proxy-authorization 请求头时响应因用户而异,不使用缓存
+	 *
+	 * @param headers 请求头
+	 * @return 是否为会话请求
+	 */
+	@Contract(pure = true) public static boolean isPrivate(@NotNull Map<String, String> headers) {
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			if (!Judge.isNull(header.getKey()) && PRIVATE_HEADERS.contains(header.getKey().toLowerCase()) && !Judge.isEmpty(header.getValue())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 获取 链接的缓存,缓存的响应带 Vary 时请求头需与缓存时发送的请求头一致
+	 *
+	 * @param url     链接
+	 * @param headers 本次请求发送的请求头
+	 * @return 缓存,没有或请求头不一致时为null
+	 */
+	@Contract(pure = true) public Entry get(@NotNull String url, @NotNull Map<String, String> headers) {
+		Entry entry = get(url);
+		return Judge.isNull(entry) || entry.matches(headers) ? entry : null;
+	}
+
+	/**
+	 * 获取 链接的缓存,内存层没有时从磁盘层读取,不检查 Vary
+	 *
+	 * @param url 链接
+	 * @return 缓存,没有时为null
+	 */
+	@Contract(pure = true) public Entry get(@NotNull String url) {
+		Entry entry;
+		synchronized (memory) {
+			entry = memory.get(url);
+		}
+		if (Judge.isNull(entry) && !Judge.isNull(disk)) {
+			entry = read(url);
+			if (!Judge.isNull(entry)) {
+				remember(entry);
+			}
+		}
+		return entry;
+	}
+
+	/**
+	 * 获取 条件请求头,缓存过期时用于验证
+	 *
+	 * @param entry 缓存,为null时返回空请求头
+	 * @return 请求头
+	 */
+	@Contract(pure = true) public Map<String, String> conditional(Entry entry) {
+		Map<String, String> headers = new HashMap<>();
+		if (!Judge.isNull(entry)) {
+			String etag = entry.header("etag");
+			String lastModified = entry.header("last-modified");
+			if (!Judge.isEmpty(etag)) {
+				headers.put("if-none-match", etag);
+			}
+			if (!Judge.isEmpty(lastModified)) {
+				headers.put("if-modified-since", lastModified);
+			}
+		}
+		return headers;
+	}
+
+	/**
+	 * 判断响应是否可以缓存,仅缓存200响应,no-store、private、Vary: *、超过单个响应上限、无有效时间且无法验证时不缓存
+	 *
+	 * @param statusCode 状态码
+	 * @param headers    响应头
+	 * @return 是否可以缓存
+	 */
+	@Contract(pure = true) public boolean storable(final int statusCode, @NotNull Map<String, List<String>> headers) {
+		List<String> directives = directives(headers);
+		if (statusCode != HttpStatus.SC_OK || directives.contains("no-store") || directives.contains("private") || vary(headers).contains("*")) {
+			return false;
+		}
+		String contentLength = first(headers, "content-length");
+		try {
+			if (!Judge.isEmpty(contentLength) && Long.parseLong(contentLength.trim()) > maxEntrySize) {
+				return false;
+			}
+		} catch (NumberFormatException e) {
+			// 忽略错误的长度
+		}
+		return lifetime(headers) > 0 || !Judge.isEmpty(first(headers, "etag")) || !Judge.isEmpty(first(headers, "last-modified"));
+	}
+
+	/**
+	 * 缓存响应,视为未发送任何 Vary 列出的请求头
+	 *
+	 * @param url        链接
+	 * @param statusCode 状态码
+	 * @param headers    响应头
+	 * @param body       响应正文
+	 * @return 缓存,不可缓存时为null
+	 */
+	@Contract(pure = true) public Entry put(@NotNull String url, final int statusCode, @NotNull Map<String, List<String>> headers, byte[] body) {
+		return put(url, statusCode, headers, body, new HashMap<>());
+	}
+
+	/**
+	 * 缓存响应,记录 Vary 列出的请求头在本次请求中的值
+	 *
+	 * @param url        链接
+	 * @param statusCode 状态码
+	 * @param headers    响应头
+	 * @param body       响应正文
+	 * @param request    本次请求发送的请求头
+	 * @return 缓存,不可缓存时为null
+	 */
+	@Contract(pure = true) public Entry put(@NotNull String url, final int statusCode, @NotNull Map<String, List<String>> headers, byte[] body,
+			@NotNull Map<String, String> request) {
+		if (!storable(statusCode, headers) || Judge.isNull(body) || body.length > maxEntrySize) {
+			return null;
+		}
+		Map<String, String> varied = new TreeMap<>();
+		for (String name : vary(headers)) {
+			String value = header(request, name);
+			varied.put(name, Judge.isNull(value) ? "" : value);
+		}
+		Entry entry = new Entry(url, statusCode, headers, body, System.currentTimeMillis(), lifetime(headers), varied);
+		store(entry);
+		return entry;
+	}
+
+	/**
+	 * 304响应验证缓存后,合并新的响应头并刷新有效时间
+	 *
+	 * @param entry   缓存
+	 * @param headers 304响应头
+	 * @return 刷新后的缓存
+	 */
+	@Contract(pure = true) public Entry revalidate(@NotNull Entry entry, @NotNull Map<String, List<String>> headers) {
+		Map<String, List<String>> merged = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		merged.putAll(entry.headers);
+		headers.forEach((name, values) -> {
+			if (!Judge.isNull(name) && !name.equalsIgnoreCase("content-length") && !name.equalsIgnoreCase("content-encoding")) {
+				merged.put(name, values);
+			}
+		});
+		Entry refreshed = new Entry(entry.url, entry.statusCode, merged, entry.body, System.currentTimeMillis(), lifetime(merged), entry.varied);
+		store(refreshed);
+		return refreshed;
+	}
+
+	/**
+	 * 删除链接的缓存
+	 *
+	 * @param url 链接
+	 */
+	@Contract(pure = true) public void remove(@NotNull String url) {
+		synchronized (memory) {
+			Entry entry = memory.remove(url);
+			if (!Judge.isNull(entry)) {
+				memoryBytes -= entry.size();
+			}
+		}
+		if (!Judge.isNull(disk)) {
+			delete(file(url));
+		}
+	}
+
+	/**
+	 * 清空内存层及磁盘层
+	 */
+	@Contract(pure = true) public void clear() {
+		synchronized (memory) {
+			memory.clear();
+			memoryBytes = 0;
+		}
+		if (!Judge.isNull(disk)) {
+			try (Stream<Path> files = Files.list(disk)) {
+				files.filter(file -> file.toString().endsWith(".cache")).forEach(this::delete);
+			} catch (IOException e) {
+				// e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * 写入内存层及磁盘层
+	 *
+	 * @param entry 缓存
+	 */
+	@Contract(pure = true) protected void store(@NotNull Entry entry) {
+		remember(entry);
+		if (!Judge.isNull(disk)) {
+			write(entry);
+		}
+	}
+
+	/**
+	 * 写入内存层,超过上限时淘汰最久未使用的缓存
+	 *
+	 * @param entry 缓存
+	 */
+	@Contract(pure = true) protected void remember(@NotNull Entry entry) {
+		synchronized (memory) {
+			Entry previous = memory.put(entry.url, entry);
+			memoryBytes += entry.size() - (Judge.isNull(previous) ? 0 : previous.size());
+			for (Iterator<Entry> iterator = memory.values().iterator(); memoryBytes > maxMemory && iterator.hasNext(); ) {
+				memoryBytes -= iterator.next().size();
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * 从磁盘层读取缓存,文件格式: 元数据长度(int) + 元数据(JSON) + 正文
+	 *
+	 * @param url 链接
+	 * @return 缓存,不存在或损坏时为null
+	 */
+	@Contract(pure = true) protected Entry read(@NotNull String url) {
+		Path file = file(url);
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			byte[] meta = new byte[input.readInt()];
+			input.readFully(meta);
+			JSONObject info = JSONObject.parseObject(new String(meta, StandardCharsets.UTF_8));
+			if (!url.equals(info.getString("url"))) { // hash冲突
+				return null;
+			}
+			Map<String, List<String>> headers = info.getObject("headers", new TypeReference<Map<String, List<String>>>() {});
+			Map<String, String> varied = info.containsKey("vary") ? info.getObject("vary", new TypeReference<Map<String, String>>() {}) : new HashMap<>();
+			return new Entry(url, info.getIntValue("statusCode"), headers, input.readAllBytes(), info.getLongValue("storedAt"), info.getLongValue("lifetime"), varied);
+		} catch (IOException | RuntimeException e) {
+			delete(file);
+			return null;
+		}
+	}
+
+	/**
+	 * 写入磁盘层,先写临时文件再替换,超过上限时删除最早写入的缓存
+	 *
+	 * @param entry 缓存
+	 */
+	@Contract(pure = true) protected void write(@NotNull Entry entry) {
+		Path file = file(entry.url);
+		Path temp = file.resolveSibling(file.getFileName() + "." + Thread.currentThread().getId() + ".tmp");
+		JSONObject info = new JSONObject();
+		info.put("url", entry.url);
+		info.put("statusCode", entry.statusCode);
+		info.put("storedAt", entry.storedAt);
+		info.put("lifetime", entry.lifetime);
+		info.put("headers", entry.headers);
+		info.put("vary", entry.varied);
+		byte[] meta = info.toJSONString().getBytes(StandardCharsets.UTF_8);
+		try {
+			Files.createDirectories(disk);
+			usage(); // 首次写入前统计已有缓存
+			long previous = Files.isRegularFile(file) ? Files.size(file) : 0;
+			try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				output.writeInt(meta.length);
+				output.write(meta);
+				output.write(entry.body);
+			}
+			long size = Files.size(temp);
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			if (diskBytes.addAndGet(size - previous) > maxDisk) {
+				evict();
+			}
+		} catch (IOException e) {
+			delete(temp);
+		}
+	}
+
+	/**
+	 * 统计磁盘层已用大小
+	 *
+	 * @return 已用大小(字节)
+	 */
+	@Contract(pure = true) protected long usage() throws IOException {
+		if (diskBytes.get() < 0) {
+			synchronized (diskBytes) {
+				if (diskBytes.get() < 0) {
+					try (Stream<Path> files = Files.list(disk)) {
+						diskBytes.set(files.filter(file -> file.toString().endsWith(".cache")).mapToLong(file -> file.toFile().length()).sum());
+					}
+				}
+			}
+		}
+		return diskBytes.get();
+	}
+
+	/**
+	 * 删除最早写入的磁盘缓存,直到不超过磁盘层上限的90%
+	 */
+	@Contract(pure = true) protected synchronized void evict() {
+		File[] files = disk.toFile().listFiles((dir, name) -> name.endsWith(".cache"));
+		if (Judge.isNull(files)) {
+			return;
+		}
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+		for (int i = 0; i < files.length && diskBytes.get() > maxDisk * 0.9; i++) {
+			long size = files[i].length();
+			if (files[i].delete()) {
+				diskBytes.addAndGet(-size);
+			}
+		}
+	}
+
+	/**
+	 * 删除磁盘文件
+	 *
+	 * @param file 文件
+	 */
+	@Contract(pure = true) protected void delete(@NotNull Path file) {
+		try {
+			long size = Files.isRegularFile(file) ? Files.size(file) : 0;
+			if (Files.deleteIfExists(file) && file.toString().endsWith(".cache") && diskBytes.get() >= 0) {
+				diskBytes.addAndGet(-size);
+			}
+		} catch (IOException e) {
+			// e.printStackTrace();
+		}
+	}
+
+	/**
+	 * 获取 链接对应的磁盘缓存文件
+	 *
+	 * @param url 链接
+	 * @return 文件路径
+	 */
+	@Contract(pure = true) protected Path file(@NotNull String url) {
+		return disk.resolve(DigestUtils.md5Hex(url) + ".cache");
+	}
+
+	/**
+	 * 计算响应有效时间,优先 max-age,其次 Expires 与 Date 之差,no-cache 时为0
+	 *
+	 * @param headers 响应头
+	 * @return 有效时间(毫秒)
+	 */
+	@Contract(pure = true) protected long lifetime(@NotNull Map<String, List<String>> headers) {
+		List<String> directives = directives(headers);
+		if (directives.contains("no-cache")) {
+			return 0;
+		}
+		for (String directive : directives) {
+			if (directive.startsWith("max-age=")) {
+				try {
+					return Math.max(Long.parseLong(directive.substring(8).replace("\"", "")), 0) * 1000;
+				} catch (NumberFormatException e) {
+					return 0;
+				}
+			}
+		}
+		String expires = first(headers, "expires");
+		if (!Judge.isEmpty(expires)) {
+			try {
+				String date = first(headers, "date");
+				ZonedDateTime now = Judge.isEmpty(date) ? ZonedDateTime.now() : ZonedDateTime.parse(date, DateTimeFormatter.RFC_1123_DATE_TIME);
+				return Math.max(ZonedDateTime.parse(expires, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli() - now.toInstant().toEpochMilli(), 0);
+			} catch (RuntimeException e) {
+				return 0; // 无效的 Expires 表示已过期
+			}
+		}
+		return defaultMaxAge;
+	}
+
+	/**
+	 * 获取 Cache-Control 指令,小写
+	 *
+	 * @param headers 响应头
+	 * @return 指令列表
+	 */
+	@Contract(pure = true) protected static List<String> directives(@NotNull Map<String, List<String>> headers) {
+		List<String> directives = new ArrayList<>();
+		headers.forEach((name, values) -> {
+			if ("cache-control".equalsIgnoreCase(name)) {
+				for (String value : values) {
+					for (String directive : value.split(",")) {
+						directives.add(directive.trim().toLowerCase());
+					}
+				}
+			}
+		});
+		return directives;
+	}
+
+	/**
+	 * 获取 Vary 列出的请求头名称,小写
+	 *
+	 * @param headers 响应头
+	 * @return 请求头名称集合
+	 */
+	@Contract(pure = true) protected static Set<String> vary(@NotNull Map<String, List<String>> headers) {
+		Set<String> names = new TreeSet<>();
+		headers.forEach((name, values) -> {
+			if ("vary".equalsIgnoreCase(name)) {
+				for (String value : values) {
+					for (String header : value.split(",")) {
+						if (!header.isBlank()) {
+							names.add(header.trim().toLowerCase());
+						}
+					}
+				}
+			}
+		});
+		return names;
+	}
+
+	/**
+	 * 获取 请求头的值,忽略大小写
+	 *
+	 * @param headers 请求头
+	 * @param name    名称
+	 * @return 值,不存在时为null
+	 */
+	@Contract(pure = true) protected static String header(@NotNull Map<String, String> headers, @NotNull String name) {
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			if (name.equalsIgnoreCase(header.getKey())) {
+				return header.getValue();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 获取 响应头的第一个值,忽略大小写
+	 *
+	 * @param headers 响应头
+	 * @param name    名称
+	 * @return 值,不存在时为null
+	 */
+	@Contract(pure = true) protected static String first(@NotNull Map<String, List<String>> headers, @NotNull String name) {
+		for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+			if (name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+				return header.getValue().get(0);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 缓存的响应
+	 */
+	public static class Entry {
+
+		protected final String url; // 链接
+		protected final int statusCode; // 状态码
+		protected final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER); // 响应头
+		protected final byte[] body; // 响应正文
+		protected final long storedAt; // 缓存或验证时间(毫秒)
+		protected final long lifetime; // 有效时间(毫秒)
+		protected final Map<String, String> varied; // Vary 列出的请求头 -> 缓存时发送的值,未发送时为空字符串
+
+		protected Entry(@NotNull String url, final int statusCode, @NotNull Map<String, List<String>> headers, byte[] body, final long storedAt, final long lifetime) {
+			this(url, statusCode, headers, body, storedAt, lifetime, new HashMap<>());
+		}
+
+		protected Entry(@NotNull String url, final int statusCode, @NotNull Map<String, List<String>> headers, byte[] body, final long storedAt, final long lifetime,
+				@NotNull Map<String, String> varied) {
+			this.varied = new TreeMap<>(varied);
+			this.url = url;
+			this.statusCode = statusCode;
+			headers.forEach((name, values) -> {
+				if (!Judge.isNull(name)) {
+					this.headers.put(name, new ArrayList<>(values));
+				}
+			});
+			this.body = body;
+			this.storedAt = storedAt;
+			this.lifetime = lifetime;
+		}
+
+		/**
+		 * 是否在有效时间内,新鲜的缓存无需请求
+		 *
+		 * @return 是否新鲜
+		 */
+		@Contract(pure = true) public boolean isFresh() {
+			return System.currentTimeMillis() - storedAt < lifetime;
+		}
+
+		/**
+		 * 判断请求头是否与缓存时发送的 Vary 请求头一致
+		 *
+		 * @param headers 本次请求发送的请求头
+		 * @return 是否一致
+		 */
+		@Contract(pure = true) public boolean matches(@NotNull Map<String, String> headers) {
+			for (Map.Entry<String, String> vary : varied.entrySet()) {
+				String value = ResponseCache.header(headers, vary.getKey());
+				if (!vary.getValue().equals(Judge.isNull(value) ? "" : value)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * 获取 链接
+		 *
+		 * @return 链接
+		 */
+		@Contract(pure = true) public String url() {
+			return url;
+		}
+
+		/**
+		 * 获取 状态码
+		 *
+		 * @return 状态码
+		 */
+		@Contract(pure = true) public int statusCode() {
+			return statusCode;
+		}
+
+		/**
+		 * 获取 响应头的值,多个值以逗号连接
+		 *
+		 * @param name 名称
+		 * @return 值,不存在时为null
+		 */
+		@Contract(pure = true) public String header(@NotNull String name) {
+			List<String> values = headers.get(name);
+			return Judge.isNull(values) || values.isEmpty() ? null : String.join(", ", values);
+		}
+
+		/**
+		 * 获取 响应头
+		 *
+		 * @return 响应头
+		 */
+		@Contract(pure = true) public Map<String, List<String>> headers() {
+			return Collections.unmodifiableMap(headers);
+		}
+
+		/**
+		 * 获取 响应正文
+		 *
+		 * @return 响应正文
+		 */
+		@Contract(pure = true) public byte[] body() {
+			return body;
+		}
+
+		/**
+		 * 转换为 Jsoup Response,正文已解码
+		 *
+		 * @param method 请求方法
+		 * @return Response
+		 */
+		@Contract(pure = true) public Connection.Response response(@NotNull Connection.Method method) {
+			try {
+				return new HttpTransport.PooledResponse(new URL(url), method, statusCode, headers, body);
+			} catch (IOException e) {
+				return null;
+			}
+		}
+
+		/**
+		 * 估算占用内存大小
+		 *
+		 * @return 大小(字节)
+		 */
+		@Contract(pure = true) protected long size() {
+			return body.length + HEADER_OVERHEAD;
+		}
+
+	}
+
+}
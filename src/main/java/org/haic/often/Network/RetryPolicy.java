@@ -0,0 +1,330 @@
+package org.haic.often.Network;
+
+import org.haic.often.Judge;
+import org.haic.often.Multithread.MultiThreadUtils;
+import org.haic.often.Multithread.TokenBucket;
+import org.haic.often.URIUtils;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * 重试策略,JsoupUtils、HttpsUtils、HtmlUnitUtils、NetworkFileUtils 共用的重试引擎<br/>
+ * 等待时间 = random(0, min(最大等待时间, 重试等待时间 * 倍数^已重试次数)),随机抖动使多个线程的重试错开,未设置重试等待时间时使用初始等待时间<br/>
+ * 429/503 响应带有 Retry-After 时,等待时间不少于 Retry-After<br/>
+ * 每个host有重试预算(令牌桶),由使用同一策略的请求共享,预算耗尽时有限重试直接结束,无限重试等待预算恢复,避免大量线程同时重试放大服务器限流
+ *
+ * @author haicdust
+ * @version 1.0
+ * @since 2022/3/22 20:15
+ */
+public class RetryPolicy {
+
+	protected static final RetryPolicy defaults = new RetryPolicy(); // 默认重试策略
+
+	protected final Map<String, TokenBucket> budgets = new ConcurrentHashMap<>(); // host -> 重试预算
+	protected long initialDelay = 100; // 初始等待时间(毫秒),重试等待时间为0时使用
+	protected double multiplier = 2; // 等待时间倍数
+	protected long maxDelay = 30000; // 最大等待时间(毫秒)
+	protected long maxRetryAfter = 300000; // Retry-After 最大等待时间(毫秒)
+	protected boolean jitter = true; // 随机抖动
+	protected boolean retryAfter = true; // 遵循 Retry-After
+	protected double budgetRate = 10; // 每个host每秒恢复的重试次数,不大于0时不限制
+	protected double budgetBurst = 100; // 每个host可累积的重试次数
+
+	protected RetryPolicy() {
+	}
+
+	/**
+	 * 获取 默认重试策略,指数退避,随机抖动,遵循 Retry-After,每个host每秒10次重试预算
+	 *
+	 * @return 默认重试策略
+	 */
+	@Contract(pure = true) public static RetryPolicy defaults() {
+		return defaults;
+	}
+
+	/**
+	 * 获取新的重试策略,参数与默认重试策略相同
+	 *
+	 * @return new RetryPolicy
+	 */
+	@Contract(pure = true) public static RetryPolicy config() {
+		return new RetryPolicy();
+	}
+
+	/**
+	 * 获取新的固定间隔重试策略,每次等待重试等待时间,不遵循 Retry-After,不限制重试预算
+	 *
+	 * @return new RetryPolicy
+	 */
+	@Contract(pure = true) public static RetryPolicy fixed() {
+		return config().multiplier(1).jitter(false).retryAfter(false).budget(0, 0);
+	}
+
+	/**
+	 * 设置 初始等待时间,请求未设置重试等待时间(为0)时作为退避的基数,避免重试无间隔地同时发出
+	 *
+	 * @param initialDelay 初始等待时间(毫秒)
+	 * @return this
+	 */
+	@Contract(pure = true) public RetryPolicy initialDelay(final long initialDelay) {
+		this.initialDelay = Math.max(initialDelay, 0);
+		return this;
+	}
+
+	/**
+	 * 设置 等待时间倍数,每次重试等待时间乘以倍数
+	 *
+	 * @param multiplier 倍数,为1时固定间隔
+	 * @return this
+	 */
+	@Contract(pure = true) public RetryPolicy multiplier(final double multiplier) {
+		this.multiplier = Math.max(multiplier, 1);
+		return this;
+	}
+
+	/**
+	 * 设置 最大等待时间
+	 *
+	 * @param maxDelay 最大等待时间(毫秒)
+	 * @return this
+	 */
+	@Contract(pure = true) public RetryPolicy maxDelay(final long maxDelay) {
+		this.maxDelay = maxDelay;
+		return this;
+	}
+
+	/**
+	 * 设置 随机抖动,在0至退避时间之间随机等待
+	 *
+	 * @param jitter 是否启用
+	 * @return this
+	 */
+	@Contract(pure = true) public RetryPolicy jitter(final boolean jitter) {
+		this.jitter = jitter;
+		return this;
+	}
+
+	/**
+	 * 设置 429/503 响应时遵循 Retry-After
+	 *
+	 * @param retryAfter 是否启用
+	 * @return this
+	 */
+	@Contract(pure = true) public RetryPolicy retryAfter(final boolean retryAfter) {
+		this.retryAfter = retryAfter;
+		return this;
+	}
+
+	/**
+	 * 设置 Retry-After 最大等待时间,超过时按最大等待时间
+	 *
+	 * @param maxRetryAfter 最大等待时间(毫秒)
+	 * @return this
+	 */
+	@Contract(pure = true) public RetryPolicy maxRetryAfter(final long maxRetryAfter) {
+		this.maxRetryAfter = maxRetryAfter;
+		return this;
+	}
+
+	/**
+	 * 设置 每个host的重试预算,预算在首次重试该host时创建,使用该策略的同一host请求共享,修改后已创建的预算重新创建
+	 *
+	 * @param rate  每秒恢复的重试次数,不大于0时不限制
+	 * @param burst 可累积的重试次数
+	 * @return this
+	 */
+	@Contract(pure = true) public RetryPolicy budget(final double rate, final double burst) {
+		this.budgetRate = rate;
+		this.budgetBurst = burst;
+		budgets.clear();
+		return this;
+	}
+
+	/**
+	 * 计算重试等待时间
+	 *
+	 * @param attempt    已重试次数
+	 * @param delay      重试等待时间(毫秒),为0时使用初始等待时间
+	 * @param statusCode 上次请求的状态码
+	 * @param retryAfter 上次响应的 Retry-After,没有时为null
+	 * @return 等待时间(毫秒)
+	 */
+	@Contract(pure = true) public long delay(final int attempt, final long delay, final int statusCode, final String retryAfter) {
+		double backoff = Math.min(maxDelay, (delay > 0 ? delay : initialDelay) * Math.pow(multiplier, attempt));
+		long wait = jitter && backoff > 0 ? (long) ThreadLocalRandom.current().nextDouble(backoff) : (long) backoff;
+		if (this.retryAfter && (statusCode == HttpStatus.SC_TOO_MANY_REQUEST || statusCode == HttpStatus.SC_SERVICE_UNAVAILABLE)) {
+			wait = Math.max(wait, Math.min(retryAfter(retryAfter), maxRetryAfter));
+		}
+		return wait;
+	}
+
+	/**
+	 * 获取重试预算,预算耗尽时有限重试返回false,无限重试等待预算恢复
+	 *
+	 * @param url            请求链接
+	 * @param unlimitedRetry 无限重试
+	 * @return 是否可以重试
+	 */
+	@Contract(pure = true) public boolean acquire(@NotNull String url, final boolean unlimitedRetry) {
+		TokenBucket budget = budget(url);
+		if (Judge.isNull(budget)) {
+			return true;
+		} else if (unlimitedRetry) {
+			budget.acquire();
+			return true;
+		}
+		return budget.tryAcquire(1);
+	}
+
+	/**
+	 * 执行请求,按策略重试,返回最后一次请求的结果
+	 *
+	 * @param url            请求链接,用于重试预算
+	 * @param attempt        单次请求
+	 * @param statusCode     获取结果的状态码
+	 * @param retryAfter     获取结果的 Retry-After
+	 * @param retryable      判断状态码是否需要重试
+	 * @param retry          重试次数
+	 * @param unlimitedRetry 无限重试
+	 * @param delay          重试等待时间(毫秒)
+	 * @param <T>            结果类型
+	 * @return 结果
+	 */
+	@Contract(pure = true) public <T> T execute(@NotNull String url, @NotNull Supplier<T> attempt, @NotNull ToIntFunction<T> statusCode,
+			@NotNull Function<T, String> retryAfter, @NotNull IntPredicate retryable, final int retry, final boolean unlimitedRetry, final long delay) {
+		T result = attempt.get();
+		for (int i = 0, code; retryable.test(code = statusCode.applyAsInt(result)) && (i < retry || unlimitedRetry) && acquire(url, unlimitedRetry); i++) {
+			MultiThreadUtils.WaitForThread((int) delay(i, delay, code, retryAfter.apply(result))); // 程序等待
+			result = attempt.get();
+		}
+		return result;
+	}
+
+	/**
+	 * 异步执行请求,按策略重试,等待由定时器调度不占用线程
+	 *
+	 * @param url            请求链接,用于重试预算
+	 * @param attempt        单次请求
+	 * @param statusCode     获取结果的状态码
+	 * @param retryAfter     获取结果的 Retry-After
+	 * @param retryable      判断状态码是否需要重试
+	 * @param retry          重试次数
+	 * @param unlimitedRetry 无限重试
+	 * @param delay          重试等待时间(毫秒)
+	 * @param <T>            结果类型
+	 * @return 最后一次请求的结果
+	 */
+	@Contract(pure = true) public <T> CompletableFuture<T> executeAsync(@NotNull String url, @NotNull Supplier<CompletableFuture<T>> attempt,
+			@NotNull ToIntFunction<T> statusCode, @NotNull Function<T, String> retryAfter, @NotNull IntPredicate retryable, final int retry,
+			final boolean unlimitedRetry, final long delay) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		attempt(result, url, attempt, statusCode, retryAfter, retryable, retry, unlimitedRetry, delay, 0);
+		return result;
+	}
+
+	/**
+	 * 执行一次异步请求,完成后判断是否调度下一次请求,无限重试时预算耗尽则等待预算恢复后调度
+	 *
+	 * @param result         最终结果
+	 * @param url            请求链接,用于重试预算
+	 * @param attempt        单次请求
+	 * @param statusCode     获取结果的状态码
+	 * @param retryAfter     获取结果的 Retry-After
+	 * @param retryable      判断状态码是否需要重试
+	 * @param retry          重试次数
+	 * @param unlimitedRetry 无限重试
+	 * @param delay          重试等待时间(毫秒)
+	 * @param count          已重试次数
+	 * @param <T>            结果类型
+	 */
+	@Contract(pure = true) protected <T> void attempt(@NotNull CompletableFuture<T> result, @NotNull String url, @NotNull Supplier<CompletableFuture<T>> attempt,
+			@NotNull ToIntFunction<T> statusCode, @NotNull Function<T, String> retryAfter, @NotNull IntPredicate retryable, final int retry,
+			final boolean unlimitedRetry, final long delay, final int count) {
+		if (result.isDone()) { // 已取消
+			return;
+		}
+		attempt.get().whenComplete((value, throwable) -> {
+			if (!Judge.isNull(throwable)) {
+				result.completeExceptionally(throwable);
+				return;
+			}
+			int code = statusCode.applyAsInt(value);
+			if (!retryable.test(code) || !(count < retry || unlimitedRetry)) {
+				result.complete(value);
+				return;
+			}
+			TokenBucket budget = budget(url);
+			CompletableFuture<Void> permit;
+			if (Judge.isNull(budget)) {
+				permit = CompletableFuture.completedFuture(null);
+			} else if (unlimitedRetry) {
+				permit = budget.acquireAsync(1);
+			} else if (budget.tryAcquire(1)) {
+				permit = CompletableFuture.completedFuture(null);
+			} else { // 预算耗尽
+				result.complete(value);
+				return;
+			}
+			long wait = delay(count, delay, code, retryAfter.apply(value));
+			permit.thenRunAsync(() -> attempt(result, url, attempt, statusCode, retryAfter, retryable, retry, unlimitedRetry, delay, count + 1),
+					AsyncExecutor.delayed(wait));
+		});
+	}
+
+	/**
+	 * 判断状态码是否需要重试,成功、重定向及排除的状态码不重试
+	 *
+	 * @param statusCode              状态码
+	 * @param excludeErrorStatusCodes 排除的状态码
+	 * @return 是否需要重试
+	 */
+	@Contract(pure = true) public static boolean retryable(final int statusCode, @NotNull List<Integer> excludeErrorStatusCodes) {
+		return !URIUtils.statusIsOK(statusCode) && !URIUtils.statusIsRedirect(statusCode) && !excludeErrorStatusCodes.contains(statusCode);
+	}
+
+	/**
+	 * 获取 链接所属host在该策略下的重试预算
+	 *
+	 * @param url 链接
+	 * @return 令牌桶,不限制时为null
+	 */
+	@Contract(pure = true) protected TokenBucket budget(@NotNull String url) {
+		return budgetRate > 0 ? budgets.computeIfAbsent(URIUtils.getHost(url), key -> TokenBucket.create(budgetRate, budgetBurst)) : null;
+	}
+
+	/**
+	 * 解析 Retry-After,支持秒数及HTTP日期格式
+	 *
+	 * @param retryAfter Retry-After
+	 * @return 等待时间(毫秒),无法解析时为0
+	 */
+	@Contract(pure = true) public static long retryAfter(final String retryAfter) {
+		if (Judge.isEmpty(retryAfter)) {
+			return 0;
+		}
+		try {
+			return Math.max(Long.parseLong(retryAfter.trim()), 0) * 1000;
+		} catch (NumberFormatException e) {
+			try {
+				return Math.max(Duration.between(ZonedDateTime.now(), ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME)).toMillis(), 0);
+			} catch (RuntimeException ex) {
+				return 0;
+			}
+		}
+	}
+
+}
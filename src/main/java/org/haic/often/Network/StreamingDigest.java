@@ -0,0 +1,269 @@
+package org.haic.often.Network;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.haic.often.Judge;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 下载过程中计算文件hash,支持 MD5(16位/32位), SHA1, SHA256, SHA384, SHA512<br/>
+ * 全量下载时随数据流计算; 分块下载时,由计算线程按文件顺序从文件读取已完成的区间计算,刚写入的数据通常仍在页缓存中<br/>
+ * 下载线程不计算hash,不复制数据也不读取文件
+ *
+ * @author haicdust
+ * @version 1.0
+ * @since 2022/3/14 20:11
+ */
+public class StreamingDigest implements Closeable {
+
+	protected static final int READ_SIZE = 1048576; // 从文件读取的缓冲区大小
+
+	protected String hash; // 期望的hash值
+	protected MessageDigest digest; // 摘要算法
+	protected File source; // 分块下载时读取的文件
+	protected FileChannel channel; // 分块下载时读取的文件通道
+	protected volatile long position; // 已计算位置
+	protected TreeMap<Long, Long> pending = new TreeMap<>(); // 已完成但未计算的区间,起始位 -> 结束位
+	protected Thread worker; // 计算线程
+	protected boolean closed; // 是否已关闭
+	protected IOException failure; // 读取文件失败的异常
+
+	protected StreamingDigest(@NotNull String hash, @NotNull MessageDigest digest) {
+		this.hash = hash;
+		this.digest = digest;
+	}
+
+	/**
+	 * 按hash长度选择算法并创建,不支持的长度返回null
+	 *
+	 * @param hash 期望的hash值
+	 * @return new StreamingDigest
+	 */
+	@Contract(pure = true) public static StreamingDigest of(@NotNull String hash) {
+		String algorithm = algorithm(hash);
+		return Judge.isNull(algorithm) ? null : new StreamingDigest(hash, DigestUtils.getDigest(algorithm));
+	}
+
+	/**
+	 * 按hash长度获取算法名称
+	 *
+	 * @param hash hash值
+	 * @return 算法名称,不支持的长度返回null
+	 */
+	@Contract(pure = true) public static String algorithm(@NotNull String hash) {
+		return switch (hash.length()) {
+			case 16, 32 -> "MD5";
+			case 40 -> "SHA-1";
+			case 64 -> "SHA-256";
+			case 96 -> "SHA-384";
+			case 128 -> "SHA-512";
+			default -> null;
+		};
+	}
+
+	/**
+	 * 设置 分块下载时读取的文件
+	 *
+	 * @param source 文件
+	 * @return this
+	 */
+	@Contract(pure = true) public StreamingDigest file(@NotNull File source) {
+		this.source = source;
+		return this;
+	}
+
+	/**
+	 * 顺序更新数据,用于全量下载或单个区块
+	 *
+	 * @param bytes  数据
+	 * @param offset 起始位
+	 * @param length 长度
+	 */
+	@Contract(pure = true) public void update(byte[] bytes, final int offset, final int length) {
+		digest.update(bytes, offset, length);
+		position += length;
+	}
+
+	/**
+	 * 顺序更新数据,用于全量下载或单个区块
+	 *
+	 * @param buffer 数据,读取后位置不变
+	 */
+	@Contract(pure = true) public void update(@NotNull ByteBuffer buffer) {
+		position += buffer.remaining();
+		digest.update(buffer.duplicate());
+	}
+
+	/**
+	 * 记录区间已写入文件,由计算线程按顺序推进计算位置,调用线程不等待计算
+	 *
+	 * @param start 起始位
+	 * @param end   结束位
+	 */
+	@Contract(pure = true) public synchronized void finish(final long start, final long end) {
+		Long previous = pending.get(start);
+		pending.put(start, Judge.isNull(previous) ? end : Math.max(previous, end));
+		if (Judge.isNull(worker)) {
+			worker = new Thread(this::run, "download-digest");
+			worker.setDaemon(true);
+			worker.start();
+		}
+		notifyAll();
+	}
+
+	/**
+	 * 计算线程,已计算位置处于已完成区间时从文件读取并计算
+	 */
+	protected void run() {
+		ByteBuffer buffer = ByteBuffer.allocate(READ_SIZE);
+		while (true) {
+			long start;
+			int length;
+			synchronized (this) {
+				long end;
+				while (closed || (end = frontier()) < position) {
+					if (closed) { // 关闭时不再计算剩余的区间
+						return;
+					}
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				start = position;
+				length = (int) Math.min(READ_SIZE, end - start + 1);
+			}
+			try {
+				read(start, buffer.clear().limit(length));
+			} catch (IOException e) {
+				synchronized (this) {
+					failure = e;
+					notifyAll();
+				}
+				return;
+			}
+			digest.update(buffer.flip());
+			synchronized (this) {
+				position = start + length;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * 获取 已计算位置所在的已完成区间的结束位,移除已计算的区间
+	 *
+	 * @return 结束位,已计算位置不在已完成区间内时小于已计算位置
+	 */
+	@Contract(pure = true) protected long frontier() {
+		long end = -1;
+		for (Map.Entry<Long, Long> entry; !Judge.isNull(entry = pending.floorEntry(position)); ) {
+			pending.remove(entry.getKey());
+			end = Math.max(end, entry.getValue());
+			if (end >= position) {
+				pending.put(position, end); // 剩余部分
+				return end;
+			}
+		}
+		return end;
+	}
+
+	/**
+	 * 从文件读取数据
+	 *
+	 * @param start  起始位
+	 * @param buffer 缓冲区,读取至写满
+	 * @throws IOException 读取失败
+	 */
+	@Contract(pure = true) protected void read(final long start, @NotNull ByteBuffer buffer) throws IOException {
+		if (Judge.isNull(channel)) {
+			channel = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+		}
+		for (long position = start; buffer.hasRemaining(); ) {
+			int length = channel.read(buffer, position);
+			if (Judge.isMinusOne(length)) {
+				throw new IOException("Unexpected end of file " + source);
+			}
+			position += length;
+		}
+	}
+
+	/**
+	 * 等待计算线程计算完所有已完成的区间
+	 *
+	 * @return 已计算位置
+	 */
+	@Contract(pure = true) public synchronized long await() {
+		while (!Judge.isNull(worker) && Judge.isNull(failure) && frontier() >= position) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		return position;
+	}
+
+	/**
+	 * 获取 已计算位置
+	 *
+	 * @return 已计算位置
+	 */
+	@Contract(pure = true) public long position() {
+		return position;
+	}
+
+	/**
+	 * 获取 计算结果,MD5期望值为16位时返回中间16位
+	 *
+	 * @return hash值
+	 */
+	@Contract(pure = true) public String hex() {
+		String hex = Hex.encodeHexString(digest.digest());
+		return hash.length() == 16 ? hex.substring(8, 24) : hex;
+	}
+
+	/**
+	 * 判断计算结果是否匹配,分块下载时等待计算完成
+	 *
+	 * @param fileSize 文件大小,已计算位置未到达文件末尾时返回false
+	 * @return 是否匹配
+	 */
+	@Contract(pure = true) public boolean matches(final long fileSize) {
+		return await() == fileSize && hex().equalsIgnoreCase(hash);
+	}
+
+	@Override public void close() throws IOException {
+		Thread worker;
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+			worker = this.worker;
+		}
+		if (!Judge.isNull(worker)) {
+			try {
+				worker.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (!Judge.isNull(channel)) {
+			channel.close();
+			channel = null;
+		}
+	}
+
+}
@@ -0,0 +1,173 @@
+package org.haic.often.Network;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import javax.net.ssl.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TLS配置,每种证书验证方式共用一个 SSLContext 及 SSLSocketFactory<br/>
+ * 同一 SSLContext 的连接共享会话缓存,再次连接同一host时恢复会话(session resumption),省去完整握手<br/>
+ * HttpsUtils、JsoupUtils 及连接池传输层 HttpTransport 使用相同的TLS配置
+ *
+ * @author haicdust
+ * @version 1.0
+ * @since 2022/3/24 19:30
+ */
+public class TlsConfig {
+
+	protected static final Map<String, TlsConfig> configs = new ConcurrentHashMap<>(); // 证书验证方式 -> TLS配置
+
+	protected final String name; // 配置名称,相同名称共用传输层
+	protected final SSLContext context; // SSLContext
+	protected final SSLSocketFactory socketFactory; // SSLSocketFactory
+	protected final boolean trustAll; // 忽略证书及主机名验证
+
+	protected TlsConfig(@NotNull String name, @NotNull SSLContext context, final boolean trustAll) {
+		this.name = name;
+		this.context = context;
+		this.socketFactory = context.getSocketFactory();
+		this.trustAll = trustAll;
+	}
+
+	/**
+	 * 获取 忽略证书及主机名验证的TLS配置,HttpsUtils 默认使用
+	 *
+	 * @return TLS配置
+	 */
+	@Contract(pure = true) public static TlsConfig trustAll() {
+		return configs.computeIfAbsent("trustAll", name -> new TlsConfig(name, context(new TrustManager[] { new HttpsUtils.MyX509TrustManager() }), true));
+	}
+
+	/**
+	 * 获取 使用JDK默认证书库验证证书及主机名的TLS配置,JsoupUtils、NetworkFileUtils 的连接池默认使用
+	 *
+	 * @return TLS配置
+	 */
+	@Contract(pure = true) public static TlsConfig system() {
+		return configs.computeIfAbsent("system", name -> new TlsConfig(name, context(trustManagers(null)), false));
+	}
+
+	/**
+	 * 获取 使用指定证书库验证证书及主机名的TLS配置,同一证书库只加载一次
+	 *
+	 * @param trustStore 证书库文件(PKCS12或JKS)
+	 * @param password   证书库密码,没有时为null
+	 * @return TLS配置
+	 */
+	@Contract(pure = true) public static TlsConfig trustStore(@NotNull Path trustStore, String password) {
+		return configs.computeIfAbsent("trustStore|" + trustStore.toAbsolutePath().normalize(), name -> {
+			try (InputStream inputStream = Files.newInputStream(trustStore)) {
+				KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+				keyStore.load(inputStream, password == null ? null : password.toCharArray());
+				return new TlsConfig(name, context(trustManagers(keyStore)), false);
+			} catch (IOException | GeneralSecurityException e) {
+				throw new RuntimeException("加载证书库失败: " + trustStore, e);
+			}
+		});
+	}
+
+	/**
+	 * 创建 SSLContext
+	 *
+	 * @param trustManagers 证书验证
+	 * @return SSLContext
+	 */
+	@Contract(pure = true) protected static SSLContext context(@NotNull TrustManager[] trustManagers) {
+		try {
+			SSLContext context = SSLContext.getInstance("TLS");
+			context.init(null, trustManagers, null);
+			return context;
+		} catch (GeneralSecurityException e) {
+			throw new RuntimeException("创建SSLContext失败", e);
+		}
+	}
+
+	/**
+	 * 获取 证书库的证书验证
+	 *
+	 * @param keyStore 证书库,为null时使用JDK默认证书库
+	 * @return 证书验证
+	 */
+	@Contract(pure = true) protected static TrustManager[] trustManagers(KeyStore keyStore) {
+		try {
+			TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+			factory.init(keyStore);
+			return factory.getTrustManagers();
+		} catch (GeneralSecurityException e) {
+			throw new RuntimeException("创建证书验证失败", e);
+		}
+	}
+
+	/**
+	 * 设置 会话缓存,影响使用此配置的所有连接
+	 *
+	 * @param size    缓存会话数,为0时不限制
+	 * @param timeout 会话有效时间(秒),为0时不限制
+	 * @return this
+	 */
+	@Contract(pure = true) public TlsConfig sessionCache(final int size, final int timeout) {
+		SSLSessionContext sessions = context.getClientSessionContext();
+		sessions.setSessionCacheSize(size);
+		sessions.setSessionTimeout(timeout);
+		return this;
+	}
+
+	/**
+	 * 获取 配置名称
+	 *
+	 * @return 名称
+	 */
+	@Contract(pure = true) public String name() {
+		return name;
+	}
+
+	/**
+	 * 获取 SSLContext
+	 *
+	 * @return SSLContext
+	 */
+	@Contract(pure = true) public SSLContext context() {
+		return context;
+	}
+
+	/**
+	 * 获取 SSLSocketFactory
+	 *
+	 * @return SSLSocketFactory
+	 */
+	@Contract(pure = true) public SSLSocketFactory socketFactory() {
+		return socketFactory;
+	}
+
+	/**
+	 * 是否忽略证书及主机名验证
+	 *
+	 * @return 是否忽略
+	 */
+	@Contract(pure = true) public boolean isTrustAll() {
+		return trustAll;
+	}
+
+	/**
+	 * 应用到 HttpsURLConnection,忽略验证时同时忽略主机名验证
+	 *
+	 * @param conn HttpsURLConnection
+	 */
+	@Contract(pure = true) public void apply(@NotNull HttpsURLConnection conn) {
+		conn.setSSLSocketFactory(socketFactory);
+		if (trustAll) {
+			// 在握手期间，如果 URL 的主机名和服务器的标识主机名不匹配，则验证机制可以回调此接口的实现程序来确定是否应该允许此连接。
+			conn.setHostnameVerifier((hostname, session) -> true);
+		}
+	}
+
+}
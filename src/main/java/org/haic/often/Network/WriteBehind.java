@@ -0,0 +1,228 @@
+package org.haic.often.Network;
+
+import org.haic.often.Judge;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 合并写入的后台写入器,每个下载一个写入线程<br/>
+ * 下载线程将网络读取的小块数据复制到池化的大缓冲区,缓冲区写满后交由写入线程按位置一次写入文件,网络读取不再等待磁盘<br/>
+ * 缓冲区数量有上限,磁盘写入跟不上时下载线程等待空闲缓冲区;区块完成时先 flush 等待数据写入文件,再记录断点续传日志及文件hash
+ *
+ * @author haicdust
+ * @version 1.0
+ * @since 2022/3/27 20:30
+ */
+public class WriteBehind implements Closeable {
+
+	protected final FileChannel channel; // 文件通道
+	protected final int bufferSize; // 缓冲区大小
+	protected final int maxBuffers; // 缓冲区数量上限
+	protected final BlockingQueue<ByteBuffer> buffers = new LinkedBlockingQueue<>(); // 空闲缓冲区
+	protected final BlockingQueue<Task> tasks = new LinkedBlockingQueue<>(); // 待写入的缓冲区
+	protected final AtomicInteger allocated = new AtomicInteger(); // 已分配的缓冲区数量
+	protected final LongAdder writes = new LongAdder(); // 文件写入次数
+	protected final Thread writer; // 写入线程
+
+	/**
+	 * 创建后台写入器并启动写入线程
+	 *
+	 * @param channel    文件通道,仅由写入线程写入
+	 * @param bufferSize 缓冲区大小
+	 * @param maxBuffers 缓冲区数量上限,建议不少于下载线程数
+	 */
+	public WriteBehind(@NotNull FileChannel channel, final int bufferSize, final int maxBuffers) {
+		this.channel = channel;
+		this.bufferSize = bufferSize;
+		this.maxBuffers = Math.max(maxBuffers, 1);
+		writer = new Thread(this::run, "download-write-behind");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * 创建 按顺序写入的追加器,每个区块或区间一个
+	 *
+	 * @param position 起始写入位置
+	 * @return 追加器
+	 */
+	@Contract(pure = true) public Appender appender(final long position) {
+		return new Appender(position);
+	}
+
+	/**
+	 * 获取 文件写入次数
+	 *
+	 * @return 写入次数
+	 */
+	@Contract(pure = true) public long writes() {
+		return writes.sum();
+	}
+
+	/**
+	 * 获取空闲缓冲区,未达到上限时新建,否则等待写入线程归还
+	 *
+	 * @return 直接缓冲区
+	 * @throws IOException 等待时线程中断
+	 */
+	@Contract(pure = true) protected ByteBuffer borrow() throws IOException {
+		ByteBuffer buffer = buffers.poll();
+		if (!Judge.isNull(buffer)) {
+			return buffer;
+		}
+		if (allocated.getAndIncrement() < maxBuffers) {
+			return ByteBuffer.allocateDirect(bufferSize);
+		}
+		allocated.decrementAndGet();
+		try {
+			return buffers.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+	}
+
+	/**
+	 * 写入线程,按提交顺序写入文件并归还缓冲区
+	 */
+	protected void run() {
+		for (; ; ) {
+			Task task;
+			try {
+				task = tasks.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (Judge.isNull(task.buffer)) { // 结束标记
+				task.done.complete(null);
+				return;
+			}
+			try {
+				for (long position = task.position; task.buffer.hasRemaining(); ) {
+					position += channel.write(task.buffer, position);
+				}
+				writes.increment();
+			} catch (IOException e) {
+				task.appender.failure = e;
+			}
+			buffers.offer(task.buffer.clear());
+			task.done.complete(null);
+		}
+	}
+
+	/**
+	 * 等待已提交的数据写入完成并结束写入线程,不关闭文件通道
+	 */
+	@Override public void close() {
+		Task task = new Task(null, null, 0);
+		tasks.add(task);
+		task.done.join();
+		buffers.clear();
+	}
+
+	/**
+	 * 按顺序写入的追加器,仅由一个下载线程使用
+	 */
+	public class Appender {
+
+		protected long position; // 下一个缓冲区的写入位置
+		protected ByteBuffer buffer; // 当前缓冲区
+		protected CompletableFuture<Void> last = CompletableFuture.completedFuture(null); // 最后提交的写入
+		protected volatile IOException failure; // 写入失败的异常
+
+		protected Appender(final long position) {
+			this.position = position;
+		}
+
+		/**
+		 * 复制数据到缓冲区,缓冲区写满后提交写入
+		 *
+		 * @param source 数据,读取全部剩余字节
+		 * @throws IOException 之前的写入失败
+		 */
+		public void write(@NotNull ByteBuffer source) throws IOException {
+			if (!Judge.isNull(failure)) {
+				throw failure;
+			}
+			while (source.hasRemaining()) {
+				if (Judge.isNull(buffer)) {
+					buffer = borrow();
+				}
+				int length = Math.min(source.remaining(), buffer.remaining());
+				buffer.put(buffer.position(), source, source.position(), length).position(buffer.position() + length);
+				source.position(source.position() + length);
+				if (!buffer.hasRemaining()) {
+					submit();
+				}
+			}
+		}
+
+		/**
+		 * 提交当前缓冲区
+		 */
+		protected void submit() {
+			buffer.flip();
+			Task task = new Task(this, buffer, position);
+			position += buffer.remaining();
+			buffer = null;
+			last = task.done;
+			tasks.add(task);
+		}
+
+		/**
+		 * 提交剩余数据并等待所有已提交的数据写入文件
+		 *
+		 * @throws IOException 写入失败
+		 */
+		public void flush() throws IOException {
+			if (!Judge.isNull(buffer)) {
+				if (buffer.position() > 0) {
+					submit();
+				} else {
+					buffers.offer(buffer);
+					buffer = null;
+				}
+			}
+			try {
+				last.join();
+			} catch (CompletionException e) {
+				throw new IOException(e.getCause());
+			}
+			if (!Judge.isNull(failure)) {
+				throw failure;
+			}
+		}
+
+	}
+
+	/**
+	 * 待写入的缓冲区
+	 */
+	protected static class Task {
+
+		protected final Appender appender; // 所属追加器
+		protected final ByteBuffer buffer; // 数据,为null时为结束标记
+		protected final long position; // 写入位置
+		protected final CompletableFuture<Void> done = new CompletableFuture<>(); // 写入完成
+
+		protected Task(Appender appender, ByteBuffer buffer, final long position) {
+			this.appender = appender;
+			this.buffer = buffer;
+			this.position = position;
+		}
+
+	}
+
+}
@@ -1,5 +1,6 @@
 package org.haic.often;
 
+import org.haic.often.Multithread.ExecutorStrategy;
 import org.haic.often.Multithread.MultiThreadUtils;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
@@ -7,7 +8,7 @@ import org.jetbrains.annotations.NotNull;
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * 去除数组重复项
@@ -59,16 +60,28 @@ public class RemDuplication {
 	 * @return 无排序的数组
 	 */
 	@NotNull @Contract(pure = true) public static <E> List<E> ListSet(@NotNull List<E> lists) {
-		List<E> result = new CopyOnWriteArrayList<>();
-		ExecutorService executorService = Executors.newCachedThreadPool(); // 线程池
+		return ListSet(lists, ExecutorStrategy.cached());
+	}
+
+	/**
+	 * 去重无排序,效率底下,建议数组10000以下
+	 *
+	 * @param lists            动态数组
+	 * @param executorStrategy 线程池创建策略
+	 * @param <E>              泛型
+	 * @return 无排序的数组
+	 */
+	@NotNull @Contract(pure = true) public static <E> List<E> ListSet(@NotNull List<E> lists, @NotNull ExecutorStrategy executorStrategy) {
+		CopyOnWriteArrayList<E> result = new CopyOnWriteArrayList<>();
+		ExecutorService executorService = executorStrategy.create(Runtime.getRuntime().availableProcessors()); // 线程池
+		List<Future<?>> futures = new ArrayList<>();
 		for (E list : lists) {
-			executorService.submit(new Thread(() -> { // 执行多线程程
-				if (!result.contains(list)) {
-					result.add(list);
-				}
-			}));
+			futures.add(executorService.submit(() -> result.addIfAbsent(list))); // 执行多线程程
+		}
+		futures.forEach(MultiThreadUtils::getFuture); // 等待线程结束
+		if (!executorStrategy.shared()) {
+			executorService.shutdown();
 		}
-		MultiThreadUtils.WaitForEnd(executorService); // 等待线程结束
 		return new ArrayList<>(result);
 	}
 
@@ -62,6 +62,20 @@ public class URIUtils {
 		return getURI(url).getHost();
 	}
 
+	/**
+	 * 获取主机名,链接解析失败时返回空字符串
+	 *
+	 * @param url URL
+	 * @return 主机名
+	 */
+	@NotNull @Contract(pure = true) public static String getHost(@NotNull String url) {
+		try {
+			return new URL(url).getHost();
+		} catch (MalformedURLException e) {
+			return "";
+		}
+	}
+
 	/**
 	 * 判断连接是否正常
 	 *
@@ -0,0 +1,238 @@
+package org.haic.often.Network;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * DownloadJournal 断点续传日志测试
+ *
+ * @author haicdust
+ * @version 1.0
+ * @since 2022/3/30 10:15
+ */
+public class DownloadJournalTest {
+
+	protected static final String INFO = "{\"content-length\":\"10000\",\"fileName\":\"test.bin\",\"URL\":\"http://127.0.0.1/test.bin\"}";
+
+	@Rule public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test public void roundTrip() throws IOException {
+		File file = folder.newFile("test.bin.haic");
+		try (DownloadJournal journal = DownloadJournal.create(file, INFO, 10000, 1000)) {
+			journal.finish(0, 1999, 0);
+			journal.finish(5000, 5999, 2);
+		}
+		try (DownloadJournal journal = DownloadJournal.open(file, 4096)) {
+			assertEquals(INFO, journal.info());
+			assertEquals(10000, journal.fileSize());
+			assertEquals(1000, journal.blockSize()); // 块大小以日志为准,不使用参数
+			assertTrue(journal.isFinished(0, 1999));
+			assertTrue(journal.isFinished(5000, 5999));
+			assertFalse(journal.isFinished(0, 2999));
+			assertEquals(0, journal.source(1500));
+			assertEquals(2, journal.source(5000));
+			assertEquals(-1, journal.source(3000));
+			assertGaps(journal, 2000, 4999, 6000, 9999);
+		}
+	}
+
+	@Test public void gapsMerge() throws IOException {
+		try (DownloadJournal journal = DownloadJournal.create(folder.newFile(), INFO, 10500, 1000)) {
+			assertGaps(journal, 0, 10499); // 最后一块不足块大小
+			journal.finish(1000, 1999);
+			journal.finish(3000, 3999);
+			journal.finish(4000, 4999);
+			assertGaps(journal, 0, 999, 2000, 2999, 5000, 10499);
+			journal.finish(10000, 10499);
+			assertGaps(journal, 0, 999, 2000, 2999, 5000, 9999);
+			journal.finish(0, 999);
+			journal.finish(2000, 2999);
+			journal.finish(5000, 9999);
+			assertTrue(journal.gaps().isEmpty());
+			assertTrue(journal.isFinished(0, 10499));
+		}
+	}
+
+	@Test public void partialBlocks() throws IOException {
+		File file = folder.newFile();
+		try (DownloadJournal journal = DownloadJournal.create(file, INFO, 10000, 1000)) {
+			journal.finish(0, 1499); // 第二块完成一半
+			assertGaps(journal, 1000, 9999);
+			journal.finish(1500, 2299);
+			assertGaps(journal, 2000, 9999);
+			journal.finish(2300, 2599);
+		}
+		try (DownloadJournal journal = DownloadJournal.open(file, 1000)) { // 部分完成的块不持久化
+			assertGaps(journal, 2000, 9999);
+		}
+	}
+
+	@Test public void legacyConversion() throws IOException {
+		File file = folder.newFile();
+		Files.write(file.toPath(), List.of(INFO, "0-999", "3000-4999", "9000-9999"), StandardCharsets.UTF_8);
+		try (DownloadJournal journal = DownloadJournal.open(file, 1000)) {
+			assertEquals(INFO, journal.info());
+			assertEquals(10000, journal.fileSize());
+			assertEquals(1000, journal.blockSize());
+			assertGaps(journal, 1000, 2999, 5000, 8999);
+			assertEquals(-1, journal.source(0)); // 旧版没有下载源
+		}
+		assertEquals(DownloadJournal.MAGIC, ByteBuffer.wrap(Files.readAllBytes(file.toPath())).getInt()); // 已转换为新格式
+		try (DownloadJournal journal = DownloadJournal.open(file, 4096)) {
+			assertEquals(1000, journal.blockSize());
+			assertGaps(journal, 1000, 2999, 5000, 8999);
+		}
+	}
+
+	@Test public void versionOneConversion() throws IOException {
+		File file = folder.newFile();
+		byte[] info = INFO.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = ByteBuffer.allocate(DownloadJournal.HEADER_SIZE + info.length + 2);
+		buffer.putInt(DownloadJournal.MAGIC).putInt(1).putLong(10000).putLong(1000).putInt(10).putInt(info.length).put(info).put((byte) 0b00000101).put((byte) 0);
+		Files.write(file.toPath(), buffer.array());
+		try (DownloadJournal journal = DownloadJournal.open(file, 1000)) {
+			assertGaps(journal, 1000, 1999, 3000, 9999);
+			journal.finish(1000, 1999, 1);
+		}
+		try (DownloadJournal journal = DownloadJournal.open(file, 1000)) {
+			assertGaps(journal, 3000, 9999);
+			assertEquals(1, journal.source(1000));
+		}
+	}
+
+	@Test public void versionTwoConversion() throws IOException {
+		File file = folder.newFile();
+		byte[] info = INFO.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = ByteBuffer.allocate(DownloadJournal.HEADER_SIZE + info.length + 2 + 10);
+		buffer.putInt(DownloadJournal.MAGIC).putInt(2).putLong(10000).putLong(1000).putInt(10).putInt(info.length).put(info).put((byte) 0b00000011).put((byte) 0);
+		buffer.put((byte) 2).put((byte) 3);
+		Files.write(file.toPath(), buffer.array());
+		try (DownloadJournal journal = DownloadJournal.open(file, 1000)) {
+			assertGaps(journal, 2000, 9999);
+			assertEquals(1, journal.source(0));
+			assertEquals(2, journal.source(1000));
+			assertEquals(0, journal.verify()); // 旧版没有校验值,不检查
+		}
+	}
+
+	@Test public void checksums() throws IOException {
+		File file = folder.newFile();
+		File storage = folder.newFile("test.bin");
+		byte[] data = new byte[10000];
+		new Random(1).nextBytes(data);
+		Files.write(storage.toPath(), data);
+		try (DownloadJournal journal = DownloadJournal.create(file, INFO, 10000, 1000)) {
+			for (int position = 0; position < 10000; position += 300) { // 跨越块边界的数据
+				journal.update(position, ByteBuffer.wrap(data, position, Math.min(300, 10000 - position)));
+			}
+			journal.finish(0, 9999);
+		}
+		data[4321] ^= 1;
+		Files.write(storage.toPath(), data); // 第五块损坏
+		try (DownloadJournal journal = DownloadJournal.open(file, 1000)) {
+			journal.storage(storage);
+			assertEquals(1, journal.verify());
+			assertGaps(journal, 4000, 4999);
+		}
+		try (DownloadJournal journal = DownloadJournal.open(file, 1000)) {
+			assertGaps(journal, 4000, 4999);
+		}
+	}
+
+	@Test public void unorderedChecksums() throws IOException {
+		File file = folder.newFile();
+		File storage = folder.newFile("test.bin");
+		byte[] data = new byte[10000];
+		new Random(2).nextBytes(data);
+		Files.write(storage.toPath(), data);
+		try (DownloadJournal journal = DownloadJournal.create(file, INFO, 10000, 1000).storage(storage)) {
+			journal.update(500, ByteBuffer.wrap(data, 500, 500)); // 后半块先写入,完成后读取文件计算
+			journal.update(0, ByteBuffer.wrap(data, 0, 500));
+			journal.finish(500, 999);
+			journal.finish(0, 499);
+			journal.finish(1000, 9999); // 未登记数据,读取文件计算
+			assertEquals(0, journal.verify());
+			data[700] ^= 1;
+			data[9999] ^= 1;
+			Files.write(storage.toPath(), data);
+			assertEquals(2, journal.verify());
+			assertGaps(journal, 0, 999, 9000, 9999);
+		}
+	}
+
+	@Test public void reset() throws IOException {
+		File file = folder.newFile();
+		try (DownloadJournal journal = DownloadJournal.create(file, INFO, 10000, 1000)) {
+			journal.finish(0, 9999);
+			journal.reset();
+			assertGaps(journal, 0, 9999);
+		}
+		try (DownloadJournal journal = DownloadJournal.open(file, 1000)) {
+			assertGaps(journal, 0, 9999);
+		}
+	}
+
+	@Test public void atomicRewrite() throws IOException {
+		File file = folder.newFile("test.bin.haic");
+		try (DownloadJournal journal = DownloadJournal.create(file, INFO, 10000, 1000)) {
+			journal.finish(0, 4999, 0);
+			journal.reset(); // 整体重写后继续原地更新
+			journal.finish(3000, 3999, 1);
+		}
+		assertFalse(new File(file + ".tmp").exists());
+		try (DownloadJournal journal = DownloadJournal.open(file, 1000)) {
+			assertGaps(journal, 0, 2999, 4000, 9999);
+			assertEquals(1, journal.source(3000));
+		}
+	}
+
+	@Test public void concurrentFinish() throws Exception {
+		File file = folder.newFile();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try (DownloadJournal journal = DownloadJournal.create(file, INFO, 1000 * 1000, 1000)) {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < 1000; i++) {
+				long start = i * 1000L;
+				futures.add(executor.submit(() -> { // 每块分两次完成,交错记录部分完成的块
+					journal.finish(start, start + 399, 0);
+					journal.finish(start + 400, start + 999, 0);
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+			assertTrue(journal.gaps().isEmpty());
+		} finally {
+			executor.shutdown();
+		}
+		try (DownloadJournal journal = DownloadJournal.open(file, 1000)) {
+			assertTrue(journal.gaps().isEmpty());
+		}
+	}
+
+	protected static void assertGaps(DownloadJournal journal, long... expected) {
+		List<long[]> gaps = journal.gaps();
+		long[] actual = new long[gaps.size() * 2];
+		for (int i = 0; i < gaps.size(); i++) {
+			actual[i * 2] = gaps.get(i)[0];
+			actual[i * 2 + 1] = gaps.get(i)[1];
+		}
+		assertArrayEquals(expected, actual);
+	}
+
+}